@@ -0,0 +1,58 @@
+package com.airis.message.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque conversation list cursor
+ * Encodes the (lastMessageTimestamp, chatId) key of the last returned conversation, so the next
+ * slice continues strictly after it in (lastMessageTimestamp desc, chatId desc) order
+ * 
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Getter
+@AllArgsConstructor
+public class ConversationCursor {
+
+    private static final char SEPARATOR = ':';
+
+    /**
+     * Last message timestamp of the last returned conversation
+     */
+    private final long lastMessageTimestamp;
+
+    /**
+     * Chat ID of the last returned conversation
+     */
+    private final String chatId;
+
+    /**
+     * Encode cursor as URL-safe string
+     * 
+     * @return Opaque cursor string
+     */
+    public String encode() {
+        String raw = lastMessageTimestamp + String.valueOf(SEPARATOR) + chatId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode cursor string
+     * 
+     * @param cursor Opaque cursor string
+     * @return Cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static ConversationCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = raw.indexOf(SEPARATOR);
+        if (separator <= 0 || separator == raw.length() - 1) {
+            throw new IllegalArgumentException("Malformed conversation cursor");
+        }
+        return new ConversationCursor(Long.parseLong(raw.substring(0, separator)), raw.substring(separator + 1));
+    }
+}
@@ -0,0 +1,75 @@
+package com.airis.message.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cursor page result
+ * Carries one slice of records and the cursor of the next slice; no total count is computed
+ * 
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorResult<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Data list
+     */
+    private List<T> records;
+
+    /**
+     * Page size
+     */
+    private long size;
+
+    /**
+     * Cursor of the next slice, null when there are no more records
+     */
+    private String nextCursor;
+
+    /**
+     * Has more records after this slice
+     */
+    private boolean hasMore;
+
+    /**
+     * Create cursor result
+     * 
+     * @param records    Data list
+     * @param size       Page size
+     * @param nextCursor Cursor of the next slice, null when there are no more records
+     * @param <T>        Data type
+     * @return Cursor result
+     */
+    public static <T> CursorResult<T> of(List<T> records, long size, String nextCursor) {
+        return CursorResult.<T>builder()
+                .records(records)
+                .size(size)
+                .nextCursor(nextCursor)
+                .hasMore(nextCursor != null)
+                .build();
+    }
+
+    /**
+     * Create empty cursor result
+     * 
+     * @param size Page size
+     * @param <T>  Data type
+     * @return Empty cursor result
+     */
+    public static <T> CursorResult<T> empty(long size) {
+        return of(new ArrayList<>(), size, null);
+    }
+}
@@ -0,0 +1,58 @@
+package com.airis.message.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque message history cursor
+ * Encodes the (timestamp, messageId) key of the last returned message, so the next slice
+ * continues strictly after it in (timestamp desc, messageId desc) order
+ * 
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Getter
+@AllArgsConstructor
+public class MessageCursor {
+
+    private static final char SEPARATOR = ':';
+
+    /**
+     * Timestamp of the last returned message
+     */
+    private final long timestamp;
+
+    /**
+     * Message ID of the last returned message
+     */
+    private final String messageId;
+
+    /**
+     * Encode cursor as URL-safe string
+     * 
+     * @return Opaque cursor string
+     */
+    public String encode() {
+        String raw = timestamp + String.valueOf(SEPARATOR) + messageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode cursor string
+     * 
+     * @param cursor Opaque cursor string
+     * @return Cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static MessageCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = raw.indexOf(SEPARATOR);
+        if (separator <= 0 || separator == raw.length() - 1) {
+            throw new IllegalArgumentException("Malformed message cursor");
+        }
+        return new MessageCursor(Long.parseLong(raw.substring(0, separator)), raw.substring(separator + 1));
+    }
+}
@@ -0,0 +1,39 @@
+package com.airis.message.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Message persistence executor configuration
+ * Backs the asynchronous save path so Dubbo IO threads never wait on MongoDB/MySQL
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Configuration
+public class MessagePersistConfig {
+
+    @Value("${airis.message.persist.threads:32}")
+    private int threads;
+
+    @Value("${airis.message.persist.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Bean
+    public ThreadPoolTaskExecutor messagePersistExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("message-persist-");
+        // Reject instead of running on the caller so a saturated node fails fast
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+}
@@ -1,13 +1,19 @@
 package com.airis.message.controller;
 
+import com.airis.message.common.CursorResult;
 import com.airis.message.common.PageResult;
 import com.airis.message.dto.ChatDetailDTO;
 import com.airis.message.dto.ConversationDTO;
+import com.airis.message.dto.MessageContextDTO;
 import com.airis.message.dto.MessageDTO;
+import com.airis.message.enums.CursorDirection;
 import com.airis.message.request.ChatDetailRequest;
+import com.airis.message.request.ConversationCursorRequest;
 import com.airis.message.request.ConversationListRequest;
+import com.airis.message.request.CursorMessagesRequest;
 import com.airis.message.request.HistoricalMessagesRequest;
 import com.airis.message.request.MarkReadRequest;
+import com.airis.message.request.MessageContextRequest;
 import com.airis.message.request.SearchMessagesRequest;
 import com.airis.message.request.SendMessageRequest;
 import com.airis.message.security.SkipAuthentication;
@@ -86,6 +92,40 @@ public class MessageController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Get historical messages by cursor
+     * 
+     * @param request Cursor historical messages query request
+     * @return Message slice with the cursor of the next slice
+     */
+    @PostMapping("/history/cursor")
+    @Operation(summary = "Get chat history by cursor", description = "Get chat history one slice at a time using the cursor returned with the previous slice, without total count")
+    public ResponseEntity<CursorResult<MessageDTO>> getHistoricalMessagesByCursor(
+            @Valid @RequestBody CursorMessagesRequest request) {
+        log.info("Get historical messages by cursor: chatId={}, userId={}", request.getChatId(), request.getUserId());
+
+        CursorResult<MessageDTO> result = messageService.getHistoricalMessagesByCursor(request);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Get messages around an anchor message
+     * 
+     * @param request Message context request
+     * @return Message context, 404 if the anchor message is not found in the chat
+     */
+    @PostMapping("/context")
+    @Operation(summary = "Get message context", description = "Get messages before and after an anchor message in one request, with cursors to continue in both directions")
+    public ResponseEntity<MessageContextDTO> getMessageContext(@Valid @RequestBody MessageContextRequest request) {
+        log.info("Get message context: chatId={}, messageId={}", request.getChatId(), request.getMessageId());
+
+        MessageContextDTO result = messageService.getMessageContext(request);
+        if (result == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Mark messages as read
      * 
@@ -117,6 +157,22 @@ public class MessageController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Get conversation list by cursor
+     * 
+     * @param request Cursor conversation list query request
+     * @return Conversation slice with the cursor of the next slice
+     */
+    @PostMapping("/conversations/cursor")
+    @Operation(summary = "Get conversation list by cursor", description = "Get user's chat conversation list one slice at a time using the cursor returned with the previous slice, without total count")
+    public ResponseEntity<CursorResult<ConversationDTO>> getConversationsByCursor(
+            @Valid @RequestBody ConversationCursorRequest request) {
+        log.info("Get conversation list by cursor: userId={}", request.getUserId());
+
+        CursorResult<ConversationDTO> result = messageService.getConversationsByCursor(request);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Search messages
      * 
@@ -163,6 +219,37 @@ public class MessageController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Get historical messages by cursor via GET method (simplified interface)
+     * 
+     * @param chatId    Chat ID
+     * @param userId    User ID
+     * @param cursor    Cursor returned with the previous slice
+     * @param direction Direction to read from the cursor
+     * @param size      Page size
+     * @return Message slice with the cursor of the next slice
+     */
+    @GetMapping("/history/{chatId}/cursor")
+    @Operation(summary = "Get chat history by cursor via GET", description = "Get chat history by cursor through GET request")
+    public ResponseEntity<CursorResult<MessageDTO>> getHistoricalMessagesByCursorGet(
+            @Parameter(description = "Chat ID") @PathVariable String chatId,
+            @Parameter(description = "User ID") @RequestParam String userId,
+            @Parameter(description = "Cursor returned with the previous slice") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Direction to read from the cursor") @RequestParam(defaultValue = "OLDER") CursorDirection direction,
+            @Parameter(description = "Page size", example = "20") @RequestParam(defaultValue = "20") Integer size) {
+
+        CursorMessagesRequest request = CursorMessagesRequest.builder()
+                .chatId(chatId)
+                .userId(userId)
+                .cursor(cursor)
+                .direction(direction)
+                .size(size)
+                .build();
+
+        CursorResult<MessageDTO> result = messageService.getHistoricalMessagesByCursor(request);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Get conversation list via GET method (simplified interface)
      * 
@@ -190,6 +277,31 @@ public class MessageController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Get conversation list by cursor via GET method (simplified interface)
+     * 
+     * @param userId User ID
+     * @param cursor Cursor returned with the previous slice
+     * @param size   Page size
+     * @return Conversation slice with the cursor of the next slice
+     */
+    @GetMapping("/conversations/{userId}/cursor")
+    @Operation(summary = "Get conversation list by cursor via GET", description = "Get user's chat conversation list by cursor through GET request")
+    public ResponseEntity<CursorResult<ConversationDTO>> getConversationsByCursorGet(
+            @Parameter(description = "User ID") @PathVariable String userId,
+            @Parameter(description = "Cursor returned with the previous slice") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size", example = "20") @RequestParam(defaultValue = "20") Integer size) {
+
+        ConversationCursorRequest request = ConversationCursorRequest.builder()
+                .userId(userId)
+                .cursor(cursor)
+                .size(size)
+                .build();
+
+        CursorResult<ConversationDTO> result = messageService.getConversationsByCursor(request);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Get chat details
      * 
@@ -0,0 +1,45 @@
+package com.airis.message.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Message context DTO
+ * Messages around an anchor message, with cursors to keep scrolling in both directions
+ * 
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageContextDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Anchor message ID
+     */
+    private String anchorMessageId;
+
+    /**
+     * Messages before the anchor, the anchor and messages after it, oldest first
+     */
+    private List<MessageDTO> messages;
+
+    /**
+     * Cursor for older messages (direction OLDER), null when there are no older messages
+     */
+    private String olderCursor;
+
+    /**
+     * Cursor for newer messages (direction NEWER), null when there are no newer messages
+     */
+    private String newerCursor;
+}
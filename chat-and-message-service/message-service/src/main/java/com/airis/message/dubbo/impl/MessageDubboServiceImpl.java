@@ -1,8 +1,10 @@
 package com.airis.message.dubbo.impl;
 
+import com.airis.message.common.CursorResult;
 import com.airis.message.common.PageResult;
 import com.airis.message.dto.ChatDetailDTO;
 import com.airis.message.dto.ConversationDTO;
+import com.airis.message.dto.MessageContextDTO;
 import com.airis.message.dto.MessageDTO;
 import com.airis.message.dubbo.MessageDubboService;
 import com.airis.message.entity.ChatMessage;
@@ -10,18 +12,25 @@ import com.airis.message.entity.ChatSession;
 import com.airis.message.mapper.ChatSessionMapper;
 import com.airis.message.repository.ChatMessageRepository;
 import com.airis.message.request.ChatDetailRequest;
+import com.airis.message.request.ConversationCursorRequest;
 import com.airis.message.request.ConversationListRequest;
+import com.airis.message.request.CursorMessagesRequest;
 import com.airis.message.request.HistoricalMessagesRequest;
 import com.airis.message.request.MarkReadRequest;
+import com.airis.message.request.MessageContextRequest;
 import com.airis.message.request.SearchMessagesRequest;
 import com.airis.message.request.SendMessageRequest;
 import com.airis.message.service.MessageService;
+import com.airis.message.service.impl.MessageGroupCommitter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.DubboService;
 import org.springframework.beans.BeanUtils;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Message service Dubbo implementation
@@ -37,6 +46,8 @@ public class MessageDubboServiceImpl implements MessageDubboService {
     private final MessageService messageService;
     private final ChatMessageRepository chatMessageRepository;
     private final ChatSessionMapper chatSessionMapper;
+    private final Executor messagePersistExecutor;
+    private final MessageGroupCommitter messageGroupCommitter;
 
     @Override
     public MessageDTO saveMessage(SendMessageRequest request) {
@@ -44,12 +55,41 @@ public class MessageDubboServiceImpl implements MessageDubboService {
         return messageService.saveMessage(request);
     }
 
+    @Override
+    public CompletableFuture<MessageDTO> saveMessageAsync(SendMessageRequest request) {
+        log.info("Dubbo call save message async: chatId={}, senderId={}", request.getChatId(), request.getSenderId());
+        if (messageGroupCommitter.isEnabled()) {
+            return messageService.saveMessageAsync(request);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> messageService.saveMessage(request), messagePersistExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Message persist executor saturated: chatId={}, senderId={}",
+                    request.getChatId(), request.getSenderId());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     @Override
     public PageResult<MessageDTO> getHistoricalMessages(HistoricalMessagesRequest request) {
         log.info("Dubbo call get historical messages: chatId={}, userId={}", request.getChatId(), request.getUserId());
         return messageService.getHistoricalMessages(request);
     }
 
+    @Override
+    public CursorResult<MessageDTO> getHistoricalMessagesByCursor(CursorMessagesRequest request) {
+        log.info("Dubbo call get historical messages by cursor: chatId={}, userId={}", request.getChatId(),
+                request.getUserId());
+        return messageService.getHistoricalMessagesByCursor(request);
+    }
+
+    @Override
+    public MessageContextDTO getMessageContext(MessageContextRequest request) {
+        log.info("Dubbo call get message context: chatId={}, messageId={}", request.getChatId(),
+                request.getMessageId());
+        return messageService.getMessageContext(request);
+    }
+
     @Override
     public void markMessagesAsRead(MarkReadRequest request) {
         log.info("Dubbo call mark messages as read: chatId={}, userId={}", request.getChatId(), request.getUserId());
@@ -62,6 +102,12 @@ public class MessageDubboServiceImpl implements MessageDubboService {
         return messageService.getConversations(request);
     }
 
+    @Override
+    public CursorResult<ConversationDTO> getConversationsByCursor(ConversationCursorRequest request) {
+        log.info("Dubbo call get conversation list by cursor: userId={}", request.getUserId());
+        return messageService.getConversationsByCursor(request);
+    }
+
     @Override
     public PageResult<MessageDTO> searchMessages(SearchMessagesRequest request) {
         log.info("Dubbo call search messages: userId={}, keyword={}", request.getUserId(), request.getKeyword());
@@ -25,7 +25,7 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "chat_messages")
-@CompoundIndex(def = "{'chatId': 1, 'timestamp': -1}")
+@CompoundIndex(def = "{'chatId': 1, 'timestamp': -1, 'messageId': -1}")
 public class ChatMessage {
 
     /**
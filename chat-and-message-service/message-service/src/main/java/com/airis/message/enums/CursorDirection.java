@@ -0,0 +1,21 @@
+package com.airis.message.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * History cursor direction enum
+ * 
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Getter
+@AllArgsConstructor
+public enum CursorDirection {
+
+    OLDER("OLDER", "Messages before the cursor, newest first"),
+    NEWER("NEWER", "Messages after the cursor, oldest first");
+
+    private final String code;
+    private final String description;
+}
@@ -73,6 +73,23 @@ public interface ChatSessionMapper {
                         @Param("offset") int offset,
                         @Param("limit") int limit);
 
+        /**
+         * Query chat sessions by chat IDs
+         * 
+         * @param chatIds Chat IDs
+         * @return Chat sessions, in no particular order
+         */
+        List<ChatSession> selectByChatIds(@Param("chatIds") List<String> chatIds);
+
+        /**
+         * Query chat ID and last message timestamp of all of a user's chat sessions
+         * Used to rebuild the user's conversation inbox
+         * 
+         * @param userId User ID
+         * @return Chat sessions with only chatId and lastMessageTimestamp set
+         */
+        List<ChatSession> selectInboxByUserId(@Param("userId") String userId);
+
         /**
          * Count user's chat sessions
          * 
@@ -127,6 +144,16 @@ public interface ChatSessionMapper {
          */
         int insertOrUpdate(ChatSession chatSession);
 
+        /**
+         * Batch upsert last message info for several chats in one statement
+         * Unread counts of the given sessions are increments for user1Id/user2Id,
+         * not absolute values; the last message only moves forward in time
+         *
+         * @param sessions Chat sessions, one per chat ID
+         * @return Affected rows
+         */
+        int batchUpsertLastMessage(@Param("sessions") List<ChatSession> sessions);
+
         /**
          * Query chat session by two user IDs
          * 
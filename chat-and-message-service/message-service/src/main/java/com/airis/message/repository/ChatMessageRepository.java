@@ -4,6 +4,7 @@ import com.airis.message.entity.ChatMessage;
 import com.airis.message.enums.MessageType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -63,6 +64,44 @@ public interface ChatMessageRepository extends MongoRepository<ChatMessage, Stri
         Page<ChatMessage> findByChatIdAndTimestampLessThanOrderByTimestampDesc(
                         String chatId, Long beforeTimestamp, Pageable pageable);
 
+        /**
+         * Find the newest slice of messages by chat ID without counting the chat
+         * 
+         * @param chatId   Chat ID
+         * @param pageable Slice size and sort (timestamp desc, messageId desc)
+         * @return Message slice
+         */
+        @Query("{'chatId': ?0}")
+        Slice<ChatMessage> findSliceByChatId(String chatId, Pageable pageable);
+
+        /**
+         * Find the slice of messages strictly after a (timestamp, messageId) key in
+         * (timestamp desc, messageId desc) order, without counting the chat
+         * 
+         * @param chatId    Chat ID
+         * @param timestamp Timestamp of the last message of the previous slice
+         * @param messageId Message ID of the last message of the previous slice
+         * @param pageable  Slice size and sort (timestamp desc, messageId desc)
+         * @return Message slice
+         */
+        @Query("{'chatId': ?0, '$or': [{'timestamp': {'$lt': ?1}}, {'timestamp': ?1, 'messageId': {'$lt': ?2}}]}")
+        Slice<ChatMessage> findSliceByChatIdBeforeKey(String chatId, Long timestamp, String messageId,
+                        Pageable pageable);
+
+        /**
+         * Find the slice of messages strictly after a (timestamp, messageId) key in
+         * (timestamp asc, messageId asc) order, without counting the chat
+         * 
+         * @param chatId    Chat ID
+         * @param timestamp Timestamp of the newest message already loaded
+         * @param messageId Message ID of the newest message already loaded
+         * @param pageable  Slice size and sort (timestamp asc, messageId asc)
+         * @return Message slice
+         */
+        @Query("{'chatId': ?0, '$or': [{'timestamp': {'$gt': ?1}}, {'timestamp': ?1, 'messageId': {'$gt': ?2}}]}")
+        Slice<ChatMessage> findSliceByChatIdAfterKey(String chatId, Long timestamp, String messageId,
+                        Pageable pageable);
+
         /**
          * Search message content
          * 
@@ -0,0 +1,46 @@
+package com.airis.message.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * Cursor-based conversation list query request
+ * 
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationCursorRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * User ID
+     */
+    @NotBlank(message = "User ID cannot be blank")
+    private String userId;
+
+    /**
+     * Cursor returned with the previous slice, empty for the most recent conversations
+     */
+    private String cursor;
+
+    /**
+     * Page size
+     */
+    @NotNull(message = "Page size cannot be null")
+    @Min(value = 1, message = "Page size must be greater than 0")
+    @Max(value = 50, message = "Page size cannot exceed 50")
+    private Integer size;
+}
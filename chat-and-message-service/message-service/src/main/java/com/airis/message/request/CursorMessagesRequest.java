@@ -0,0 +1,58 @@
+package com.airis.message.request;
+
+import com.airis.message.enums.CursorDirection;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * Cursor-based historical messages query request
+ * 
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorMessagesRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Chat ID
+     */
+    @NotBlank(message = "Chat ID cannot be blank")
+    private String chatId;
+
+    /**
+     * Request user ID
+     */
+    @NotBlank(message = "User ID cannot be blank")
+    private String userId;
+
+    /**
+     * Cursor returned with the previous slice, empty for the newest messages
+     */
+    private String cursor;
+
+    /**
+     * Direction to read from the cursor, OLDER when not specified
+     */
+    private CursorDirection direction;
+
+    /**
+     * Page size
+     */
+    @NotNull(message = "Page size cannot be null")
+    @Min(value = 1, message = "Page size must be greater than 0")
+    @Max(value = 100, message = "Page size cannot exceed 100")
+    private Integer size;
+}
@@ -1,16 +1,23 @@
 package com.airis.message.service;
 
+import com.airis.message.common.CursorResult;
 import com.airis.message.common.PageResult;
 import com.airis.message.dto.ChatDetailDTO;
 import com.airis.message.dto.ConversationDTO;
+import com.airis.message.dto.MessageContextDTO;
 import com.airis.message.dto.MessageDTO;
 import com.airis.message.request.ChatDetailRequest;
+import com.airis.message.request.ConversationCursorRequest;
 import com.airis.message.request.ConversationListRequest;
+import com.airis.message.request.CursorMessagesRequest;
 import com.airis.message.request.HistoricalMessagesRequest;
 import com.airis.message.request.MarkReadRequest;
+import com.airis.message.request.MessageContextRequest;
 import com.airis.message.request.SearchMessagesRequest;
 import com.airis.message.request.SendMessageRequest;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Message service interface
  * 
@@ -29,6 +36,16 @@ public interface MessageService {
      */
     MessageDTO saveMessage(SendMessageRequest request);
 
+    /**
+     * Save message through the group-commit writer
+     * Concurrent saves are persisted together; the future completes once this
+     * message has been written
+     * 
+     * @param request Send message request
+     * @return Future of the message DTO
+     */
+    CompletableFuture<MessageDTO> saveMessageAsync(SendMessageRequest request);
+
     /**
      * Get historical messages
      * 
@@ -37,6 +54,26 @@ public interface MessageService {
      */
     PageResult<MessageDTO> getHistoricalMessages(HistoricalMessagesRequest request);
 
+    /**
+     * Get historical messages by cursor
+     * Returns one slice in (timestamp, messageId) order from the cursor in the requested direction,
+     * without counting the chat
+     * 
+     * @param request Cursor historical messages request
+     * @return Message slice with the cursor of the next slice
+     */
+    CursorResult<MessageDTO> getHistoricalMessagesByCursor(CursorMessagesRequest request);
+
+    /**
+     * Get messages around an anchor message
+     * Returns up to beforeCount older and afterCount newer messages with the anchor, oldest first,
+     * and cursors to continue in both directions
+     * 
+     * @param request Message context request
+     * @return Message context, null if the anchor is not in the chat or the user cannot view it
+     */
+    MessageContextDTO getMessageContext(MessageContextRequest request);
+
     /**
      * Mark messages as read
      * 
@@ -53,6 +90,15 @@ public interface MessageService {
      */
     PageResult<ConversationDTO> getConversations(ConversationListRequest request);
 
+    /**
+     * Get conversation list by cursor
+     * Returns one slice ordered by last message time, newest first, without counting the user's chats
+     * 
+     * @param request Cursor conversation list request
+     * @return Conversation slice with the cursor of the next slice
+     */
+    CursorResult<ConversationDTO> getConversationsByCursor(ConversationCursorRequest request);
+
     /**
      * Search messages
      * 
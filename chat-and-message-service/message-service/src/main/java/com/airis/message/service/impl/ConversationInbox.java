@@ -0,0 +1,313 @@
+package com.airis.message.service.impl;
+
+import com.airis.message.entity.ChatSession;
+import com.airis.message.mapper.ChatSessionMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Per-user conversation inbox
+ * A Redis sorted set per user of chat ID -> last message timestamp, so conversation lists are
+ * read newest first without the OR + filesort + offset query on chat_session. Only the order is
+ * kept here; conversation details are still loaded from chat_session, which stays the source of
+ * truth. Saves move the chat forward in both users' inboxes; a missing inbox is rebuilt from
+ * chat_session on the next read, guarded by a per-user version like the recent-message cache
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationInbox {
+
+    private static final String KEY_PREFIX = "chat:inbox:";
+
+    // Only move a chat forward, and only in an inbox that exists; a missing inbox is rebuilt on read
+    private static final RedisScript<Long> TOUCH_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[2]) "
+                    + "redis.call('PEXPIRE', KEYS[2], ARGV[3]) "
+                    + "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+                    + "local current = redis.call('ZSCORE', KEYS[1], ARGV[2]) "
+                    + "if not current or tonumber(current) < tonumber(ARGV[1]) then "
+                    + "  redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "end "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[3]) "
+                    + "return 1",
+            Long.class);
+
+    // Store an inbox read from chat_session unless a save touched it since the read
+    private static final RedisScript<Long> REBUILD_SCRIPT = new DefaultRedisScript<>(
+            "local version = redis.call('GET', KEYS[2]) or '0' "
+                    + "if version ~= ARGV[1] or redis.call('EXISTS', KEYS[1]) == 1 then return 0 end "
+                    + "for i = 3, #ARGV, 1000 do "
+                    + "  redis.call('ZADD', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV))) "
+                    + "end "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[2]) "
+                    + "return 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ChatSessionMapper chatSessionMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${airis.message.inbox.enabled:true}")
+    private boolean enabled;
+
+    // Idle time after which a user's inbox is dropped and later rebuilt (milliseconds)
+    @Value("${airis.message.inbox.ttl-ms:604800000}")
+    private long ttlMs;
+
+    private Counter rebuildCounter;
+
+    @PostConstruct
+    public void init() {
+        rebuildCounter = Counter.builder("chat.inbox.rebuilds")
+                .description("Conversation inboxes rebuilt from chat_session")
+                .register(meterRegistry);
+
+        log.info("Conversation inbox: enabled={}, ttlMs={}", enabled, ttlMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Move a chat to its last message time in both users' inboxes
+     */
+    public void touch(String chatId, String user1Id, String user2Id, long lastMessageTimestamp) {
+        if (!enabled) {
+            return;
+        }
+        touch(user1Id, chatId, lastMessageTimestamp);
+        if (user2Id != null && !user2Id.equals(user1Id)) {
+            touch(user2Id, chatId, lastMessageTimestamp);
+        }
+    }
+
+    /**
+     * Move each session's chat to its last message time in both users' inboxes, in one pipelined round trip
+     */
+    public void touchAll(Collection<ChatSession> sessions) {
+        if (!enabled || sessions.isEmpty()) {
+            return;
+        }
+        Set<String> userIds = new LinkedHashSet<>();
+        List<byte[][]> touches = new ArrayList<>(sessions.size() * 2);
+        for (ChatSession session : sessions) {
+            String chatId = session.getChatId();
+            String timestamp = String.valueOf(session.getLastMessageTimestamp());
+            List<String> users = new ArrayList<>(2);
+            users.add(session.getUser1Id());
+            if (session.getUser2Id() != null && !session.getUser2Id().equals(session.getUser1Id())) {
+                users.add(session.getUser2Id());
+            }
+            for (String userId : users) {
+                if (userId != null) {
+                    userIds.add(userId);
+                    touches.add(keysAndArgs(keys(userId), timestamp, chatId, String.valueOf(ttlMs)));
+                }
+            }
+        }
+        try {
+            byte[] script = TOUCH_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            // EVAL rather than EVALSHA: a pipeline cannot fall back when the script is not loaded yet
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[][] keysAndArgs : touches) {
+                    connection.scriptingCommands().eval(script, ReturnType.INTEGER, 2, keysAndArgs);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to update inboxes of {} users for {} chats: {}",
+                    userIds.size(), sessions.size(), e.getMessage());
+            // Some inboxes would keep a stale order, drop them so they are rebuilt
+            for (String userId : userIds) {
+                try {
+                    redisTemplate.delete(inboxKey(userId));
+                } catch (Exception ignored) {
+                    // Falls back to the TTL
+                }
+            }
+        }
+    }
+
+    private void touch(String userId, String chatId, long lastMessageTimestamp) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            redisTemplate.execute(TOUCH_SCRIPT, keys(userId),
+                    String.valueOf(lastMessageTimestamp), chatId, String.valueOf(ttlMs));
+        } catch (Exception e) {
+            log.warn("Failed to update inbox of user {} for chat {}: {}", userId, chatId, e.getMessage());
+            // The inbox would keep a stale order, drop it so it is rebuilt
+            try {
+                redisTemplate.delete(inboxKey(userId));
+            } catch (Exception ignored) {
+                // Falls back to the TTL
+            }
+        }
+    }
+
+    /**
+     * Number of chats in a user's inbox, rebuilding the inbox if it is missing
+     *
+     * @return Chat count, or -1 if the inbox is not available
+     */
+    public long size(String userId) {
+        Long size = redisTemplate.opsForZSet().zCard(inboxKey(userId));
+        if (size != null && size > 0) {
+            return size;
+        }
+        if (!rebuild(userId)) {
+            return -1;
+        }
+        size = redisTemplate.opsForZSet().zCard(inboxKey(userId));
+        return size != null ? size : -1;
+    }
+
+    /**
+     * Read a range of a user's inbox, newest first
+     *
+     * @param beforeTimestamp Only chats whose last message is before this time, null for all
+     * @param offset          Entries to skip
+     * @param count           Entries to return
+     */
+    public List<Entry> range(String userId, Long beforeTimestamp, long offset, long count) {
+        double max = beforeTimestamp != null ? beforeTimestamp - 1 : Double.POSITIVE_INFINITY;
+        return toEntries(redisTemplate.opsForZSet().reverseRangeByScoreWithScores(
+                inboxKey(userId), Double.NEGATIVE_INFINITY, max, offset, count));
+    }
+
+    /**
+     * Read the entries of a user's inbox strictly after a (timestamp, chatId) key, newest first
+     *
+     * @param timestamp Last message timestamp of the last entry already returned, null to start at the newest
+     * @param chatId    Chat ID of the last entry already returned
+     * @param count     Entries to return
+     */
+    public List<Entry> after(String userId, Long timestamp, String chatId, int count) {
+        double max = timestamp != null ? timestamp.doubleValue() : Double.POSITIVE_INFINITY;
+        List<Entry> result = new ArrayList<>(count);
+        long offset = 0;
+        while (result.size() < count) {
+            // Entries sharing the cursor's timestamp come first, in descending chat ID order; skip the ones
+            // already returned
+            List<Entry> batch = toEntries(redisTemplate.opsForZSet().reverseRangeByScoreWithScores(
+                    inboxKey(userId), Double.NEGATIVE_INFINITY, max, offset, count));
+            for (Entry entry : batch) {
+                if (timestamp != null && entry.getLastMessageTimestamp() == timestamp
+                        && entry.getChatId().compareTo(chatId) >= 0) {
+                    continue;
+                }
+                if (result.size() < count) {
+                    result.add(entry);
+                }
+            }
+            if (batch.size() < count) {
+                break;
+            }
+            offset += batch.size();
+        }
+        return result;
+    }
+
+    /**
+     * Rebuild a user's inbox from chat_session
+     *
+     * @return Whether the inbox exists afterwards
+     */
+    private boolean rebuild(String userId) {
+        String version = redisTemplate.opsForValue().get(versionKey(userId));
+        List<ChatSession> sessions = chatSessionMapper.selectInboxByUserId(userId);
+        if (sessions.isEmpty()) {
+            return false;
+        }
+
+        List<String> args = new ArrayList<>(sessions.size() * 2 + 2);
+        args.add(version != null ? version : "0");
+        args.add(String.valueOf(ttlMs));
+        for (ChatSession session : sessions) {
+            args.add(String.valueOf(session.getLastMessageTimestamp() != null ? session.getLastMessageTimestamp() : 0));
+            args.add(session.getChatId());
+        }
+        redisTemplate.execute(REBUILD_SCRIPT, keys(userId), args.toArray());
+        rebuildCounter.increment();
+        log.debug("Rebuilt inbox of user {} with {} chats", userId, sessions.size());
+        return Boolean.TRUE.equals(redisTemplate.hasKey(inboxKey(userId)));
+    }
+
+    private static List<Entry> toEntries(Set<ZSetOperations.TypedTuple<String>> tuples) {
+        List<Entry> entries = new ArrayList<>(tuples != null ? tuples.size() : 0);
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                entries.add(new Entry(tuple.getValue(), tuple.getScore() != null ? tuple.getScore().longValue() : 0));
+            }
+        }
+        return entries;
+    }
+
+    private static byte[][] keysAndArgs(List<String> keys, String... args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            keysAndArgs[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < args.length; i++) {
+            keysAndArgs[keys.size() + i] = args[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return keysAndArgs;
+    }
+
+    // Both keys of a user share one hash slot so the scripts also run on Redis Cluster
+    private static List<String> keys(String userId) {
+        return List.of(inboxKey(userId), versionKey(userId));
+    }
+
+    private static String inboxKey(String userId) {
+        return KEY_PREFIX + "{" + userId + "}";
+    }
+
+    private static String versionKey(String userId) {
+        return KEY_PREFIX + "{" + userId + "}:version";
+    }
+
+    /**
+     * One chat in a user's inbox
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+
+        /**
+         * Chat ID
+         */
+        private final String chatId;
+
+        /**
+         * Last message timestamp
+         */
+        private final long lastMessageTimestamp;
+    }
+}
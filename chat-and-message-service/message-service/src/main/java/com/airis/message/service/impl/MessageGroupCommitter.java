@@ -0,0 +1,326 @@
+package com.airis.message.service.impl;
+
+import com.airis.message.entity.ChatMessage;
+import com.airis.message.entity.ChatSession;
+import com.airis.message.mapper.ChatSessionMapper;
+import com.airis.message.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Group-commit writer for chat messages
+ * Collects concurrent saves for up to max-latency or max-batch messages, then persists them
+ * with one MongoDB insertMany and one multi-row chat_session upsert, completing each
+ * caller's future individually. Follow-up Redis writes are made once per batch, pipelined,
+ * rather than once per message on the flusher thread
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageGroupCommitter {
+
+    private final MongoTemplate mongoTemplate;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatSessionMapper chatSessionMapper;
+    private final MeterRegistry meterRegistry;
+    private final ConversationInbox conversationInbox;
+
+    @Value("${airis.message.group-commit.enabled:true}")
+    private boolean enabled;
+
+    // Longest time the first message of a batch waits for others to join
+    @Value("${airis.message.group-commit.max-latency-ms:2}")
+    private long maxLatencyMs;
+
+    @Value("${airis.message.group-commit.max-batch:256}")
+    private int maxBatch;
+
+    @Value("${airis.message.group-commit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // Several flushers let one batch fill up while another is being written
+    @Value("${airis.message.group-commit.flusher-threads:2}")
+    private int flusherThreads;
+
+    private BlockingQueue<PendingMessage> queue;
+
+    private final List<Thread> flushers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    // Called once per batch with the persisted messages, before their futures complete
+    private volatile Consumer<List<ChatMessage>> commitListener;
+
+    private DistributionSummary batchSizeSummary;
+
+    private Timer flushTimer;
+
+    private Counter fallbackCounter;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Message group commit disabled");
+            return;
+        }
+
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        batchSizeSummary = DistributionSummary.builder("message.group.commit.batch.size")
+                .description("Messages persisted per group commit")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("message.group.commit.flush")
+                .description("Time spent persisting one group commit batch")
+                .register(meterRegistry);
+        fallbackCounter = Counter.builder("message.group.commit.fallback")
+                .description("Batches that fell back to per-message inserts")
+                .register(meterRegistry);
+
+        running = true;
+        for (int i = 0; i < flusherThreads; i++) {
+            Thread flusher = new Thread(this::runFlusher, "message-group-commit-" + (i + 1));
+            flusher.setDaemon(true);
+            flusher.start();
+            flushers.add(flusher);
+        }
+        log.info("Message group commit started: maxLatencyMs={}, maxBatch={}, flushers={}",
+                maxLatencyMs, maxBatch, flusherThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread flusher : flushers) {
+            flusher.interrupt();
+        }
+        for (Thread flusher : flushers) {
+            try {
+                flusher.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Register the callback that receives each batch's persisted messages
+     */
+    public void setCommitListener(Consumer<List<ChatMessage>> commitListener) {
+        this.commitListener = commitListener;
+    }
+
+    /**
+     * Queue a message for the next group commit
+     *
+     * @param message ChatMessage with messageId and timestamp already assigned
+     * @param preview Last message preview for the chat session
+     * @return Future completed with the persisted message, or exceptionally if it could not be saved
+     */
+    public CompletableFuture<ChatMessage> submit(ChatMessage message, String preview) {
+        PendingMessage pending = new PendingMessage(message, preview);
+        if (!running || !queue.offer(pending)) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Message group commit queue is full or stopped"));
+        }
+        return pending.future;
+    }
+
+    private void runFlusher() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatch);
+        try {
+            while (running) {
+                collect(batch);
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Persist whatever was accepted before shutdown
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+    /**
+     * Wait for the first message, then gather more until the batch is full or max-latency has passed
+     */
+    private void collect(List<PendingMessage> batch) throws InterruptedException {
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+        while (batch.size() < maxBatch) {
+            queue.drainTo(batch, maxBatch - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatch || remaining <= 0) {
+                return;
+            }
+            PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        long start = System.nanoTime();
+        List<PendingMessage> saved = insertMessages(batch);
+        updateChatSessions(saved);
+        notifyCommitted(saved);
+        for (PendingMessage pending : saved) {
+            pending.future.complete(pending.message);
+        }
+        batchSizeSummary.record(batch.size());
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Insert the batch with one insertMany, falling back to per-message saves if it fails
+     *
+     * @return Messages that were persisted (failed ones have their futures completed exceptionally)
+     */
+    private List<PendingMessage> insertMessages(List<PendingMessage> batch) {
+        List<ChatMessage> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message);
+        }
+
+        try {
+            mongoTemplate.insert(messages, ChatMessage.class);
+            return batch;
+        } catch (Exception e) {
+            log.warn("Group insert of {} messages failed, retrying one by one", batch.size(), e);
+            fallbackCounter.increment();
+        }
+
+        List<PendingMessage> saved = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            try {
+                pending.message = chatMessageRepository.save(pending.message);
+                saved.add(pending);
+            } catch (DuplicateKeyException e) {
+                // Already written by the partially applied insertMany
+                var existing = chatMessageRepository.findByMessageId(pending.message.getMessageId());
+                if (existing.isPresent()) {
+                    pending.message = existing.get();
+                    saved.add(pending);
+                } else {
+                    pending.future.completeExceptionally(e);
+                }
+            } catch (Exception e) {
+                log.error("Failed to save message: messageId={}, chatId={}",
+                        pending.message.getMessageId(), pending.message.getChatId(), e);
+                pending.future.completeExceptionally(e);
+            }
+        }
+        return saved;
+    }
+
+    private void notifyCommitted(List<PendingMessage> saved) {
+        Consumer<List<ChatMessage>> listener = commitListener;
+        if (listener == null || saved.isEmpty()) {
+            return;
+        }
+        List<ChatMessage> messages = new ArrayList<>(saved.size());
+        for (PendingMessage pending : saved) {
+            messages.add(pending.message);
+        }
+        try {
+            listener.accept(messages);
+        } catch (Exception e) {
+            log.warn("Commit listener failed for {} messages", messages.size(), e);
+        }
+    }
+
+    /**
+     * Fold the batch into one row per chat and upsert them in a single statement
+     */
+    private void updateChatSessions(List<PendingMessage> saved) {
+        if (saved.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, ChatSession> sessions = new LinkedHashMap<>();
+        for (PendingMessage pending : saved) {
+            ChatMessage message = pending.message;
+            ChatSession session = sessions.computeIfAbsent(message.getChatId(), chatId -> ChatSession.builder()
+                    .chatId(chatId)
+                    .user1Id(message.getSenderId())
+                    .user2Id(message.getReceiverId())
+                    .user1UnreadCount(0)
+                    .user2UnreadCount(0)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+
+            // Receiver's unread message count +1
+            if (message.getReceiverId() != null && message.getReceiverId().equals(session.getUser1Id())) {
+                session.setUser1UnreadCount(session.getUser1UnreadCount() + 1);
+            } else {
+                session.setUser2UnreadCount(session.getUser2UnreadCount() + 1);
+            }
+
+            if (session.getLastMessageTimestamp() == null
+                    || message.getTimestamp() >= session.getLastMessageTimestamp()) {
+                session.setLastMessageId(message.getMessageId());
+                session.setLastMessageContent(pending.preview);
+                session.setLastMessageTimestamp(message.getTimestamp());
+            }
+        }
+
+        try {
+            chatSessionMapper.batchUpsertLastMessage(new ArrayList<>(sessions.values()));
+        } catch (Exception e) {
+            log.error("Failed to update {} chat sessions", sessions.size(), e);
+            // Don't throw exception to avoid affecting message saving
+        }
+
+        // Move the chats to the top of their users' inboxes, one pipelined round trip for the batch
+        conversationInbox.touchAll(sessions.values());
+    }
+
+    private static final class PendingMessage {
+
+        private ChatMessage message;
+
+        private final String preview;
+
+        private final CompletableFuture<ChatMessage> future = new CompletableFuture<>();
+
+        PendingMessage(ChatMessage message, String preview) {
+            this.message = message;
+            this.preview = preview;
+        }
+    }
+}
@@ -1,31 +1,42 @@
 package com.airis.message.service.impl;
 
+import com.airis.message.common.ConversationCursor;
+import com.airis.message.common.CursorResult;
+import com.airis.message.common.MessageCursor;
 import com.airis.message.common.PageResult;
 import com.airis.message.dto.ChatDetailDTO;
 import com.airis.message.dto.ConversationDTO;
+import com.airis.message.dto.MessageContextDTO;
 import com.airis.message.dto.MessageDTO;
 import com.airis.message.entity.ChatMessage;
 import com.airis.message.entity.ChatSession;
+import com.airis.message.enums.CursorDirection;
 import com.airis.message.enums.MessageStatus;
 import com.airis.message.enums.ModerationStatus;
 import com.airis.message.mapper.ChatSessionMapper;
 import com.airis.message.repository.ChatMessageRepository;
 import com.airis.message.request.ChatDetailRequest;
+import com.airis.message.request.ConversationCursorRequest;
 import com.airis.message.request.ConversationListRequest;
+import com.airis.message.request.CursorMessagesRequest;
 import com.airis.message.request.HistoricalMessagesRequest;
 import com.airis.message.request.MarkReadRequest;
+import com.airis.message.request.MessageContextRequest;
 import com.airis.message.request.SearchMessagesRequest;
 import com.airis.message.request.SendMessageRequest;
 import com.airis.message.service.MessageService;
 import com.airis.message.util.SnowflakeIdGenerator;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
 import org.springframework.beans.BeanUtils;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -34,13 +45,14 @@ import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -59,17 +71,16 @@ public class MessageServiceImpl implements MessageService {
     private final SnowflakeIdGenerator snowflakeIdGenerator;
     private final RocketMQTemplate rocketMQTemplate;
     private final MongoTemplate mongoTemplate;
-
-    @Value("${user.service.base-url:http://10.144.2.1:8081}")
-    private String userServiceBaseUrl;
-
-    private final RestTemplate restTemplate = createRestTemplate();
-
-    private static RestTemplate createRestTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(1000); // 1s connect timeout
-        factory.setReadTimeout(1000); // 1s read timeout
-        return new RestTemplate(factory);
+    private final MessageGroupCommitter messageGroupCommitter;
+    private final RecentMessageCache recentMessageCache;
+    private final ConversationInbox conversationInbox;
+    private final UserProfileCache userProfileCache;
+
+    @PostConstruct
+    public void init() {
+        // Add each group commit's messages to their chats' recent windows in one Redis round trip
+        messageGroupCommitter.setCommitListener(messages -> recentMessageCache.appendAll(
+                messages.stream().map(this::convertToMessageDTO).toList()));
     }
 
     @Override
@@ -78,25 +89,10 @@ public class MessageServiceImpl implements MessageService {
         log.info("Save message: chatId={}, senderId={}, receiverId={}",
                 request.getChatId(), request.getSenderId(), request.getReceiverId());
 
-        // Generate message ID
-        String messageId = snowflakeIdGenerator.nextIdStr();
-        long currentTimestamp = System.currentTimeMillis();
-
-        // Build ChatMessage entity
-        ChatMessage chatMessage = ChatMessage.builder()
-                .messageId(messageId)
-                .chatId(request.getChatId())
-                .senderId(request.getSenderId())
-                .receiverId(request.getReceiverId())
-                .messageType(request.getMessageType())
-                .content(request.getContent())
-                .mediaMetadata(convertMediaMetadata(request.getMediaMetadata()))
-                .timestamp(currentTimestamp)
-                .clientTimestamp(request.getClientTimestamp())
-                .status(MessageStatus.DELIVERED_TO_SERVER)
-                .moderationStatus(ModerationStatus.PENDING)
-                .extraData(request.getExtraData())
-                .build();
+        // Generate message ID and build ChatMessage entity
+        ChatMessage chatMessage = buildChatMessage(request);
+        String messageId = chatMessage.getMessageId();
+        long currentTimestamp = chatMessage.getTimestamp();
 
         // Save to MongoDB
         chatMessage = chatMessageRepository.save(chatMessage);
@@ -107,8 +103,24 @@ public class MessageServiceImpl implements MessageService {
         // Send MQ message notification to other services
         sendMessageNotification(chatMessage);
 
-        // Convert to DTO and return
-        return convertToMessageDTO(chatMessage);
+        // Convert to DTO, add it to the chat's recent window and return
+        MessageDTO messageDTO = convertToMessageDTO(chatMessage);
+        recentMessageCache.append(messageDTO);
+        return messageDTO;
+    }
+
+    @Override
+    public CompletableFuture<MessageDTO> saveMessageAsync(SendMessageRequest request) {
+        log.info("Save message async: chatId={}, senderId={}, receiverId={}",
+                request.getChatId(), request.getSenderId(), request.getReceiverId());
+
+        ChatMessage chatMessage = buildChatMessage(request);
+        return messageGroupCommitter.submit(chatMessage, getMessagePreview(request))
+                .thenApply(saved -> {
+                    sendMessageNotificationAsync(saved);
+                    // Already in the recent window, appended for the whole batch by the commit listener
+                    return convertToMessageDTO(saved);
+                });
     }
 
     @Override
@@ -122,6 +134,12 @@ public class MessageServiceImpl implements MessageService {
             return PageResult.of(new ArrayList<>(), 0, request.getPage(), request.getSize());
         }
 
+        // The newest page is served from the chat's recent window, skipping the page query and count
+        if (request.getBeforeTimestamp() == null && request.getAfterTimestamp() == null
+                && request.getPage() == 1 && recentMessageCache.covers(request.getSize())) {
+            return getFirstPage(request);
+        }
+
         // Build pagination parameters
         Pageable pageable = PageRequest.of(
                 request.getPage() - 1,
@@ -150,6 +168,178 @@ public class MessageServiceImpl implements MessageService {
                 request.getPage(), request.getSize());
     }
 
+    // Serve the first page from the recent window, filling the window from MongoDB on a miss
+    private PageResult<MessageDTO> getFirstPage(HistoricalMessagesRequest request) {
+        RecentMessageCache.Window window = recentMessageCache.get(request.getChatId(), request.getSize());
+        if (window != null) {
+            recentMessageCache.recordMongoQueriesAvoided(2);
+            return PageResult.of(window.getMessages(), window.getTotal(), 1, request.getSize());
+        }
+
+        // Read the version first so a message saved during the read keeps the stale window out
+        String version = recentMessageCache.version(request.getChatId());
+        Page<ChatMessage> messagePage = chatMessageRepository.findByChatIdOrderByTimestampDesc(
+                request.getChatId(), keysetPage(recentMessageCache.getCapacity(), Sort.Direction.DESC));
+        List<MessageDTO> messageDTOs = messagePage.getContent().stream()
+                .map(this::convertToMessageDTO)
+                .collect(Collectors.toList());
+        recentMessageCache.fill(request.getChatId(), version, messageDTOs, messagePage.getTotalElements());
+
+        return PageResult.of(new ArrayList<>(messageDTOs.subList(0, Math.min(request.getSize(), messageDTOs.size()))),
+                messagePage.getTotalElements(), 1, request.getSize());
+    }
+
+    @Override
+    public CursorResult<MessageDTO> getHistoricalMessagesByCursor(CursorMessagesRequest request) {
+        log.info("Query historical messages by cursor: chatId={}, userId={}, cursor={}, size={}",
+                request.getChatId(), request.getUserId(), request.getCursor(), request.getSize());
+
+        // Verify if user has permission to view messages in this chat
+        if (!hasPermissionToViewChat(request.getChatId(), request.getUserId())) {
+            log.warn("User {} has no permission to view messages in chat {}", request.getUserId(), request.getChatId());
+            return CursorResult.empty(request.getSize());
+        }
+
+        Slice<ChatMessage> messageSlice;
+        if (StringUtils.hasText(request.getCursor())) {
+            MessageCursor cursor;
+            try {
+                cursor = MessageCursor.decode(request.getCursor());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid history cursor: chatId={}, cursor={}", request.getChatId(), request.getCursor());
+                return CursorResult.empty(request.getSize());
+            }
+            messageSlice = request.getDirection() == CursorDirection.NEWER
+                    ? findNewerSlice(request.getChatId(), cursor, request.getSize())
+                    : findOlderSlice(request.getChatId(), cursor, request.getSize());
+        } else {
+            // The newest slice is served from the chat's recent window when it is cached
+            if (recentMessageCache.covers(request.getSize())) {
+                RecentMessageCache.Window window = recentMessageCache.get(request.getChatId(), request.getSize());
+                if (window != null) {
+                    recentMessageCache.recordMongoQueriesAvoided(1);
+                    List<MessageDTO> cached = window.getMessages();
+                    MessageDTO last = cached.get(cached.size() - 1);
+                    String nextCursor = window.getTotal() > cached.size()
+                            ? new MessageCursor(last.getTimestamp(), last.getMessageId()).encode()
+                            : null;
+                    return CursorResult.of(new ArrayList<>(cached), request.getSize(), nextCursor);
+                }
+            }
+            messageSlice = chatMessageRepository.findSliceByChatId(request.getChatId(),
+                    keysetPage(request.getSize(), Sort.Direction.DESC));
+        }
+
+        List<ChatMessage> messages = messageSlice.getContent();
+        String nextCursor = messageSlice.hasNext() && !messages.isEmpty()
+                ? cursorOf(messages.get(messages.size() - 1))
+                : null;
+
+        List<MessageDTO> messageDTOs = messages.stream()
+                .map(this::convertToMessageDTO)
+                .collect(Collectors.toList());
+
+        return CursorResult.of(messageDTOs, request.getSize(), nextCursor);
+    }
+
+    @Override
+    public MessageContextDTO getMessageContext(MessageContextRequest request) {
+        log.info("Query message context: chatId={}, userId={}, messageId={}, before={}, after={}",
+                request.getChatId(), request.getUserId(), request.getMessageId(),
+                request.getBeforeCount(), request.getAfterCount());
+
+        // Verify if user has permission to view messages in this chat
+        if (!hasPermissionToViewChat(request.getChatId(), request.getUserId())) {
+            log.warn("User {} has no permission to view messages in chat {}", request.getUserId(), request.getChatId());
+            return null;
+        }
+
+        ChatMessage anchor = chatMessageRepository.findByMessageId(request.getMessageId())
+                .filter(message -> request.getChatId().equals(message.getChatId()))
+                .orElse(null);
+        if (anchor == null) {
+            log.warn("Anchor message not found in chat: chatId={}, messageId={}",
+                    request.getChatId(), request.getMessageId());
+            return null;
+        }
+        MessageCursor anchorCursor = new MessageCursor(anchor.getTimestamp(), anchor.getMessageId());
+
+        // Two range scans on the (chatId, timestamp, messageId) index, one in each direction from the anchor
+        List<ChatMessage> before = List.of();
+        boolean hasOlder = true;
+        if (request.getBeforeCount() > 0) {
+            Slice<ChatMessage> olderSlice = findOlderSlice(request.getChatId(), anchorCursor, request.getBeforeCount());
+            before = olderSlice.getContent();
+            hasOlder = olderSlice.hasNext();
+        }
+        List<ChatMessage> after = List.of();
+        boolean hasNewer = true;
+        if (request.getAfterCount() > 0) {
+            Slice<ChatMessage> newerSlice = findNewerSlice(request.getChatId(), anchorCursor, request.getAfterCount());
+            after = newerSlice.getContent();
+            hasNewer = newerSlice.hasNext();
+        }
+
+        // Oldest first: older slice is newest first, so reverse it
+        List<MessageDTO> messageDTOs = new ArrayList<>(before.size() + 1 + after.size());
+        for (int i = before.size() - 1; i >= 0; i--) {
+            messageDTOs.add(convertToMessageDTO(before.get(i)));
+        }
+        messageDTOs.add(convertToMessageDTO(anchor));
+        for (ChatMessage message : after) {
+            messageDTOs.add(convertToMessageDTO(message));
+        }
+
+        // With a count of 0 that side was not scanned, so the anchor itself is the cursor
+        ChatMessage oldest = before.isEmpty() ? anchor : before.get(before.size() - 1);
+        ChatMessage newest = after.isEmpty() ? anchor : after.get(after.size() - 1);
+        return MessageContextDTO.builder()
+                .anchorMessageId(anchor.getMessageId())
+                .messages(messageDTOs)
+                .olderCursor(hasOlder ? cursorOf(oldest) : null)
+                .newerCursor(hasNewer ? cursorOf(newest) : null)
+                .build();
+    }
+
+    // Messages strictly before the cursor key, newest first; no offset and no count query
+    private Slice<ChatMessage> findOlderSlice(String chatId, MessageCursor cursor, int size) {
+        return chatMessageRepository.findSliceByChatIdBeforeKey(chatId, cursor.getTimestamp(),
+                cursor.getMessageId(), keysetPage(size, Sort.Direction.DESC));
+    }
+
+    // Messages strictly after the cursor key, oldest first; no offset and no count query
+    private Slice<ChatMessage> findNewerSlice(String chatId, MessageCursor cursor, int size) {
+        return chatMessageRepository.findSliceByChatIdAfterKey(chatId, cursor.getTimestamp(),
+                cursor.getMessageId(), keysetPage(size, Sort.Direction.ASC));
+    }
+
+    // Always the first page: the cursor carries the position
+    private Pageable keysetPage(int size, Sort.Direction direction) {
+        return PageRequest.of(0, size, Sort.by(direction, "timestamp").and(Sort.by(direction, "messageId")));
+    }
+
+    private String cursorOf(ChatMessage message) {
+        return new MessageCursor(message.getTimestamp(), message.getMessageId()).encode();
+    }
+
+    // Build ChatMessage entity with a new message ID and server timestamp
+    private ChatMessage buildChatMessage(SendMessageRequest request) {
+        return ChatMessage.builder()
+                .messageId(snowflakeIdGenerator.nextIdStr())
+                .chatId(request.getChatId())
+                .senderId(request.getSenderId())
+                .receiverId(request.getReceiverId())
+                .messageType(request.getMessageType())
+                .content(request.getContent())
+                .mediaMetadata(convertMediaMetadata(request.getMediaMetadata()))
+                .timestamp(System.currentTimeMillis())
+                .clientTimestamp(request.getClientTimestamp())
+                .status(MessageStatus.DELIVERED_TO_SERVER)
+                .moderationStatus(ModerationStatus.PENDING)
+                .extraData(request.getExtraData())
+                .build();
+    }
+
     // Helper method to convert media metadata
     private ChatMessage.MediaMetadata convertMediaMetadata(SendMessageRequest.MediaMetadataRequest source) {
         if (source == null) {
@@ -196,6 +386,9 @@ public class MessageServiceImpl implements MessageService {
                 Integer currentUnreadCount = getCurrentUnreadCount(existingSession, receiverId);
                 chatSessionMapper.updateUnreadCount(request.getChatId(), receiverId, currentUnreadCount + 1);
             }
+
+            // Move the chat to the top of both users' inboxes
+            conversationInbox.touch(request.getChatId(), request.getSenderId(), request.getReceiverId(), timestamp);
         } catch (Exception e) {
             log.error("Failed to update chat session: chatId={}", request.getChatId(), e);
             // Don't throw exception to avoid affecting message saving
@@ -212,6 +405,25 @@ public class MessageServiceImpl implements MessageService {
         }
     }
 
+    // Send MQ message notification without blocking the group commit completion thread
+    private void sendMessageNotificationAsync(ChatMessage chatMessage) {
+        try {
+            rocketMQTemplate.asyncSend("message-topic", chatMessage, new SendCallback() {
+                @Override
+                public void onSuccess(SendResult sendResult) {
+                    log.debug("Send MQ message notification successfully: messageId={}", chatMessage.getMessageId());
+                }
+
+                @Override
+                public void onException(Throwable e) {
+                    log.error("Failed to send MQ message notification: messageId={}", chatMessage.getMessageId(), e);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to send MQ message notification: messageId={}", chatMessage.getMessageId(), e);
+        }
+    }
+
     // Convert to MessageDTO
     private MessageDTO convertToMessageDTO(ChatMessage chatMessage) {
         MessageDTO dto = MessageDTO.builder()
@@ -310,6 +522,9 @@ public class MessageServiceImpl implements MessageService {
             // Update message status to read in MongoDB
             updateMessageStatusInMongoDB(request.getChatId(), request.getUserId(), request.getMessageId());
 
+            // Cached statuses are now stale
+            recentMessageCache.invalidate(request.getChatId());
+
             log.info("Mark messages as read successfully: chatId={}, userId={}", request.getChatId(),
                     request.getUserId());
 
@@ -328,6 +543,19 @@ public class MessageServiceImpl implements MessageService {
         log.info("Get conversation list: userId={}, page={}, size={}",
                 request.getUserId(), request.getPage(), request.getSize());
 
+        // Read the order from the user's inbox instead of the OR + filesort + offset query
+        if (conversationInbox.isEnabled()) {
+            try {
+                PageResult<ConversationDTO> result = getConversationsFromInbox(request);
+                if (result != null) {
+                    return result;
+                }
+            } catch (Exception e) {
+                log.warn("Failed to read conversation inbox, falling back to chat_session: userId={}, error={}",
+                        request.getUserId(), e.getMessage());
+            }
+        }
+
         try {
             // Calculate offset
             int offset = (request.getPage() - 1) * request.getSize();
@@ -342,9 +570,7 @@ public class MessageServiceImpl implements MessageService {
             }
 
             // Convert to DTO
-            List<ConversationDTO> conversationDTOs = sessions.stream()
-                    .map(session -> convertToConversationDTO(session, request.getUserId()))
-                    .collect(Collectors.toList());
+            List<ConversationDTO> conversationDTOs = convertToConversationDTOs(sessions, request.getUserId());
 
             // Query total count
             long total = chatSessionMapper.countByUserId(request.getUserId());
@@ -356,6 +582,106 @@ public class MessageServiceImpl implements MessageService {
         }
     }
 
+    // Page through the user's inbox; null if the inbox is not available
+    private PageResult<ConversationDTO> getConversationsFromInbox(ConversationListRequest request) {
+        long total = conversationInbox.size(request.getUserId());
+        if (total < 0) {
+            return null;
+        }
+        long offset = (long) (request.getPage() - 1) * request.getSize();
+        List<ConversationInbox.Entry> entries = conversationInbox.range(request.getUserId(),
+                request.getBeforeTimestamp(), offset, request.getSize());
+        return PageResult.of(loadConversations(entries, request.getUserId()), total,
+                request.getPage(), request.getSize());
+    }
+
+    @Override
+    public CursorResult<ConversationDTO> getConversationsByCursor(ConversationCursorRequest request) {
+        log.info("Get conversation list by cursor: userId={}, cursor={}, size={}",
+                request.getUserId(), request.getCursor(), request.getSize());
+
+        ConversationCursor cursor = null;
+        if (StringUtils.hasText(request.getCursor())) {
+            try {
+                cursor = ConversationCursor.decode(request.getCursor());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid conversation cursor: userId={}, cursor={}", request.getUserId(), request.getCursor());
+                return CursorResult.empty(request.getSize());
+            }
+        }
+        Long timestamp = cursor != null ? cursor.getLastMessageTimestamp() : null;
+        String chatId = cursor != null ? cursor.getChatId() : null;
+
+        try {
+            // One extra entry tells whether there is another slice
+            List<ConversationInbox.Entry> entries = null;
+            if (conversationInbox.isEnabled()) {
+                try {
+                    if (conversationInbox.size(request.getUserId()) >= 0) {
+                        entries = conversationInbox.after(request.getUserId(), timestamp, chatId, request.getSize() + 1);
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to read conversation inbox, falling back to chat_session: userId={}, error={}",
+                            request.getUserId(), e.getMessage());
+                }
+            }
+            if (entries == null) {
+                entries = inboxAfterFromDatabase(request.getUserId(), timestamp, chatId, request.getSize() + 1);
+            }
+
+            boolean hasMore = entries.size() > request.getSize();
+            if (hasMore) {
+                entries = entries.subList(0, request.getSize());
+            }
+            String nextCursor = null;
+            if (hasMore) {
+                ConversationInbox.Entry last = entries.get(entries.size() - 1);
+                nextCursor = new ConversationCursor(last.getLastMessageTimestamp(), last.getChatId()).encode();
+            }
+
+            return CursorResult.of(loadConversations(entries, request.getUserId()), request.getSize(), nextCursor);
+        } catch (Exception e) {
+            log.error("Failed to get conversation list by cursor: userId={}", request.getUserId(), e);
+            return CursorResult.empty(request.getSize());
+        }
+    }
+
+    // Inbox order computed from chat_session, used when Redis is unavailable
+    private List<ConversationInbox.Entry> inboxAfterFromDatabase(String userId, Long timestamp, String chatId,
+            int count) {
+        return chatSessionMapper.selectInboxByUserId(userId).stream()
+                .map(session -> new ConversationInbox.Entry(session.getChatId(),
+                        session.getLastMessageTimestamp() != null ? session.getLastMessageTimestamp() : 0))
+                .filter(entry -> timestamp == null || entry.getLastMessageTimestamp() < timestamp
+                        || (entry.getLastMessageTimestamp() == timestamp && entry.getChatId().compareTo(chatId) < 0))
+                .sorted(Comparator.comparingLong(ConversationInbox.Entry::getLastMessageTimestamp)
+                        .thenComparing(ConversationInbox.Entry::getChatId)
+                        .reversed())
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    // Load chat sessions for inbox entries with one query, keeping the inbox order
+    private List<ConversationDTO> loadConversations(List<ConversationInbox.Entry> entries, String userId) {
+        if (entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> chatIds = entries.stream()
+                .map(ConversationInbox.Entry::getChatId)
+                .collect(Collectors.toList());
+        Map<String, ChatSession> sessions = chatSessionMapper.selectByChatIds(chatIds).stream()
+                .collect(Collectors.toMap(ChatSession::getChatId, Function.identity()));
+
+        List<ChatSession> ordered = new ArrayList<>(entries.size());
+        for (String chatId : chatIds) {
+            ChatSession session = sessions.get(chatId);
+            if (session != null) {
+                ordered.add(session);
+            }
+        }
+        return convertToConversationDTOs(ordered, userId);
+    }
+
     @Override
     public PageResult<MessageDTO> searchMessages(SearchMessagesRequest request) {
         log.info("Search messages: userId={}, keyword={}, chatId={}, page={}, size={}",
@@ -417,19 +743,38 @@ public class MessageServiceImpl implements MessageService {
         }
     }
 
-    // Convert to ConversationDTO
-    private ConversationDTO convertToConversationDTO(ChatSession session, String currentUserId) {
-        // Determine the other user ID
-        String otherUserId = currentUserId.equals(session.getUser1Id()) ? session.getUser2Id() : session.getUser1Id();
+    // Convert a page of sessions to ConversationDTOs, resolving the other users' profiles in one batch
+    private List<ConversationDTO> convertToConversationDTOs(List<ChatSession> sessions, String currentUserId) {
+        List<String> otherUserIds = sessions.stream()
+                .map(session -> getOtherUserId(session, currentUserId))
+                .collect(Collectors.toList());
+        Map<String, UserProfileCache.UserProfile> profiles = userProfileCache.getProfiles(otherUserIds);
+
+        List<ConversationDTO> conversationDTOs = new ArrayList<>(sessions.size());
+        for (ChatSession session : sessions) {
+            String otherUserId = getOtherUserId(session, currentUserId);
+            conversationDTOs.add(convertToConversationDTO(session, currentUserId, otherUserId,
+                    otherUserId != null ? profiles.get(otherUserId) : null));
+        }
+        return conversationDTOs;
+    }
+
+    // Determine the other user ID
+    private String getOtherUserId(ChatSession session, String currentUserId) {
+        return currentUserId.equals(session.getUser1Id()) ? session.getUser2Id() : session.getUser1Id();
+    }
 
+    // Convert to ConversationDTO
+    private ConversationDTO convertToConversationDTO(ChatSession session, String currentUserId,
+            String otherUserId, UserProfileCache.UserProfile otherUserProfile) {
         // Get current user's unread message count
         Integer unreadCount = getCurrentUnreadCount(session, currentUserId);
 
         return ConversationDTO.builder()
                 .chatId(session.getChatId())
                 .otherUserId(otherUserId)
-                .otherUserNickname(getUserNickname(otherUserId)) // Need to call user service to get
-                .otherUserAvatar(getUserAvatar(otherUserId)) // Need to call user service to get
+                .otherUserNickname(otherUserProfile != null ? otherUserProfile.getNickname() : "Unknown User")
+                .otherUserAvatar(otherUserProfile != null ? otherUserProfile.getAvatar() : null)
                 .lastMessageId(session.getLastMessageId())
                 .lastMessageContent(session.getLastMessageContent())
                 .lastMessageTimestamp(session.getLastMessageTimestamp())
@@ -448,51 +793,6 @@ public class MessageServiceImpl implements MessageService {
         return messagePage;
     }
 
-    // Get user nickname (need to call user service)
-    private String getUserNickname(String userId) {
-        if (userId == null || userId.isEmpty()) {
-            return "Unknown User";
-        }
-        String url = userServiceBaseUrl + "/api/v1/users/" + userId + "/username";
-        try {
-            ResponseEntity<UserNameResponse> response = restTemplate.getForEntity(url, UserNameResponse.class);
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null
-                    && response.getBody().getUsername() != null) {
-                return response.getBody().getUsername();
-            }
-        } catch (Exception e) {
-            log.warn("Failed to get user nickname, using default: userId={}", userId, e);
-        }
-        return "User " + userId;
-    }
-
-    // User name response body
-    private static class UserNameResponse {
-        private String userId;
-        private String username;
-
-        public String getUserId() {
-            return userId;
-        }
-
-        public void setUserId(String userId) {
-            this.userId = userId;
-        }
-
-        public String getUsername() {
-            return username;
-        }
-
-        public void setUsername(String username) {
-            this.username = username;
-        }
-    }
-
-    // Get user avatar (need to call user service)
-    private String getUserAvatar(String userId) {
-        return "https://example.com/" + userId + ".png";
-    }
-
     /**
      * Update message status to read in MongoDB
      * 
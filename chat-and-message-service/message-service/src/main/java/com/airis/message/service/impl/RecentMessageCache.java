@@ -0,0 +1,331 @@
+package com.airis.message.service.impl;
+
+import com.airis.message.dto.MessageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recent-message window cache
+ * Keeps the newest messages of each active chat in a capped Redis list so that first-page
+ * history loads skip the MongoDB page query and count. A chat's window is only filled from a
+ * MongoDB read (so it is never partial), appended to write-through on save, and dropped when
+ * message statuses change. A per-chat version counter, bumped by every write and invalidation,
+ * keeps a fill that raced with them from storing a stale window
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecentMessageCache {
+
+    private static final String KEY_PREFIX = "chat:recent:";
+
+    // Push onto an existing window only; a missing window is filled from MongoDB on the next read
+    private static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[3]) "
+                    + "redis.call('PEXPIRE', KEYS[3], ARGV[3]) "
+                    + "if redis.call('LPUSHX', KEYS[1], ARGV[1]) == 0 then return 0 end "
+                    + "redis.call('LTRIM', KEYS[1], 0, tonumber(ARGV[2]) - 1) "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[3]) "
+                    + "if redis.call('EXISTS', KEYS[2]) == 1 then "
+                    + "  redis.call('INCR', KEYS[2]) "
+                    + "  redis.call('PEXPIRE', KEYS[2], ARGV[3]) "
+                    + "end "
+                    + "return 1",
+            Long.class);
+
+    // Store a window read from MongoDB unless a write or invalidation happened since the read
+    private static final RedisScript<Long> FILL_SCRIPT = new DefaultRedisScript<>(
+            "local version = redis.call('GET', KEYS[3]) or '0' "
+                    + "if version ~= ARGV[1] or redis.call('EXISTS', KEYS[1]) == 1 then return 0 end "
+                    + "redis.call('RPUSH', KEYS[1], unpack(ARGV, 4)) "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[2]) "
+                    + "redis.call('SET', KEYS[2], ARGV[3], 'PX', ARGV[2]) "
+                    + "return 1",
+            Long.class);
+
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[3]) "
+                    + "redis.call('PEXPIRE', KEYS[3], ARGV[1]) "
+                    + "return redis.call('DEL', KEYS[1], KEYS[2])",
+            Long.class);
+
+    private static final Comparator<MessageDTO> NEWEST_FIRST = Comparator
+            .comparing(MessageDTO::getTimestamp, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(MessageDTO::getMessageId, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${airis.message.recent-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${airis.message.recent-cache.capacity:50}")
+    private int capacity;
+
+    @Value("${airis.message.recent-cache.ttl-ms:1800000}")
+    private long ttlMs;
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    private Counter mongoQueriesAvoidedCounter;
+
+    @PostConstruct
+    public void init() {
+        hitCounter = Counter.builder("chat.history.recent.cache.requests")
+                .description("First-page history loads looked up in the recent-message cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        missCounter = Counter.builder("chat.history.recent.cache.requests")
+                .description("First-page history loads looked up in the recent-message cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        mongoQueriesAvoidedCounter = Counter.builder("chat.history.mongo.queries.avoided")
+                .description("MongoDB queries (page reads and counts) answered by the recent-message cache")
+                .register(meterRegistry);
+        Gauge.builder("chat.history.recent.cache.hit.ratio", this, cache -> cache.hitRatio())
+                .description("Recent-message cache hit ratio since startup")
+                .register(meterRegistry);
+
+        log.info("Recent message cache: enabled={}, capacity={}, ttlMs={}", enabled, capacity, ttlMs);
+    }
+
+    /**
+     * Whether a first page of this size can be served from the cache
+     */
+    public boolean covers(int size) {
+        return enabled && size <= capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the cached window of a chat
+     *
+     * @param chatId Chat ID
+     * @param size   Number of newest messages wanted
+     * @return Window with up to size newest messages, or null on a miss
+     */
+    public Window get(String chatId, int size) {
+        try {
+            String totalValue = redisTemplate.opsForValue().get(totalKey(chatId));
+            List<String> values = totalValue != null
+                    ? redisTemplate.opsForList().range(listKey(chatId), 0, capacity - 1)
+                    : null;
+            if (values == null || values.isEmpty()) {
+                missCounter.increment();
+                return null;
+            }
+
+            List<MessageDTO> messages = new ArrayList<>(values.size());
+            for (String value : values) {
+                messages.add(objectMapper.readValue(value, MessageDTO.class));
+            }
+            // Concurrent write-through appends may land slightly out of order
+            messages.sort(NEWEST_FIRST);
+            hitCounter.increment();
+            return new Window(messages.subList(0, Math.min(size, messages.size())), Long.parseLong(totalValue));
+        } catch (Exception e) {
+            log.warn("Failed to read recent messages of chat {}: {}", chatId, e.getMessage());
+            missCounter.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Record how many MongoDB queries a cache hit replaced
+     */
+    public void recordMongoQueriesAvoided(int queries) {
+        mongoQueriesAvoidedCounter.increment(queries);
+    }
+
+    /**
+     * Read the chat's version before reading its window from MongoDB
+     *
+     * @return Version to pass to {@link #fill}
+     */
+    public String version(String chatId) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            String version = redisTemplate.opsForValue().get(versionKey(chatId));
+            return version != null ? version : "0";
+        } catch (Exception e) {
+            log.warn("Failed to read recent message version of chat {}: {}", chatId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Store the newest messages of a chat read from MongoDB
+     *
+     * @param version  Version read before the MongoDB read, null to skip
+     * @param messages Newest messages, newest first, at most capacity
+     * @param total    Total messages in the chat
+     */
+    public void fill(String chatId, String version, List<MessageDTO> messages, long total) {
+        if (!enabled || version == null || messages.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> args = new ArrayList<>(messages.size() + 3);
+            args.add(version);
+            args.add(String.valueOf(ttlMs));
+            args.add(String.valueOf(total));
+            for (MessageDTO message : messages) {
+                args.add(objectMapper.writeValueAsString(message));
+            }
+            redisTemplate.execute(FILL_SCRIPT, keys(chatId), args.toArray());
+        } catch (Exception e) {
+            log.warn("Failed to fill recent messages of chat {}: {}", chatId, e.getMessage());
+        }
+    }
+
+    /**
+     * Append a newly saved message to its chat's window (write-through)
+     */
+    public void append(MessageDTO message) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.execute(APPEND_SCRIPT, keys(message.getChatId()),
+                    objectMapper.writeValueAsString(message), String.valueOf(capacity), String.valueOf(ttlMs));
+        } catch (Exception e) {
+            log.warn("Failed to append message {} to recent messages of chat {}: {}",
+                    message.getMessageId(), message.getChatId(), e.getMessage());
+            // The window would miss this message, drop it instead
+            invalidate(message.getChatId());
+        }
+    }
+
+    /**
+     * Append a group commit's messages to their chats' windows (write-through) in one pipelined round trip
+     */
+    public void appendAll(List<MessageDTO> messages) {
+        if (!enabled || messages.isEmpty()) {
+            return;
+        }
+        try {
+            byte[] script = APPEND_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            List<byte[][]> appends = new ArrayList<>(messages.size());
+            for (MessageDTO message : messages) {
+                appends.add(keysAndArgs(keys(message.getChatId()), objectMapper.writeValueAsString(message),
+                        String.valueOf(capacity), String.valueOf(ttlMs)));
+            }
+            // EVAL rather than EVALSHA: a pipeline cannot fall back when the script is not loaded yet
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[][] keysAndArgs : appends) {
+                    connection.scriptingCommands().eval(script, ReturnType.INTEGER, 3, keysAndArgs);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            Set<String> chatIds = new LinkedHashSet<>();
+            for (MessageDTO message : messages) {
+                chatIds.add(message.getChatId());
+            }
+            log.warn("Failed to append {} messages to recent messages of {} chats: {}",
+                    messages.size(), chatIds.size(), e.getMessage());
+            // Some windows may miss a message, drop them all instead
+            for (String chatId : chatIds) {
+                invalidate(chatId);
+            }
+        }
+    }
+
+    /**
+     * Drop a chat's window after message statuses in it changed
+     */
+    public void invalidate(String chatId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.execute(INVALIDATE_SCRIPT, keys(chatId), String.valueOf(ttlMs));
+        } catch (Exception e) {
+            log.warn("Failed to invalidate recent messages of chat {}: {}", chatId, e.getMessage());
+        }
+    }
+
+    private double hitRatio() {
+        double hits = hitCounter.count();
+        double total = hits + missCounter.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private static byte[][] keysAndArgs(List<String> keys, String... args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            keysAndArgs[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < args.length; i++) {
+            keysAndArgs[keys.size() + i] = args[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return keysAndArgs;
+    }
+
+    // All keys of a chat share one hash slot so the scripts also run on Redis Cluster
+    private static List<String> keys(String chatId) {
+        return List.of(listKey(chatId), totalKey(chatId), versionKey(chatId));
+    }
+
+    private static String listKey(String chatId) {
+        return KEY_PREFIX + "{" + chatId + "}";
+    }
+
+    private static String totalKey(String chatId) {
+        return KEY_PREFIX + "{" + chatId + "}:total";
+    }
+
+    private static String versionKey(String chatId) {
+        return KEY_PREFIX + "{" + chatId + "}:version";
+    }
+
+    /**
+     * Cached newest messages of a chat
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Window {
+
+        /**
+         * Newest messages, newest first
+         */
+        private final List<MessageDTO> messages;
+
+        /**
+         * Total messages in the chat
+         */
+        private final long total;
+    }
+}
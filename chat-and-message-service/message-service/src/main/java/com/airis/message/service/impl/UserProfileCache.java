@@ -0,0 +1,304 @@
+package com.airis.message.service.impl;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User profile cache for conversation list enrichment
+ * Resolves all users of a page at once: cached profiles are returned directly, and the misses are
+ * fetched from the user service in parallel under one deadline, so a page costs at most one
+ * user service round trip regardless of its size. Profiles are refreshed in the background
+ * shortly before they expire, and lookups that failed or found no user are cached for a short
+ * time so a slow or missing user does not hit the user service on every page load
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserProfileCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${user.service.base-url:http://10.144.2.1:8081}")
+    private String userServiceBaseUrl;
+
+    @Value("${airis.message.user-profile.max-size:100000}")
+    private long maxSize;
+
+    // Time after which a profile is no longer served (milliseconds)
+    @Value("${airis.message.user-profile.ttl-ms:600000}")
+    private long ttlMs;
+
+    // Time after which a profile is reloaded in the background while the old one is still served
+    @Value("${airis.message.user-profile.refresh-ms:300000}")
+    private long refreshMs;
+
+    // Time a failed or not-found lookup is cached (milliseconds)
+    @Value("${airis.message.user-profile.negative-ttl-ms:30000}")
+    private long negativeTtlMs;
+
+    // Longest time a page waits for the profiles it is missing
+    @Value("${airis.message.user-profile.load-timeout-ms:1200}")
+    private long loadTimeoutMs;
+
+    @Value("${airis.message.user-profile.loader-threads:16}")
+    private int loaderThreads;
+
+    private final RestTemplate restTemplate = createRestTemplate();
+
+    private ExecutorService loaderExecutor;
+
+    private LoadingCache<String, UserProfile> profiles;
+
+    private static RestTemplate createRestTemplate() {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(1000); // 1s connect timeout
+        factory.setReadTimeout(1000); // 1s read timeout
+        return new RestTemplate(factory);
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        loaderExecutor = new ThreadPoolExecutor(loaderThreads, loaderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(1000), runnable -> {
+                    Thread thread = new Thread(runnable, "user-profile-loader-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        profiles = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .refreshAfterWrite(refreshMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build(new ProfileLoader());
+
+        FunctionCounter.builder("chat.user.profile.cache.requests", profiles, cache -> cache.stats().hitCount())
+                .description("User profile cache lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.user.profile.cache.requests", profiles, cache -> cache.stats().missCount())
+                .description("User profile cache lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("chat.user.profile.cache.size", profiles, LoadingCache::size)
+                .description("Cached user profiles")
+                .register(meterRegistry);
+
+        log.info("User profile cache: maxSize={}, ttlMs={}, refreshMs={}, negativeTtlMs={}, loadTimeoutMs={}",
+                maxSize, ttlMs, refreshMs, negativeTtlMs, loadTimeoutMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loaderExecutor.shutdownNow();
+    }
+
+    /**
+     * Resolve the profiles of several users at once
+     *
+     * @param userIds User IDs
+     * @return User ID -> profile, with a placeholder profile for users that could not be resolved
+     */
+    public Map<String, UserProfile> getProfiles(Collection<String> userIds) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (String userId : userIds) {
+            if (userId != null && !userId.isEmpty()) {
+                ids.add(userId);
+            }
+        }
+
+        Map<String, UserProfile> result = new HashMap<>();
+        try {
+            result.putAll(profiles.getAll(ids));
+        } catch (ExecutionException e) {
+            log.warn("Failed to resolve {} user profiles: {}", ids.size(), e.getMessage());
+        }
+
+        long now = System.currentTimeMillis();
+        for (String userId : ids) {
+            UserProfile profile = result.get(userId);
+            if (profile == null) {
+                result.put(userId, UserProfile.placeholder(userId, now));
+            } else if (!profile.isFound() && now - profile.getLoadedAt() >= negativeTtlMs) {
+                // Negative entries expire sooner than the cache TTL; serve it once more and reload
+                profiles.refresh(userId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fetch a user's profile from the user service
+     */
+    private UserProfile fetch(String userId) {
+        long now = System.currentTimeMillis();
+        String url = userServiceBaseUrl + "/api/v1/users/" + userId + "/username";
+        try {
+            ResponseEntity<UserNameResponse> response = restTemplate.getForEntity(url, UserNameResponse.class);
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null
+                    && response.getBody().getUsername() != null) {
+                return new UserProfile(userId, response.getBody().getUsername(), avatarOf(userId), true, now);
+            }
+        } catch (HttpClientErrorException.NotFound e) {
+            log.debug("User not found: userId={}", userId);
+        } catch (Exception e) {
+            log.warn("Failed to get user nickname, using default: userId={}, error={}", userId, e.getMessage());
+        }
+        return UserProfile.placeholder(userId, now);
+    }
+
+    // Get user avatar (need to call user service)
+    private static String avatarOf(String userId) {
+        return "https://example.com/" + userId + ".png";
+    }
+
+    /**
+     * Loads misses in parallel under one deadline and reloads expiring profiles in the background
+     */
+    private final class ProfileLoader extends CacheLoader<String, UserProfile> {
+
+        @Override
+        public UserProfile load(String userId) {
+            return fetch(userId);
+        }
+
+        @Override
+        public Map<String, UserProfile> loadAll(Iterable<? extends String> userIds) {
+            Map<String, CompletableFuture<UserProfile>> futures = new LinkedHashMap<>();
+            for (String userId : userIds) {
+                CompletableFuture<UserProfile> future;
+                try {
+                    future = CompletableFuture.supplyAsync(() -> fetch(userId), loaderExecutor);
+                } catch (Exception e) {
+                    // Loader saturated
+                    future = CompletableFuture.completedFuture(
+                            UserProfile.placeholder(userId, System.currentTimeMillis()));
+                }
+                futures.put(userId, future);
+            }
+
+            try {
+                CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                        .get(loadTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.warn("Timed out loading {} user profiles after {}ms", futures.size(), loadTimeoutMs);
+            } catch (Exception e) {
+                log.warn("Failed to load {} user profiles: {}", futures.size(), e.getMessage());
+            }
+
+            // Profiles still loading are served as placeholders until the negative TTL passes
+            long now = System.currentTimeMillis();
+            Map<String, UserProfile> loaded = new LinkedHashMap<>();
+            futures.forEach((userId, future) -> loaded.put(userId,
+                    future.getNow(UserProfile.placeholder(userId, now))));
+            return loaded;
+        }
+
+        @Override
+        public ListenableFuture<UserProfile> reload(String userId, UserProfile oldValue) {
+            ListenableFutureTask<UserProfile> task = ListenableFutureTask.create(() -> {
+                UserProfile profile = fetch(userId);
+                // Keep serving the last good profile if the user service is failing
+                return profile.isFound() || !oldValue.isFound() ? profile : oldValue;
+            });
+            loaderExecutor.execute(task);
+            return task;
+        }
+    }
+
+    /**
+     * Cached user profile
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class UserProfile {
+
+        /**
+         * User ID
+         */
+        private final String userId;
+
+        /**
+         * Nickname
+         */
+        private final String nickname;
+
+        /**
+         * Avatar URL
+         */
+        private final String avatar;
+
+        /**
+         * Whether the user service returned the profile
+         */
+        private final boolean found;
+
+        /**
+         * Time the profile was loaded
+         */
+        private final long loadedAt;
+
+        static UserProfile placeholder(String userId, long loadedAt) {
+            return new UserProfile(userId, "User " + userId, avatarOf(userId), false, loadedAt);
+        }
+    }
+
+    // User name response body
+    private static class UserNameResponse {
+        private String userId;
+        private String username;
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public void setUserId(String userId) {
+            this.userId = userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+    }
+}
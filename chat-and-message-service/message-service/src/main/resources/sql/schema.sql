@@ -31,7 +31,13 @@ CREATE TABLE IF NOT EXISTS chat_session (
 /*
 use airis_chat;
 
-db.chat_messages.createIndex({ "chatId": 1, "timestamp": -1 });
+// (chatId, timestamp desc, messageId desc) serves the keyset cursor pages and, through its prefix,
+// every query the old { chatId: 1, timestamp: -1 } index served, so the old index is dropped.
+// spring.data.mongodb.auto-index-creation is off, so the @CompoundIndex on ChatMessage is not created by the application
+db.chat_messages.createIndex({ "chatId": 1, "timestamp": -1, "messageId": -1 });
+if (db.chat_messages.getIndexes().some(index => index.name === "chatId_1_timestamp_-1")) {
+    db.chat_messages.dropIndex("chatId_1_timestamp_-1");
+}
 db.chat_messages.createIndex({ "messageId": 1 }, { unique: true });
 db.chat_messages.createIndex({ "senderId": 1 });
 db.chat_messages.createIndex({ "receiverId": 1 });
@@ -0,0 +1,111 @@
+package com.airis.message.benchmark;
+
+import com.airis.message.mapper.ChatSessionMapper;
+import com.airis.message.repository.ChatMessageRepository;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.session.Configuration;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.containers.MySQLContainer;
+
+/**
+ * MongoDB and MySQL in Docker for the benchmarks
+ * Wires the persistence beans by hand (no application context, so no Nacos, Dubbo, RocketMQ or Redis
+ * is needed): MongoTemplate and ChatMessageRepository over a MongoDB container, and ChatSessionMapper
+ * over a MySQL container initialised with sql/schema.sql and the application's MyBatis settings
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+final class BenchmarkEnvironment implements AutoCloseable {
+
+    private final MongoDBContainer mongo = new MongoDBContainer("mongo:6.0");
+
+    private final MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName("airis_message")
+            .withUsername("root")
+            .withPassword("airis")
+            .withInitScript("sql/schema.sql");
+
+    private MongoClient mongoClient;
+
+    private HikariDataSource dataSource;
+
+    private MongoTemplate mongoTemplate;
+
+    private ChatMessageRepository chatMessageRepository;
+
+    private ChatSessionMapper chatSessionMapper;
+
+    static boolean isDockerAvailable() {
+        try {
+            return DockerClientFactory.instance().isDockerAvailable();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    BenchmarkEnvironment start() throws Exception {
+        mongo.start();
+        mysql.start();
+
+        mongoClient = MongoClients.create(mongo.getReplicaSetUrl("airis_chat"));
+        mongoTemplate = new MongoTemplate(mongoClient, "airis_chat");
+        chatMessageRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(ChatMessageRepository.class);
+
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(mysql.getJdbcUrl());
+        dataSource.setUsername(mysql.getUsername());
+        dataSource.setPassword(mysql.getPassword());
+        dataSource.setMaximumPoolSize(16);
+
+        // Same settings as the mybatis block in application.yml
+        Configuration configuration = new Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setCacheEnabled(false);
+        configuration.setCallSettersOnNulls(true);
+
+        SqlSessionFactoryBean factory = new SqlSessionFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setConfiguration(configuration);
+        factory.setTypeAliasesPackage("com.airis.message.entity");
+        factory.setMapperLocations(new PathMatchingResourcePatternResolver().getResources("classpath:mapper/*.xml"));
+        chatSessionMapper = new SqlSessionTemplate(factory.getObject()).getMapper(ChatSessionMapper.class);
+        return this;
+    }
+
+    MongoTemplate mongoTemplate() {
+        return mongoTemplate;
+    }
+
+    ChatMessageRepository chatMessageRepository() {
+        return chatMessageRepository;
+    }
+
+    ChatSessionMapper chatSessionMapper() {
+        return chatSessionMapper;
+    }
+
+    HikariDataSource dataSource() {
+        return dataSource;
+    }
+
+    @Override
+    public void close() {
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+        if (dataSource != null) {
+            dataSource.close();
+        }
+        mongo.stop();
+        mysql.stop();
+    }
+}
@@ -0,0 +1,173 @@
+package com.airis.message.benchmark;
+
+import com.airis.message.entity.ChatMessage;
+import com.airis.message.enums.MessageStatus;
+import com.airis.message.enums.MessageType;
+import com.airis.message.enums.ModerationStatus;
+import com.airis.message.service.impl.ConversationInbox;
+import com.airis.message.service.impl.MessageGroupCommitter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group-commit throughput benchmark
+ * Drives MessageGroupCommitter against real MongoDB and MySQL with closed-loop producers (each
+ * waits for its save before sending the next, like concurrent send requests) and prints
+ * messages per second for each max-batch; max-batch 1 is the one-write-per-message baseline.
+ * Requires Docker and only runs when asked for:
+ * <pre>
+ * mvn -pl message-service test -Dtest=GroupCommitBenchmark -Dbenchmark=true -Dsurefire.failIfNoSpecifiedTests=false
+ * </pre>
+ * Tunables (system properties): benchmark.producers (64), benchmark.chats (10000),
+ * benchmark.warmup (5000), benchmark.messages (50000), benchmark.batches (1,16,64,256)
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class GroupCommitBenchmark {
+
+    private static final int PRODUCERS = Integer.getInteger("benchmark.producers", 64);
+    private static final int CHATS = Integer.getInteger("benchmark.chats", 10000);
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 5000);
+    private static final int MESSAGES = Integer.getInteger("benchmark.messages", 50000);
+    private static final String BATCHES = System.getProperty("benchmark.batches", "1,16,64,256");
+
+    private static BenchmarkEnvironment environment;
+
+    @BeforeAll
+    static void startEnvironment() throws Exception {
+        Assumptions.assumeTrue(BenchmarkEnvironment.isDockerAvailable(), "Docker is not available");
+        environment = new BenchmarkEnvironment().start();
+    }
+
+    @AfterAll
+    static void stopEnvironment() {
+        if (environment != null) {
+            environment.close();
+        }
+    }
+
+    @Test
+    void throughputByBatchSize() throws Exception {
+        List<String> results = new ArrayList<>();
+        for (String value : BATCHES.split(",")) {
+            int maxBatch = Integer.parseInt(value.trim());
+            results.add(run(maxBatch));
+        }
+
+        System.out.printf("%nGroup commit: %d producers, %d chats, %d messages per run%n",
+                PRODUCERS, CHATS, MESSAGES);
+        System.out.printf("%10s %12s %12s %12s%n", "max-batch", "msgs/s", "mean batch", "mean flush");
+        results.forEach(System.out::println);
+    }
+
+    private String run(int maxBatch) throws Exception {
+        clearStores();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // No Redis here; the inbox stays disabled so only MongoDB and MySQL are measured
+        ConversationInbox inbox = new ConversationInbox(null, environment.chatSessionMapper(), meterRegistry);
+        MessageGroupCommitter committer = new MessageGroupCommitter(environment.mongoTemplate(),
+                environment.chatMessageRepository(), environment.chatSessionMapper(), meterRegistry, inbox);
+        ReflectionTestUtils.setField(committer, "enabled", true);
+        ReflectionTestUtils.setField(committer, "maxLatencyMs", 2L);
+        ReflectionTestUtils.setField(committer, "maxBatch", maxBatch);
+        ReflectionTestUtils.setField(committer, "queueCapacity", 10000);
+        ReflectionTestUtils.setField(committer, "flusherThreads", 2);
+        committer.init();
+
+        try {
+            drive(committer, WARMUP);
+            DistributionSummary batchSize = meterRegistry.get("message.group.commit.batch.size").summary();
+            long batchesBefore = batchSize.count();
+            double messagesBefore = batchSize.totalAmount();
+            double flushBefore = meterRegistry.get("message.group.commit.flush").timer()
+                    .totalTime(TimeUnit.MILLISECONDS);
+
+            long elapsedNanos = drive(committer, MESSAGES);
+
+            long batches = batchSize.count() - batchesBefore;
+            double meanBatch = (batchSize.totalAmount() - messagesBefore) / Math.max(1, batches);
+            double meanFlushMs = (meterRegistry.get("message.group.commit.flush").timer()
+                    .totalTime(TimeUnit.MILLISECONDS) - flushBefore) / Math.max(1, batches);
+            double throughput = MESSAGES / (elapsedNanos / 1_000_000_000.0);
+            return String.format("%10d %12.0f %12.1f %10.2fms", maxBatch, throughput, meanBatch, meanFlushMs);
+        } finally {
+            committer.shutdown();
+        }
+    }
+
+    /**
+     * Send the given number of messages from PRODUCERS threads, each waiting for its previous save
+     *
+     * @return Elapsed time in nanoseconds
+     */
+    private long drive(MessageGroupCommitter committer, int total) throws InterruptedException {
+        AtomicLong remaining = new AtomicLong(total);
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(PRODUCERS);
+        long start = System.nanoTime();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    long seq;
+                    while ((seq = remaining.decrementAndGet()) >= 0) {
+                        try {
+                            committer.submit(message(producer, seq), "benchmark").join();
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "benchmark-producer-" + p);
+            thread.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        if (failures.get() > 0) {
+            throw new IllegalStateException(failures.get() + " of " + total + " saves failed");
+        }
+        return elapsed;
+    }
+
+    private static ChatMessage message(int producer, long seq) {
+        int chat = (int) ((seq * 31 + producer) % CHATS);
+        String user1 = "bench-user-" + chat;
+        String user2 = "bench-peer-" + chat;
+        boolean fromUser1 = (seq & 1) == 0;
+        return ChatMessage.builder()
+                .messageId(UUID.randomUUID().toString())
+                .chatId("bench-chat-" + chat)
+                .senderId(fromUser1 ? user1 : user2)
+                .receiverId(fromUser1 ? user2 : user1)
+                .messageType(MessageType.TEXT)
+                .content("benchmark message " + seq)
+                .timestamp(System.currentTimeMillis())
+                .status(MessageStatus.SENT)
+                .moderationStatus(ModerationStatus.APPROVED)
+                .build();
+    }
+
+    private static void clearStores() {
+        environment.mongoTemplate().dropCollection(ChatMessage.class);
+        new JdbcTemplate(environment.dataSource()).execute("TRUNCATE TABLE chat_session");
+    }
+}
@@ -0,0 +1,241 @@
+package com.airis.message.benchmark;
+
+import com.airis.message.entity.ChatMessage;
+import com.airis.message.enums.MessageStatus;
+import com.airis.message.enums.MessageType;
+import com.airis.message.enums.ModerationStatus;
+import com.airis.message.repository.ChatMessageRepository;
+import com.mongodb.ExplainVerbosity;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keyset pagination benchmark
+ * Seeds one chat with benchmark.messages messages (1,000,000 by default) in MongoDB, creates the
+ * chat_messages indexes from sql/schema.sql, then compares reading one page at increasing depths
+ * with the page-based query (skip + count) and with the keyset cursor query. For each depth it also
+ * prints the documents and index keys MongoDB examined for the keyset query, so whether it is served
+ * from the (chatId, timestamp desc, messageId desc) index can be checked rather than assumed. Finally
+ * it walks the whole chat with cursors and checks every message is returned exactly once; several
+ * messages share each timestamp, so the messageId tie-break is exercised.
+ * Requires Docker and only runs when asked for:
+ * <pre>
+ * mvn -pl message-service test -Dtest=KeysetPaginationBenchmark -Dbenchmark=true -Dsurefire.failIfNoSpecifiedTests=false
+ * </pre>
+ * Tunables (system properties): benchmark.messages (1000000), benchmark.page-size (20),
+ * benchmark.depths (0,1000,10000,100000,500000,999000), benchmark.samples (20), benchmark.walk-page-size (500)
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class KeysetPaginationBenchmark {
+
+    private static final int MESSAGES = Integer.getInteger("benchmark.messages", 1_000_000);
+    private static final int PAGE_SIZE = Integer.getInteger("benchmark.page-size", 20);
+    private static final String DEPTHS = System.getProperty("benchmark.depths", "0,1000,10000,100000,500000,999000");
+    private static final int SAMPLES = Integer.getInteger("benchmark.samples", 20);
+    private static final int WALK_PAGE_SIZE = Integer.getInteger("benchmark.walk-page-size", 500);
+
+    private static final String CHAT_ID = "bench-chat";
+    // Messages per millisecond, so pages regularly end in the middle of a timestamp
+    private static final int MESSAGES_PER_TIMESTAMP = 4;
+    private static final int INSERT_CHUNK = 10_000;
+    private static final long BASE_TIMESTAMP = 1_700_000_000_000L;
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("messageId"));
+
+    private static BenchmarkEnvironment environment;
+
+    @BeforeAll
+    static void startEnvironment() throws Exception {
+        Assumptions.assumeTrue(BenchmarkEnvironment.isDockerAvailable(), "Docker is not available");
+        environment = new BenchmarkEnvironment().start();
+        createIndexes();
+        seed();
+    }
+
+    @AfterAll
+    static void stopEnvironment() {
+        if (environment != null) {
+            environment.close();
+        }
+    }
+
+    @Test
+    void pageLatencyByDepth() {
+        ChatMessageRepository repository = environment.chatMessageRepository();
+        List<String> results = new ArrayList<>();
+        for (String value : DEPTHS.split(",")) {
+            int depth = Math.min(Integer.parseInt(value.trim()), MESSAGES - PAGE_SIZE);
+            // The page-based endpoint can only address multiples of the page size
+            int page = depth / PAGE_SIZE;
+            ChatMessage anchor = depth == 0 ? null : messageAt(page * PAGE_SIZE - 1);
+
+            double offsetMs = meanMillis(() -> repository.findByChatIdOrderByTimestampDesc(CHAT_ID,
+                    PageRequest.of(page, PAGE_SIZE, NEWEST_FIRST)).getContent());
+            double keysetMs = meanMillis(() -> keysetSlice(repository, anchor, PAGE_SIZE).getContent());
+            Document stats = explainKeyset(anchor, PAGE_SIZE);
+            results.add(String.format("%10d %12.2fms %12.2fms %12d %12d %12s", page * PAGE_SIZE, offsetMs, keysetMs,
+                    stats.get("totalDocsExamined", Number.class).longValue(),
+                    stats.get("totalKeysExamined", Number.class).longValue(),
+                    stats.getString("plan")));
+        }
+
+        System.out.printf("%nKeyset pagination: %d messages in one chat, page size %d, mean of %d reads%n",
+                MESSAGES, PAGE_SIZE, SAMPLES);
+        System.out.printf("%10s %14s %14s %12s %12s %12s%n",
+                "depth", "page-based", "keyset", "docs exam.", "keys exam.", "plan");
+        results.forEach(System.out::println);
+    }
+
+    @Test
+    void cursorWalkReturnsEveryMessageOnce() {
+        ChatMessageRepository repository = environment.chatMessageRepository();
+        long start = System.nanoTime();
+        int seen = 0;
+        int slices = 0;
+        ChatMessage last = null;
+        Slice<ChatMessage> slice;
+        do {
+            slice = keysetSlice(repository, last, WALK_PAGE_SIZE);
+            for (ChatMessage message : slice.getContent()) {
+                // Newest first, so each message is one step older than the previous one
+                long expected = MESSAGES - 1L - seen;
+                if (!message.getMessageId().equals(messageId(expected))) {
+                    throw new IllegalStateException("Expected message " + messageId(expected) + " at position "
+                            + seen + " but got " + message.getMessageId());
+                }
+                seen++;
+                last = message;
+            }
+            slices++;
+        } while (slice.hasNext());
+        double elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        if (seen != MESSAGES) {
+            throw new IllegalStateException("Cursor walk returned " + seen + " of " + MESSAGES + " messages");
+        }
+        System.out.printf("%nCursor walk: %d messages in %d slices of %d, %.0fms (%.2fms per slice)%n",
+                seen, slices, WALK_PAGE_SIZE, elapsedMs, elapsedMs / slices);
+    }
+
+    /**
+     * Same query the cursor endpoint issues for the OLDER direction
+     */
+    private static Slice<ChatMessage> keysetSlice(ChatMessageRepository repository, ChatMessage after, int size) {
+        Pageable pageable = PageRequest.of(0, size, NEWEST_FIRST);
+        return after == null
+                ? repository.findSliceByChatId(CHAT_ID, pageable)
+                : repository.findSliceByChatIdBeforeKey(CHAT_ID, after.getTimestamp(), after.getMessageId(), pageable);
+    }
+
+    /**
+     * Explain the keyset query with executionStats
+     *
+     * @return totalDocsExamined, totalKeysExamined and the winning plan: IXSCAN when the index serves both
+     *         the predicate and the order, IXSCAN+SORT when the results are sorted in memory, or COLLSCAN
+     */
+    private static Document explainKeyset(ChatMessage after, int size) {
+        Document filter = new Document("chatId", CHAT_ID);
+        if (after != null) {
+            filter.append("$or", List.of(
+                    new Document("timestamp", new Document("$lt", after.getTimestamp())),
+                    new Document("timestamp", after.getTimestamp())
+                            .append("messageId", new Document("$lt", after.getMessageId()))));
+        }
+        Document explain = environment.mongoTemplate().getCollection("chat_messages")
+                .find(filter)
+                .sort(new Document("timestamp", -1).append("messageId", -1))
+                .limit(size + 1)
+                .explain(ExplainVerbosity.EXECUTION_STATS);
+        Document executionStats = explain.get("executionStats", Document.class);
+        String winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        String plan = winningPlan.contains("\"COLLSCAN\"") ? "COLLSCAN"
+                : winningPlan.contains("\"SORT\"") ? "IXSCAN+SORT" : "IXSCAN";
+        return new Document("totalDocsExamined", executionStats.get("totalDocsExamined"))
+                .append("totalKeysExamined", executionStats.get("totalKeysExamined"))
+                .append("plan", plan);
+    }
+
+    private static double meanMillis(Runnable read) {
+        // One untimed read so the first sample does not pay for loading the index pages
+        read.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            read.run();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / SAMPLES;
+    }
+
+    /**
+     * The message at the given position in newest-first order
+     */
+    private static ChatMessage messageAt(int position) {
+        return message(MESSAGES - 1L - position);
+    }
+
+    /**
+     * Create the chat_messages indexes the way sql/schema.sql does; auto-index-creation is off
+     */
+    private static void createIndexes() {
+        IndexOperations indexOps = environment.mongoTemplate().indexOps(ChatMessage.class);
+        indexOps.ensureIndex(new Index().on("chatId", Sort.Direction.ASC)
+                .on("timestamp", Sort.Direction.DESC).on("messageId", Sort.Direction.DESC));
+        indexOps.ensureIndex(new Index().on("messageId", Sort.Direction.ASC).unique());
+    }
+
+    private static void seed() {
+        long start = System.nanoTime();
+        List<ChatMessage> chunk = new ArrayList<>(INSERT_CHUNK);
+        for (long i = 0; i < MESSAGES; i++) {
+            chunk.add(message(i));
+            if (chunk.size() == INSERT_CHUNK) {
+                environment.mongoTemplate().insert(chunk, ChatMessage.class);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            environment.mongoTemplate().insert(chunk, ChatMessage.class);
+        }
+        System.out.printf("Seeded %d messages in %.1fs%n", MESSAGES, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Message i of the chat; a higher i is newer, and i orders the same way as (timestamp, messageId)
+     */
+    private static ChatMessage message(long i) {
+        boolean fromUser1 = (i & 1) == 0;
+        return ChatMessage.builder()
+                .messageId(messageId(i))
+                .chatId(CHAT_ID)
+                .senderId(fromUser1 ? "bench-user" : "bench-peer")
+                .receiverId(fromUser1 ? "bench-peer" : "bench-user")
+                .messageType(MessageType.TEXT)
+                .content("benchmark message " + i)
+                .timestamp(BASE_TIMESTAMP + i / MESSAGES_PER_TIMESTAMP)
+                .status(MessageStatus.SENT)
+                .moderationStatus(ModerationStatus.APPROVED)
+                .build();
+    }
+
+    /**
+     * Fixed-width numeric IDs, like snowflake IDs, so string order matches numeric order
+     */
+    private static String messageId(long i) {
+        return String.format("%019d", i);
+    }
+}
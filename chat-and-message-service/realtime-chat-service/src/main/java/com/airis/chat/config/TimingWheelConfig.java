@@ -0,0 +1,46 @@
+package com.airis.chat.config;
+
+import com.airis.chat.util.HashedTimingWheel;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间轮配置
+ * 整个服务共享一个时间轮，承载推送失败记录过期、连接交接超时等按用户的短期定时任务
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Configuration
+public class TimingWheelConfig {
+
+    @Value("${airis.chat.timer.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${airis.chat.timer.ticks-per-wheel:512}")
+    private int ticksPerWheel;
+
+    @Bean(destroyMethod = "stop")
+    public HashedTimingWheel chatTimingWheel(MeterRegistry meterRegistry) {
+        HashedTimingWheel timingWheel = new HashedTimingWheel("chat-timing-wheel", tickMs,
+                TimeUnit.MILLISECONDS, ticksPerWheel);
+
+        Gauge.builder("chat.timer.pending", timingWheel, HashedTimingWheel::getPendingTimeouts)
+                .description("Timeouts waiting on the timing wheel")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.timer.expired", timingWheel, HashedTimingWheel::getExpiredTotal)
+                .description("Timeouts that fired")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.timer.cancelled", timingWheel, HashedTimingWheel::getCancelledTotal)
+                .description("Timeouts cancelled before firing")
+                .register(meterRegistry);
+
+        return timingWheel;
+    }
+}
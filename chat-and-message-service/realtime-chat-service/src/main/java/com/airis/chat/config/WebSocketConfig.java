@@ -1,12 +1,15 @@
 package com.airis.chat.config;
 
 import com.airis.chat.websocket.ChatWebSocketHandler;
+import com.airis.chat.websocket.CompressionPolicy;
+import com.airis.chat.websocket.DeflateNegotiationUpgradeStrategy;
 import com.airis.chat.websocket.HandshakeInterceptor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 /**
  * WebSocket配置类
@@ -21,11 +24,13 @@ public class WebSocketConfig implements WebSocketConfigurer {
     
     private final ChatWebSocketHandler chatWebSocketHandler;
     private final HandshakeInterceptor handshakeInterceptor;
+    private final CompressionPolicy compressionPolicy;
     
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(chatWebSocketHandler, "/ws/chat")
                 .addInterceptors(handshakeInterceptor)
+                .setHandshakeHandler(new DefaultHandshakeHandler(new DeflateNegotiationUpgradeStrategy(compressionPolicy)))
                 .setAllowedOrigins("*");
     }
 } 
\ No newline at end of file
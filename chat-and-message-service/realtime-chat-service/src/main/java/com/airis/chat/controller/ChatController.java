@@ -1,17 +1,28 @@
 package com.airis.chat.controller;
 
 import com.airis.chat.entity.NotificationMessage;
+import com.airis.chat.entity.WebSocketMessage;
+import com.airis.chat.request.BroadcastRequest;
+import com.airis.chat.response.BroadcastResponse;
 import com.airis.chat.response.OnlineStatusResponse;
 import com.airis.chat.security.SkipAuthentication;
+import com.airis.chat.service.BroadcastService;
 import com.airis.chat.service.MediaServiceClient;
 import com.airis.chat.service.OfflinePushService;
 import com.airis.chat.service.UserOnlineService;
 import com.airis.chat.service.WebSocketSessionManager;
+import com.airis.chat.websocket.OutboundMessageDispatcher;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,6 +33,7 @@ import java.util.Map;
  * @author AIRIS Team
  * @since 1.0.0
  */
+@Slf4j
 @RestController
 @RequestMapping("/api/chat")
 @RequiredArgsConstructor
@@ -32,6 +44,12 @@ public class ChatController {
     private final WebSocketSessionManager sessionManager;
     private final MediaServiceClient mediaServiceClient;
     private final OfflinePushService offlinePushService;
+    private final OutboundMessageDispatcher outboundDispatcher;
+    private final BroadcastService broadcastService;
+
+    // 内部服务调用广播接口时携带的令牌，未配置时广播接口不可用
+    @Value("${airis.chat.broadcast.internal-token:}")
+    private String broadcastInternalToken;
 
     /**
      * 健康检查
@@ -75,6 +93,49 @@ public class ChatController {
         return stats;
     }
 
+    /**
+     * 获取出站队列统计（队列深度、丢弃帧数、驱逐会话数）
+     */
+    @GetMapping("/outbound/stats")
+    public Map<String, Object> getOutboundStats() {
+        Map<String, Object> stats = new HashMap<>(outboundDispatcher.getStats());
+        stats.put("timestamp", System.currentTimeMillis());
+        return stats;
+    }
+
+    /**
+     * 广播系统通知给多个用户（跨节点）
+     * 仅供内部服务调用：通知以system身份发出，不接受普通用户的JWT，必须携带X-Internal-Token
+     */
+    @PostMapping("/broadcast")
+    @SkipAuthentication
+    public ResponseEntity<BroadcastResponse> broadcast(
+            @RequestHeader(value = "X-Internal-Token", required = false) String internalToken,
+            @Valid @RequestBody BroadcastRequest request) {
+        if (!isInternalCaller(internalToken)) {
+            log.warn("Rejected broadcast without a valid internal token");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        WebSocketMessage message = WebSocketMessage.builder()
+                .type(WebSocketMessage.WebSocketMessageType.SYSTEM_NOTIFICATION)
+                .senderId("system")
+                .content(request.getContent())
+                .extraData(request.getExtraData())
+                .timestamp(System.currentTimeMillis())
+                .build();
+
+        return ResponseEntity.ok(broadcastService.broadcast(request.getUserIds(), message));
+    }
+
+    private boolean isInternalCaller(String internalToken) {
+        if (broadcastInternalToken == null || broadcastInternalToken.isBlank() || internalToken == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(broadcastInternalToken.getBytes(StandardCharsets.UTF_8),
+                internalToken.getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * 上传媒体文件
      */
@@ -0,0 +1,49 @@
+package com.airis.chat.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 广播信封实体
+ * 一次广播发往同一节点的所有接收者合并为一个信封，消息体只序列化一次
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BroadcastEnvelope {
+
+    /**
+     * 目标节点上的接收者ID列表
+     */
+    private List<String> receiverIds;
+
+    /**
+     * WebSocket消息类型
+     */
+    private WebSocketMessage.WebSocketMessageType messageType;
+
+    /**
+     * 已经序列化好的WebSocketMessage JSON
+     */
+    private String payload;
+
+    /**
+     * 源节点ID（发起广播的节点）
+     */
+    private String sourceNodeId;
+
+    /**
+     * 广播时间戳
+     */
+    private Long timestamp;
+}
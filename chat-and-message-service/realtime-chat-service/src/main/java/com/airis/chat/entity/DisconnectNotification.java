@@ -40,6 +40,11 @@ public class DisconnectNotification {
      */
     private String reason;
 
+    /**
+     * 新连接的纪元，接收节点只断开纪元更小的旧会话
+     */
+    private Long epoch;
+
     /**
      * 通知时间戳
      */
@@ -0,0 +1,46 @@
+package com.airis.chat.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 节点间消息信封
+ * 发往同一节点的聊天消息、已读回执、断开连接通知和广播信封共用一个节点topic，通过类型区分
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class NodeEnvelope {
+
+    /**
+     * 信封类型
+     */
+    private Type type;
+
+    /**
+     * 消息内容：CHAT_MESSAGE和READ_RECEIPT为WebSocketMessage，DISCONNECT_NOTIFY为DisconnectNotification，
+     * BROADCAST为BroadcastEnvelope
+     */
+    private JsonNode payload;
+
+    /**
+     * 消息已经在节点之间转发的次数
+     */
+    private int hops;
+
+    public enum Type {
+        CHAT_MESSAGE,
+        READ_RECEIPT,
+        DISCONNECT_NOTIFY,
+        BROADCAST
+    }
+}
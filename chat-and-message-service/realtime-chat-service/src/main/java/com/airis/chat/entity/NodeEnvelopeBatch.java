@@ -0,0 +1,59 @@
+package com.airis.chat.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 节点间消息批次
+ * 同一时间窗口内发往同一节点同一通道的信封合并为一条RocketMQ消息，按加入顺序投递
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class NodeEnvelopeBatch {
+
+    /**
+     * 批次ID，中继确认超时回退到RocketMQ时同一批次可能被投递两次，接收方据此去重
+     */
+    private String batchId;
+
+    /**
+     * 源节点ID（发送批次的节点）
+     */
+    private String sourceNodeId;
+
+    /**
+     * 发送通道ID（源节点、进程实例和通道号），同一通道的批次按序号顺序处理
+     */
+    private String laneId;
+
+    /**
+     * 批次在发送通道内的序号，从1开始递增
+     */
+    private Long sequence;
+
+    /**
+     * 经中继发送时必须排在其后的RocketMQ批次序号，0表示无需等待
+     */
+    private Long afterSequence;
+
+    /**
+     * 按加入顺序排列的信封
+     */
+    private List<NodeEnvelope> envelopes;
+
+    /**
+     * 发送时间戳
+     */
+    private Long timestamp;
+}
@@ -0,0 +1,42 @@
+package com.airis.chat.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 用户路由变更事件
+ * 用户切换节点或下线时通过Redis发布订阅广播给所有节点，使各节点的路由缓存失效
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class RouteChangeEvent {
+
+    /**
+     * 路由发生变化的用户ID
+     */
+    private String userId;
+
+    /**
+     * 用户新的所在节点，为null表示用户已下线
+     */
+    private String nodeId;
+
+    /**
+     * 源节点ID（发布事件的节点）
+     */
+    private String sourceNodeId;
+
+    /**
+     * 事件时间戳
+     */
+    private Long timestamp;
+}
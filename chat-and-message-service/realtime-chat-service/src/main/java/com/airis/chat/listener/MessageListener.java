@@ -1,20 +1,43 @@
 package com.airis.chat.listener;
 
+import com.airis.chat.entity.BroadcastEnvelope;
 import com.airis.chat.entity.DisconnectNotification;
+import com.airis.chat.entity.NodeEnvelope;
+import com.airis.chat.entity.NodeEnvelopeBatch;
 import com.airis.chat.entity.WebSocketMessage;
+import com.airis.chat.producer.MessageProducer;
+import com.airis.chat.relay.NodeRelay;
+import com.airis.chat.service.MessageRoute;
+import com.airis.chat.service.OfflinePushService;
+import com.airis.chat.service.RouteCache;
+import com.airis.chat.service.UserOnlineService;
 import com.airis.chat.service.WebSocketSessionManager;
+import com.airis.chat.websocket.OutboundFrame;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.spring.annotation.ConsumeMode;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * RocketMQ消息监听器
  * 接收来自其他服务器节点的消息
  * 使用条件处理确保消息被正确处理
+ * 节点的统一topic（TOPIC_CHAT_NODE_{server-id}）承载所有类型的信封批次；
+ * 按类型划分的旧topic继续监听，兼容滚动升级期间尚未启用节点间传输的节点
  *
  * @author AIRIS Team
  * @since 1.0.0
@@ -26,10 +49,110 @@ public class MessageListener {
 
     private final WebSocketSessionManager sessionManager;
     private final ObjectMapper objectMapper;
+    private final RouteCache routeCache;
+    private final UserOnlineService userOnlineService;
+    private final MessageProducer messageProducer;
+    private final OfflinePushService offlinePushService;
+    private final MeterRegistry meterRegistry;
+    private final NodeRelay nodeRelay;
+    private final NodeBatchSequencer batchSequencer;
 
     @Value("${airis.chat.server-id:server-1}")
     private String serverId;
 
+    // 投递失败的消息最多在节点之间转发的次数，超过后按离线处理
+    @Value("${airis.chat.forward.max-hops:2}")
+    private int maxForwardHops;
+
+    // 记住已处理批次ID的时间（毫秒），需长于中继回退到RocketMQ后重复批次到达的延迟
+    @Value("${airis.chat.node-transport.dedup-window-ms:600000}")
+    private long dedupWindowMs;
+
+    @Value("${airis.chat.node-transport.dedup-max-size:100000}")
+    private long dedupMaxSize;
+
+    // 最近处理过的批次ID
+    private Cache<String, Boolean> processedBatches;
+
+    private Counter duplicateBatchCounter;
+
+    /**
+     * 节点直连中继收到的批次与节点topic的批次按同样的方式处理，经排序后按发送顺序处理
+     */
+    @PostConstruct
+    public void registerRelayHandler() {
+        processedBatches = CacheBuilder.newBuilder()
+                .maximumSize(dedupMaxSize)
+                .expireAfterWrite(dedupWindowMs, TimeUnit.MILLISECONDS)
+                .build();
+        duplicateBatchCounter = Counter.builder("chat.node.transport.duplicates")
+                .description("Node envelope batches dropped because they were already processed")
+                .register(meterRegistry);
+        batchSequencer.setProcessor(this::handleEnvelopeBatch);
+        nodeRelay.setBatchHandler(batchSequencer::onRelayBatch);
+    }
+
+    /**
+     * 监听节点消息批次
+     * 每个节点只监听属于自己的topic，一条消息携带多个信封，按加入顺序依次处理
+     * 顺序消费保证同一通道（同一会话）的批次按发送顺序处理
+     * topic格式: TOPIC_CHAT_NODE_{server-id}
+     */
+    @Component
+    @RocketMQMessageListener(topic = "TOPIC_CHAT_NODE_${airis.chat.server-id:server-1}", consumerGroup = "realtime-chat-node-group-${airis.chat.server-id:server-1}", consumeMode = ConsumeMode.ORDERLY)
+    public class NodeMessageListener implements RocketMQListener<MessageExt> {
+
+        @Override
+        public void onMessage(MessageExt messageExt) {
+            try {
+                batchSequencer.onMqBatch(objectMapper.readValue(messageExt.getBody(), NodeEnvelopeBatch.class));
+            } catch (Exception e) {
+                log.error("Failed to decode node envelope batch on node: " + serverId, e);
+            }
+        }
+    }
+
+    /**
+     * 处理一个节点消息批次，按加入顺序依次处理其中的信封
+     * 同一批次可能先后经中继和RocketMQ到达，只处理第一次
+     */
+    public void handleEnvelopeBatch(NodeEnvelopeBatch batch) {
+        if (batch.getEnvelopes() == null) {
+            return;
+        }
+        if (batch.getBatchId() != null
+                && processedBatches.asMap().putIfAbsent(batch.getBatchId(), Boolean.TRUE) != null) {
+            duplicateBatchCounter.increment();
+            log.debug("Dropping duplicate batch {} from node {}", batch.getBatchId(), batch.getSourceNodeId());
+            return;
+        }
+
+        log.debug("Received {} envelopes from node {} on {}",
+                batch.getEnvelopes().size(), batch.getSourceNodeId(), serverId);
+        for (NodeEnvelope envelope : batch.getEnvelopes()) {
+            // 单个信封处理失败不影响同批次的其他信封
+            try {
+                handleEnvelope(envelope);
+            } catch (Exception e) {
+                log.error("Failed to process {} envelope from node {} on node: {}",
+                        envelope.getType(), batch.getSourceNodeId(), serverId, e);
+            }
+        }
+    }
+
+    private void handleEnvelope(NodeEnvelope envelope) throws Exception {
+        switch (envelope.getType()) {
+            case CHAT_MESSAGE -> deliverChatMessage(
+                    objectMapper.treeToValue(envelope.getPayload(), WebSocketMessage.class), envelope.getHops());
+            case READ_RECEIPT -> deliverReadReceipt(
+                    objectMapper.treeToValue(envelope.getPayload(), WebSocketMessage.class), envelope.getHops());
+            case DISCONNECT_NOTIFY -> handleDisconnectNotification(
+                    objectMapper.treeToValue(envelope.getPayload(), DisconnectNotification.class));
+            case BROADCAST -> deliverBroadcast(
+                    objectMapper.treeToValue(envelope.getPayload(), BroadcastEnvelope.class));
+        }
+    }
+
     /**
      * 监听聊天消息
      * 每个节点只监听属于自己的topic，实现精确路由
@@ -37,32 +160,20 @@ public class MessageListener {
      */
     @Component
     @RocketMQMessageListener(topic = "TOPIC_CHAT_MESSAGE_${airis.chat.server-id:server-1}", consumerGroup = "realtime-chat-consumer-group-${airis.chat.server-id:server-1}")
-    public class ChatMessageListener implements RocketMQListener<String> {
+    public class ChatMessageListener implements RocketMQListener<MessageExt> {
 
         @Override
-        public void onMessage(String message) {
+        public void onMessage(MessageExt messageExt) {
             try {
-                WebSocketMessage wsMessage = objectMapper.readValue(message, WebSocketMessage.class);
-                log.info("Received chat message from RocketMQ on {}: messageId={}, receiverId={}",
-                        serverId, wsMessage.getMessageId(), wsMessage.getReceiverId());
-
-                // 由于消息已经精确路由到当前节点，直接处理即可
-                // 但仍然需要检查用户是否在线，以防止Redis数据不一致的情况
-                if (sessionManager.isUserOnline(wsMessage.getReceiverId())) {
-                    boolean sent = sessionManager.sendMessageToUser(wsMessage.getReceiverId(), wsMessage);
-
-                    if (sent) {
-                        log.info("Successfully delivered message to user: {} on node: {}",
-                                wsMessage.getReceiverId(), serverId);
-                    } else {
-                        log.warn("Failed to deliver message to user: {} on node: {} - user may have disconnected, " +
-                                "online status will be cleared automatically", wsMessage.getReceiverId(), serverId);
-                    }
-                } else {
-                    log.warn("User {} not connected to this node: {} - message routed incorrectly or user disconnected",
-                            wsMessage.getReceiverId(), serverId);
+                // 广播信封与普通聊天消息共用同一个topic，通过tag区分
+                if (MessageProducer.TAG_BROADCAST.equals(messageExt.getTags())) {
+                    deliverBroadcast(objectMapper.readValue(messageExt.getBody(), BroadcastEnvelope.class));
+                    return;
                 }
 
+                String message = new String(messageExt.getBody(), StandardCharsets.UTF_8);
+                deliverChatMessage(objectMapper.readValue(message, WebSocketMessage.class), getHops(messageExt));
+
             } catch (Exception e) {
                 log.error("Failed to process chat message from RocketMQ on node: " + serverId, e);
             }
@@ -76,34 +187,13 @@ public class MessageListener {
      */
     @Component
     @RocketMQMessageListener(topic = "TOPIC_READ_RECEIPT_${airis.chat.server-id:server-1}", consumerGroup = "realtime-chat-read-receipt-group-${airis.chat.server-id:server-1}")
-    public class ReadReceiptListener implements RocketMQListener<String> {
+    public class ReadReceiptListener implements RocketMQListener<MessageExt> {
 
         @Override
-        public void onMessage(String message) {
+        public void onMessage(MessageExt messageExt) {
             try {
-                WebSocketMessage readReceipt = objectMapper.readValue(message, WebSocketMessage.class);
-                log.info("Received read receipt from RocketMQ on {}: chatId={}, receiverId={}",
-                        serverId, readReceipt.getChatId(), readReceipt.getReceiverId());
-
-                // 由于消息已经精确路由到当前节点，直接处理即可
-                // 但仍然需要检查用户是否在线，以防止Redis数据不一致的情况
-                if (sessionManager.isUserOnline(readReceipt.getReceiverId())) {
-                    boolean sent = sessionManager.sendMessageToUser(readReceipt.getReceiverId(), readReceipt);
-                    if (sent) {
-                        log.info("Successfully delivered read receipt to user: {} on node: {}",
-                                readReceipt.getReceiverId(), serverId);
-                    } else {
-                        log.warn(
-                                "Failed to deliver read receipt to user: {} on node: {} - user may have disconnected, "
-                                        +
-                                        "online status will be cleared automatically",
-                                readReceipt.getReceiverId(), serverId);
-                    }
-                } else {
-                    log.warn(
-                            "User {} not connected to this node: {} - read receipt routed incorrectly or user disconnected",
-                            readReceipt.getReceiverId(), serverId);
-                }
+                String message = new String(messageExt.getBody(), StandardCharsets.UTF_8);
+                deliverReadReceipt(objectMapper.readValue(message, WebSocketMessage.class), getHops(messageExt));
 
             } catch (Exception e) {
                 log.error("Failed to process read receipt from RocketMQ on node: " + serverId, e);
@@ -123,33 +213,185 @@ public class MessageListener {
         @Override
         public void onMessage(String message) {
             try {
-                DisconnectNotification notification = objectMapper.readValue(message, DisconnectNotification.class);
-                log.info("Received disconnect notification on {}: userId={}, from node={}, reason={}",
-                        serverId, notification.getUserId(),
-                        notification.getSourceNodeId(), notification.getReason());
-
-                // 检查用户是否在当前节点有连接
-                if (sessionManager.isUserOnline(notification.getUserId())) {
-                    // 向用户发送连接替换通知并断开连接
-                    boolean disconnected = sessionManager.disconnectUserWithNotification(
-                            notification.getUserId(),
-                            notification.getReason());
-
-                    if (disconnected) {
-                        log.info("Successfully disconnected user: {} on node: {} due to: {}",
-                                notification.getUserId(), serverId, notification.getReason());
-                    } else {
-                        log.warn("Failed to disconnect user: {} on node: {} - user may have already disconnected",
-                                notification.getUserId(), serverId);
-                    }
-                } else {
-                    log.debug("User {} not found on node: {} - may have already disconnected or notification late",
-                            notification.getUserId(), serverId);
-                }
+                handleDisconnectNotification(objectMapper.readValue(message, DisconnectNotification.class));
 
             } catch (Exception e) {
                 log.error("Failed to process disconnect notification on node: " + serverId, e);
             }
         }
     }
+
+    /**
+     * 投递路由到本节点的聊天消息
+     *
+     * @param hops 消息已经在节点之间转发的次数
+     */
+    private void deliverChatMessage(WebSocketMessage wsMessage, int hops) {
+        log.info("Received chat message from RocketMQ on {}: messageId={}, receiverId={}",
+                serverId, wsMessage.getMessageId(), wsMessage.getReceiverId());
+
+        // 由于消息已经精确路由到当前节点，直接处理即可
+        // 但仍然需要检查用户是否在线，以防止Redis数据不一致的情况
+        if (sessionManager.isUserOnline(wsMessage.getReceiverId())) {
+            boolean sent = sessionManager.sendMessageToUser(wsMessage.getReceiverId(), wsMessage);
+
+            if (sent) {
+                log.info("Successfully delivered message to user: {} on node: {}",
+                        wsMessage.getReceiverId(), serverId);
+            } else {
+                log.warn("Failed to deliver message to user: {} on node: {} - user may have disconnected, " +
+                        "online status will be cleared automatically", wsMessage.getReceiverId(), serverId);
+            }
+        } else {
+            log.warn("User {} not connected to this node: {} - message routed incorrectly or user disconnected",
+                    wsMessage.getReceiverId(), serverId);
+            forwardOnMiss(wsMessage, hops, false);
+        }
+    }
+
+    /**
+     * 投递广播信封
+     * 负载已经是序列化好的JSON，直接生成一个出站帧投递给本节点上的所有接收者
+     */
+    private void deliverBroadcast(BroadcastEnvelope envelope) {
+        if (envelope.getReceiverIds() == null || envelope.getReceiverIds().isEmpty()) {
+            return;
+        }
+
+        OutboundFrame frame = OutboundFrame.ofJson(envelope.getMessageType(), envelope.getPayload());
+        List<String> missed = sessionManager.broadcastFrame(envelope.getReceiverIds(), frame);
+
+        log.info("Delivered broadcast envelope from node {} on {}: recipients={}, missed={}",
+                envelope.getSourceNodeId(), serverId, envelope.getReceiverIds().size(), missed.size());
+    }
+
+    /**
+     * 投递路由到本节点的已读回执
+     *
+     * @param hops 已读回执已经在节点之间转发的次数
+     */
+    private void deliverReadReceipt(WebSocketMessage readReceipt, int hops) {
+        log.info("Received read receipt from RocketMQ on {}: chatId={}, receiverId={}",
+                serverId, readReceipt.getChatId(), readReceipt.getReceiverId());
+
+        // 由于消息已经精确路由到当前节点，直接处理即可
+        // 但仍然需要检查用户是否在线，以防止Redis数据不一致的情况
+        if (sessionManager.isUserOnline(readReceipt.getReceiverId())) {
+            boolean sent = sessionManager.sendMessageToUser(readReceipt.getReceiverId(), readReceipt);
+            if (sent) {
+                log.info("Successfully delivered read receipt to user: {} on node: {}",
+                        readReceipt.getReceiverId(), serverId);
+            } else {
+                log.warn(
+                        "Failed to deliver read receipt to user: {} on node: {} - user may have disconnected, "
+                                +
+                                "online status will be cleared automatically",
+                        readReceipt.getReceiverId(), serverId);
+            }
+        } else {
+            log.warn(
+                    "User {} not connected to this node: {} - read receipt routed incorrectly or user disconnected",
+                    readReceipt.getReceiverId(), serverId);
+            forwardOnMiss(readReceipt, hops, true);
+        }
+    }
+
+    /**
+     * 处理断开连接通知
+     */
+    private void handleDisconnectNotification(DisconnectNotification notification) {
+        log.info("Received disconnect notification on {}: userId={}, from node={}, reason={}",
+                serverId, notification.getUserId(),
+                notification.getSourceNodeId(), notification.getReason());
+
+        // 用户已经连接到通知的源节点，本节点缓存的路由作废
+        routeCache.invalidate(notification.getUserId(), notification.getSourceNodeId());
+
+        // 检查用户是否在当前节点有连接
+        if (sessionManager.isUserOnline(notification.getUserId())) {
+            // 向用户发送连接替换通知并断开连接
+            boolean disconnected = sessionManager.disconnectUserWithNotification(
+                    notification.getUserId(),
+                    notification.getReason(),
+                    notification.getEpoch());
+
+            if (disconnected) {
+                log.info("Successfully disconnected user: {} on node: {} due to: {}",
+                        notification.getUserId(), serverId, notification.getReason());
+            } else {
+                log.warn("Failed to disconnect user: {} on node: {} - user may have already disconnected",
+                        notification.getUserId(), serverId);
+            }
+        } else {
+            log.debug("User {} not found on node: {} - may have already disconnected or notification late",
+                    notification.getUserId(), serverId);
+        }
+    }
+
+    /**
+     * 处理路由到本节点但接收者不在本节点的消息
+     * 用户在路由解析之后切换了节点时，重新解析路由并转发给新节点；
+     * 用户已离线、转发失败或转发次数达到上限时，聊天消息转为离线推送，已读回执和输入状态直接丢弃
+     *
+     * @param hops        消息已经在节点之间转发的次数
+     * @param readReceipt 是否为已读回执
+     */
+    private void forwardOnMiss(WebSocketMessage wsMessage, int hops, boolean readReceipt) {
+        String receiverId = wsMessage.getReceiverId();
+        // 输入状态是瞬时的，不转发也不推送
+        if (wsMessage.getType() == WebSocketMessage.WebSocketMessageType.TYPING) {
+            recordForward(wsMessage, "dropped");
+            return;
+        }
+
+        if (hops < maxForwardHops) {
+            // 绕过路由缓存直接查询Redis，本节点缓存的路由此时不可信
+            MessageRoute route = userOnlineService.resolveRemoteRoute(receiverId);
+            String targetServerId = route.getNodeId();
+            if (route.isRemote() && targetServerId != null && !targetServerId.equals(serverId)) {
+                routeCache.invalidate(receiverId, targetServerId);
+                boolean sent = readReceipt
+                        ? messageProducer.sendReadReceiptToSpecificServer(wsMessage, targetServerId, hops + 1)
+                        : messageProducer.sendToSpecificServer(wsMessage, targetServerId, hops + 1);
+                if (sent) {
+                    recordForward(wsMessage, "forwarded");
+                    log.info("Forwarded misrouted message for user {} from {} to {}, hops={}",
+                            receiverId, serverId, targetServerId, hops + 1);
+                    return;
+                }
+                // 转发失败时按离线处理
+                log.warn("Failed to forward misrouted message for user {} to {}, treating user as offline",
+                        receiverId, targetServerId);
+            }
+        } else {
+            log.warn("Message for user {} reached max forward hops {}, treating user as offline",
+                    receiverId, maxForwardHops);
+        }
+
+        if (readReceipt) {
+            recordForward(wsMessage, "dropped");
+            return;
+        }
+        offlinePushService.sendOfflinePush(wsMessage);
+        recordForward(wsMessage, "offline_push");
+        log.info("Misrouted message for user {} sent to offline push", receiverId);
+    }
+
+    private static int getHops(MessageExt messageExt) {
+        String hops = messageExt.getUserProperty(MessageProducer.PROPERTY_HOPS);
+        if (hops == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(hops);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void recordForward(WebSocketMessage wsMessage, String result) {
+        meterRegistry.counter("chat.route.misrouted",
+                "type", wsMessage.getType() != null ? wsMessage.getType().name() : "UNKNOWN",
+                "result", result).increment();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,203 @@
+package com.airis.chat.listener;
+
+import com.airis.chat.entity.NodeEnvelopeBatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 节点间批次排序
+ * 同一发送通道的批次可能一部分经RocketMQ、一部分经直连中继到达：中继不可用时批次回退到RocketMQ，
+ * Broker确认只代表已存储，之后经中继发送的批次可能先于RocketMQ中的批次到达。
+ * 发送方在回退后的第一个中继批次上标记它必须排在哪个RocketMQ批次之后（afterSequence），
+ * 接收方在该RocketMQ批次处理之前暂存这个中继批次以及同一通道后续的中继批次，处理后按顺序放行。
+ * RocketMQ批次之间由顺序消费保证顺序，中继批次之间由单连接顺序处理保证顺序。
+ * 等待超过reorder-wait-ms（RocketMQ消费严重积压）时按到达顺序放行并计数，不无限期阻塞该通道
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NodeBatchSequencer {
+
+    private final MeterRegistry meterRegistry;
+
+    // 中继批次等待其前序RocketMQ批次的最长时间
+    @Value("${airis.chat.node-transport.reorder-wait-ms:10000}")
+    private long reorderWaitMs;
+
+    // 通道ID -> 排序状态，长时间没有批次的通道自动移除
+    private final Cache<String, LaneState> lanes = CacheBuilder.newBuilder()
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    private volatile Consumer<NodeEnvelopeBatch> processor;
+
+    private ScheduledExecutorService timeoutScheduler;
+
+    private Counter heldCounter;
+
+    private Counter expiredCounter;
+
+    @PostConstruct
+    public void init() {
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "node-batch-reorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heldCounter = Counter.builder("chat.node.transport.reorder.held")
+                .description("Relay batches held until an earlier RocketMQ batch of their lane was processed")
+                .register(meterRegistry);
+        expiredCounter = Counter.builder("chat.node.transport.reorder.expired")
+                .description("Held relay batches released because the earlier RocketMQ batch did not arrive in time")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeoutScheduler.shutdownNow();
+    }
+
+    /**
+     * 设置按顺序处理批次的处理器
+     */
+    public void setProcessor(Consumer<NodeEnvelopeBatch> processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * 处理经RocketMQ到达的批次，然后放行在等待它的中继批次
+     */
+    public void onMqBatch(NodeEnvelopeBatch batch) {
+        LaneState state = laneOf(batch);
+        if (state == null) {
+            processor.accept(batch);
+            return;
+        }
+        long sequence = sequenceOf(batch);
+        synchronized (state) {
+            // 发送顺序更早的中继批次先放行
+            while (!state.held.isEmpty() && sequenceOf(state.held.peek()) < sequence) {
+                processor.accept(state.held.poll());
+            }
+            processor.accept(batch);
+            // 重复到达的批次也记录序号，等待它的中继批次才能放行
+            state.mqSequence = Math.max(state.mqSequence, sequence);
+            release(state);
+        }
+    }
+
+    /**
+     * 处理经直连中继到达的批次：前序RocketMQ批次尚未处理，或同一通道已有批次在等待时暂存
+     */
+    public void onRelayBatch(NodeEnvelopeBatch batch) {
+        LaneState state = laneOf(batch);
+        if (state == null) {
+            processor.accept(batch);
+            return;
+        }
+        synchronized (state) {
+            if (state.held.isEmpty() && afterSequenceOf(batch) <= state.mqSequence) {
+                processor.accept(batch);
+                return;
+            }
+            state.held.add(batch);
+            heldCounter.increment();
+            if (state.timeout == null) {
+                log.debug("Holding relay batch {} of lane {} until RocketMQ batch {} is processed",
+                        batch.getSequence(), batch.getLaneId(), batch.getAfterSequence());
+                state.timeout = timeoutScheduler.schedule(() -> expire(state), reorderWaitMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 按顺序放行前序RocketMQ批次已经处理的中继批次（调用方持有状态锁）
+     */
+    private void release(LaneState state) {
+        while (!state.held.isEmpty() && afterSequenceOf(state.held.peek()) <= state.mqSequence) {
+            processor.accept(state.held.poll());
+        }
+        if (state.held.isEmpty() && state.timeout != null) {
+            state.timeout.cancel(false);
+            state.timeout = null;
+        }
+    }
+
+    /**
+     * 等待超时，按到达顺序放行所有暂存的批次
+     */
+    private void expire(LaneState state) {
+        synchronized (state) {
+            state.timeout = null;
+            if (state.held.isEmpty()) {
+                return;
+            }
+            log.warn("RocketMQ batch {} did not arrive within {}ms, releasing {} held relay batches",
+                    afterSequenceOf(state.held.peek()), reorderWaitMs, state.held.size());
+            expiredCounter.increment(state.held.size());
+            while (!state.held.isEmpty()) {
+                NodeEnvelopeBatch batch = state.held.poll();
+                state.mqSequence = Math.max(state.mqSequence, afterSequenceOf(batch));
+                try {
+                    processor.accept(batch);
+                } catch (Exception e) {
+                    log.error("Failed to process held relay batch from node {}", batch.getSourceNodeId(), e);
+                }
+            }
+        }
+    }
+
+    private LaneState laneOf(NodeEnvelopeBatch batch) {
+        // 不带通道ID的批次来自旧版本节点，不参与排序
+        if (batch.getLaneId() == null) {
+            return null;
+        }
+        try {
+            return lanes.get(batch.getLaneId(), LaneState::new);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long sequenceOf(NodeEnvelopeBatch batch) {
+        return batch.getSequence() != null ? batch.getSequence() : 0;
+    }
+
+    private static long afterSequenceOf(NodeEnvelopeBatch batch) {
+        return batch.getAfterSequence() != null ? batch.getAfterSequence() : 0;
+    }
+
+    /**
+     * 一个发送通道的排序状态
+     */
+    private static final class LaneState {
+
+        // 已处理的最大RocketMQ批次序号
+        private long mqSequence;
+
+        // 按到达顺序暂存的中继批次
+        private final ArrayDeque<NodeEnvelopeBatch> held = new ArrayDeque<>();
+
+        // 暂存超时任务
+        private ScheduledFuture<?> timeout;
+    }
+}
@@ -1,6 +1,8 @@
 package com.airis.chat.producer;
 
+import com.airis.chat.entity.BroadcastEnvelope;
 import com.airis.chat.entity.DisconnectNotification;
+import com.airis.chat.entity.NodeEnvelope;
 import com.airis.chat.entity.WebSocketMessage;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -13,6 +15,8 @@ import org.springframework.stereotype.Component;
 /**
  * RocketMQ消息生产者
  * 用于发送消息到其他服务器节点或离线推送
+ * 启用节点间传输（NodeMessageTransport）时，发往特定节点的消息异步合并发送到节点的统一topic，
+ * 否则按类型同步发送到各自的topic
  *
  * @author AIRIS Team
  * @since 1.0.0
@@ -24,6 +28,7 @@ public class MessageProducer {
 
     private final RocketMQTemplate rocketMQTemplate;
     private final ObjectMapper objectMapper;
+    private final NodeMessageTransport nodeTransport;
 
     // 主题定义
     private static final String TOPIC_CHAT_MESSAGE_PREFIX = "TOPIC_CHAT_MESSAGE_";
@@ -31,13 +36,36 @@ public class MessageProducer {
     private static final String TOPIC_READ_RECEIPT_PREFIX = "TOPIC_READ_RECEIPT_";
     private static final String TOPIC_DISCONNECT_NOTIFY_PREFIX = "TOPIC_DISCONNECT_NOTIFY_";
 
+    // 广播信封在聊天消息topic上使用的tag
+    public static final String TAG_BROADCAST = "BROADCAST";
+
+    // 消息属性：消息在节点之间被转发的次数
+    public static final String PROPERTY_HOPS = "hops";
+
     /**
      * 发送消息到特定服务器节点
      * 
      * @param wsMessage      消息内容
      * @param targetServerId 目标服务器节点ID
+     * @return 是否发送成功（或已加入节点间传输的批次）
+     */
+    public boolean sendToSpecificServer(WebSocketMessage wsMessage, String targetServerId) {
+        return sendToSpecificServer(wsMessage, targetServerId, 0);
+    }
+
+    /**
+     * 发送消息到特定服务器节点
+     *
+     * @param wsMessage      消息内容
+     * @param targetServerId 目标服务器节点ID
+     * @param hops           消息已经在节点之间转发的次数
+     * @return 是否发送成功（或已加入节点间传输的批次）
      */
-    public void sendToSpecificServer(WebSocketMessage wsMessage, String targetServerId) {
+    public boolean sendToSpecificServer(WebSocketMessage wsMessage, String targetServerId, int hops) {
+        if (nodeTransport.isEnabled()) {
+            return nodeTransport.send(targetServerId, NodeEnvelope.Type.CHAT_MESSAGE, wsMessage,
+                    orderingKey(wsMessage), hops);
+        }
         try {
             String targetTopic = TOPIC_CHAT_MESSAGE_PREFIX + targetServerId;
             String json = objectMapper.writeValueAsString(wsMessage);
@@ -45,15 +73,51 @@ public class MessageProducer {
                     .withPayload(json)
                     .setHeader("receiverId", wsMessage.getReceiverId())
                     .setHeader("targetServerId", targetServerId)
+                    .setHeader(PROPERTY_HOPS, String.valueOf(hops))
                     .build();
 
             rocketMQTemplate.syncSend(targetTopic, message);
             log.info(
-                    "Message sent to specific server via RocketMQ: messageId={}, receiverId={}, targetServer={}, topic={}",
-                    wsMessage.getMessageId(), wsMessage.getReceiverId(), targetServerId, targetTopic);
+                    "Message sent to specific server via RocketMQ: messageId={}, receiverId={}, targetServer={}, topic={}, hops={}",
+                    wsMessage.getMessageId(), wsMessage.getReceiverId(), targetServerId, targetTopic, hops);
+            return true;
 
         } catch (Exception e) {
             log.error("Failed to send message to specific server: {}", targetServerId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 发送广播信封到特定服务器节点
+     * 复用节点的聊天消息topic，通过tag区分广播信封
+     *
+     * @param envelope       广播信封
+     * @param targetServerId 目标服务器节点ID
+     * @return 是否发送成功
+     */
+    public boolean sendBroadcastToSpecificServer(BroadcastEnvelope envelope, String targetServerId) {
+        if (nodeTransport.isEnabled()) {
+            return nodeTransport.send(targetServerId, NodeEnvelope.Type.BROADCAST, envelope,
+                    envelope.getSourceNodeId(), 0);
+        }
+        try {
+            String destination = TOPIC_CHAT_MESSAGE_PREFIX + targetServerId + ":" + TAG_BROADCAST;
+            String json = objectMapper.writeValueAsString(envelope);
+            Message<String> message = MessageBuilder
+                    .withPayload(json)
+                    .setHeader("targetServerId", targetServerId)
+                    .setHeader("sourceServerId", envelope.getSourceNodeId())
+                    .build();
+
+            rocketMQTemplate.syncSend(destination, message);
+            log.info("Broadcast envelope sent to specific server: type={}, recipients={}, targetServer={}",
+                    envelope.getMessageType(), envelope.getReceiverIds().size(), targetServerId);
+            return true;
+
+        } catch (Exception e) {
+            log.error("Failed to send broadcast envelope to specific server: {}", targetServerId, e);
+            return false;
         }
     }
 
@@ -113,8 +177,25 @@ public class MessageProducer {
      * 
      * @param readReceipt    已读回执消息
      * @param targetServerId 目标服务器节点ID
+     * @return 是否发送成功（或已加入节点间传输的批次）
      */
-    public void sendReadReceiptToSpecificServer(WebSocketMessage readReceipt, String targetServerId) {
+    public boolean sendReadReceiptToSpecificServer(WebSocketMessage readReceipt, String targetServerId) {
+        return sendReadReceiptToSpecificServer(readReceipt, targetServerId, 0);
+    }
+
+    /**
+     * 发送已读回执到特定服务器节点
+     *
+     * @param readReceipt    已读回执消息
+     * @param targetServerId 目标服务器节点ID
+     * @param hops           已读回执已经在节点之间转发的次数
+     * @return 是否发送成功（或已加入节点间传输的批次）
+     */
+    public boolean sendReadReceiptToSpecificServer(WebSocketMessage readReceipt, String targetServerId, int hops) {
+        if (nodeTransport.isEnabled()) {
+            return nodeTransport.send(targetServerId, NodeEnvelope.Type.READ_RECEIPT, readReceipt,
+                    orderingKey(readReceipt), hops);
+        }
         try {
             String targetTopic = TOPIC_READ_RECEIPT_PREFIX + targetServerId;
             String json = objectMapper.writeValueAsString(readReceipt);
@@ -122,14 +203,17 @@ public class MessageProducer {
                     .withPayload(json)
                     .setHeader("receiverId", readReceipt.getReceiverId())
                     .setHeader("targetServerId", targetServerId)
+                    .setHeader(PROPERTY_HOPS, String.valueOf(hops))
                     .build();
 
             rocketMQTemplate.syncSend(targetTopic, message);
-            log.info("Read receipt sent to specific server: chatId={}, receiverId={}, targetServer={}, topic={}",
-                    readReceipt.getChatId(), readReceipt.getReceiverId(), targetServerId, targetTopic);
+            log.info("Read receipt sent to specific server: chatId={}, receiverId={}, targetServer={}, topic={}, hops={}",
+                    readReceipt.getChatId(), readReceipt.getReceiverId(), targetServerId, targetTopic, hops);
+            return true;
 
         } catch (Exception e) {
             log.error("Failed to send read receipt to specific server: {}", targetServerId, e);
+            return false;
         }
     }
 
@@ -166,6 +250,11 @@ public class MessageProducer {
      * @param notification 断开连接通知
      */
     public void sendDisconnectNotification(DisconnectNotification notification) {
+        if (nodeTransport.isEnabled()) {
+            nodeTransport.send(notification.getTargetNodeId(), NodeEnvelope.Type.DISCONNECT_NOTIFY, notification,
+                    notification.getUserId(), 0);
+            return;
+        }
         try {
             String targetTopic = TOPIC_DISCONNECT_NOTIFY_PREFIX + notification.getTargetNodeId();
             String json = objectMapper.writeValueAsString(notification);
@@ -186,4 +275,11 @@ public class MessageProducer {
                     notification.getUserId(), notification.getTargetNodeId(), e);
         }
     }
+
+    /**
+     * 节点间传输的排序键：同一会话内的消息按发送顺序投递
+     */
+    private static String orderingKey(WebSocketMessage wsMessage) {
+        return wsMessage.getChatId() != null ? wsMessage.getChatId() : wsMessage.getReceiverId();
+    }
 }
\ No newline at end of file
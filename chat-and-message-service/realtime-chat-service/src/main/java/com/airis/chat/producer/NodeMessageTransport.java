@@ -0,0 +1,423 @@
+package com.airis.chat.producer;
+
+import com.airis.chat.entity.NodeEnvelope;
+import com.airis.chat.entity.NodeEnvelopeBatch;
+import com.airis.chat.entity.WebSocketMessage;
+import com.airis.chat.relay.NodeRelay;
+import com.airis.chat.service.OfflinePushService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点间消息传输
+ * 所有发往某个节点的消息都进入该节点唯一的topic（TOPIC_CHAT_NODE_{server-id}），
+ * 在很短的时间窗口内按目标节点合并为批次后异步发送，不阻塞调用线程。
+ * 每个目标节点分为若干有序通道，同一排序键（会话ID等）总是进入同一通道；
+ * 每个通道同时只有一个批次在发送，并且按哈希固定到同一个队列，配合顺序消费保证同一会话内的消息顺序。
+ * 批次序列化后不超过max-batch-bytes（超过时后一半信封留给下一个批次）；广播信封体积大，总是单独成批，
+ * 发送失败时也不会连带同批次的聊天消息。
+ * 发送者此时已经收到MESSAGE_ACK，因此发送失败的批次中的聊天消息转为离线推送，不会被静默丢弃
+ * 启用节点直连中继时批次优先直接发给目标节点，中继不可用时回退到RocketMQ。
+ * 中继确认超时时对端可能已经处理了该批次，回退后的重复批次由接收方按批次ID丢弃。
+ * 批次带有通道内递增的序号；通道回退到RocketMQ后，下一个中继批次标记它必须排在最后一个RocketMQ批次之后，
+ * 接收方（NodeBatchSequencer）在该RocketMQ批次处理前暂存它，避免同一会话内的消息乱序
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NodeMessageTransport {
+
+    public static final String TOPIC_NODE_PREFIX = "TOPIC_CHAT_NODE_";
+
+    private final RocketMQTemplate rocketMQTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final NodeRelay nodeRelay;
+    private final OfflinePushService offlinePushService;
+
+    @Value("${airis.chat.server-id:server-1}")
+    private String serverId;
+
+    @Value("${airis.chat.node-transport.enabled:true}")
+    private boolean enabled;
+
+    // 第一条消息等待同批次其他消息的最长时间
+    @Value("${airis.chat.node-transport.max-latency-ms:5}")
+    private long maxLatencyMs;
+
+    @Value("${airis.chat.node-transport.max-batch:100}")
+    private int maxBatch;
+
+    // 单个批次序列化后的最大字节数，需小于RocketMQ的消息大小上限（默认4MB）
+    @Value("${airis.chat.node-transport.max-batch-bytes:1048576}")
+    private int maxBatchBytes;
+
+    // 每个目标节点的有序通道数
+    @Value("${airis.chat.node-transport.lanes:8}")
+    private int laneCount;
+
+    // 单个通道最多积压的信封数，超过后拒绝发送
+    @Value("${airis.chat.node-transport.max-pending:10000}")
+    private int maxPending;
+
+    // 目标节点#通道号 -> 通道
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    // 本进程实例ID，节点重启后通道序号重新从1开始，接收方据此区分新旧通道
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private ScheduledExecutorService scheduler;
+
+    private DistributionSummary batchSizeSummary;
+
+    private Timer sendTimer;
+
+    private Counter failedCounter;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Node message transport disabled, using per-type topics");
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "node-transport-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        batchSizeSummary = DistributionSummary.builder("chat.node.transport.batch.size")
+                .description("Envelopes per node transport batch")
+                .register(meterRegistry);
+        sendTimer = Timer.builder("chat.node.transport.send")
+                .description("Time from sending a node transport batch to the broker acknowledging it")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("chat.node.transport.failed")
+                .description("Envelopes in node transport batches that failed to send")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("chat.node.transport.rejected")
+                .description("Envelopes rejected because a lane was full")
+                .register(meterRegistry);
+
+        log.info("Node message transport started: maxLatencyMs={}, maxBatch={}, maxBatchBytes={}, lanes={}",
+                maxLatencyMs, maxBatch, maxBatchBytes, laneCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+
+        // 同步发送尚未发出的信封
+        for (Lane lane : lanes.values()) {
+            while (true) {
+                List<NodeEnvelope> batch;
+                long sequence;
+                synchronized (lane) {
+                    if (lane.pending.isEmpty()) {
+                        break;
+                    }
+                    batch = takeBatch(lane);
+                    sequence = lane.nextSequence++;
+                }
+                try {
+                    String json = serializeWithinLimit(lane, batch, sequence, 0);
+                    rocketMQTemplate.syncSendOrderly(lane.destination(), buildMessage(json), lane.hashKey());
+                } catch (Exception e) {
+                    failedCounter.increment(batch.size());
+                    log.error("Failed to flush {} envelopes to node {} on shutdown", batch.size(), lane.targetNodeId, e);
+                    pushUndelivered(batch);
+                }
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 把消息加入发往目标节点的下一个批次
+     *
+     * @param targetNodeId 目标节点ID
+     * @param type         信封类型
+     * @param payload      消息内容
+     * @param orderingKey  排序键，相同排序键的消息按发送顺序投递
+     * @param hops         消息已经在节点之间转发的次数
+     * @return 是否已加入批次（通道积压过多时返回false，由调用方处理）；
+     *         加入后发送失败的聊天消息转为离线推送
+     */
+    public boolean send(String targetNodeId, NodeEnvelope.Type type, Object payload, String orderingKey, int hops) {
+        NodeEnvelope envelope = NodeEnvelope.builder()
+                .type(type)
+                .payload(objectMapper.valueToTree(payload))
+                .hops(hops)
+                .build();
+
+        int laneIndex = Math.floorMod(orderingKey != null ? orderingKey.hashCode() : 0, laneCount);
+        Lane lane = lanes.computeIfAbsent(targetNodeId + "#" + laneIndex, key -> new Lane(targetNodeId, laneIndex));
+
+        synchronized (lane) {
+            if (lane.pending.size() >= maxPending) {
+                rejectedCounter.increment();
+                log.warn("Node transport lane {} is full, rejecting {} envelope", lane.destination(), type);
+                return false;
+            }
+            lane.pending.add(envelope);
+
+            // 正在发送的批次完成后会立即发送积压的信封
+            if (lane.inFlight) {
+                return true;
+            }
+            if (lane.pending.size() >= maxBatch) {
+                scheduler.execute(() -> flush(lane));
+            } else if (!lane.scheduled) {
+                lane.scheduled = true;
+                scheduler.schedule(() -> flush(lane), maxLatencyMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        return true;
+    }
+
+    private void flush(Lane lane) {
+        List<NodeEnvelope> batch;
+        long sequence;
+        long afterSequence;
+        synchronized (lane) {
+            lane.scheduled = false;
+            if (lane.inFlight || lane.pending.isEmpty()) {
+                return;
+            }
+            batch = takeBatch(lane);
+            lane.inFlight = true;
+            sequence = lane.nextSequence++;
+            afterSequence = lane.unconfirmedMqSequence;
+        }
+
+        String json;
+        try {
+            json = serializeWithinLimit(lane, batch, sequence, afterSequence);
+        } catch (Exception e) {
+            failedCounter.increment(batch.size());
+            log.error("Failed to serialize {} envelopes for node {}", batch.size(), lane.targetNodeId, e);
+            completeFlush(lane);
+            pushUndelivered(batch);
+            return;
+        }
+        batchSizeSummary.record(batch.size());
+
+        if (!nodeRelay.isEnabled()) {
+            sendViaMq(lane, json, batch, sequence);
+            return;
+        }
+        nodeRelay.send(lane.targetNodeId, json.getBytes(StandardCharsets.UTF_8)).whenComplete((ignored, e) -> {
+            if (e == null) {
+                synchronized (lane) {
+                    // 对端已按顺序接收该批次，后续中继批次不必再等待这个RocketMQ批次
+                    if (lane.unconfirmedMqSequence == afterSequence) {
+                        lane.unconfirmedMqSequence = 0;
+                    }
+                }
+                completeFlush(lane);
+            } else {
+                log.debug("Relay to node {} unavailable, falling back to RocketMQ: {}", lane.targetNodeId,
+                        e.getMessage());
+                sendViaMq(lane, json, batch, sequence);
+            }
+        });
+    }
+
+    private void sendViaMq(Lane lane, String json, List<NodeEnvelope> batch, long sequence) {
+        int size = batch.size();
+        long start = System.nanoTime();
+        try {
+            rocketMQTemplate.asyncSendOrderly(lane.destination(), buildMessage(json), lane.hashKey(),
+                    new SendCallback() {
+                        @Override
+                        public void onSuccess(SendResult sendResult) {
+                            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            synchronized (lane) {
+                                lane.unconfirmedMqSequence = sequence;
+                            }
+                            completeFlush(lane);
+                        }
+
+                        @Override
+                        public void onException(Throwable e) {
+                            failedCounter.increment(size);
+                            log.error("Failed to send {} envelopes to node {}", size, lane.targetNodeId, e);
+                            completeFlush(lane);
+                            pushUndelivered(batch);
+                        }
+                    });
+        } catch (Exception e) {
+            failedCounter.increment(size);
+            log.error("Failed to send {} envelopes to node {}", size, lane.targetNodeId, e);
+            completeFlush(lane);
+            pushUndelivered(batch);
+        }
+    }
+
+    /**
+     * 发送失败的批次中的聊天消息转为离线推送，其他类型的信封是瞬时的，直接丢弃
+     */
+    private void pushUndelivered(List<NodeEnvelope> batch) {
+        int pushed = 0;
+        for (NodeEnvelope envelope : batch) {
+            if (envelope.getType() != NodeEnvelope.Type.CHAT_MESSAGE) {
+                continue;
+            }
+            try {
+                offlinePushService.sendOfflinePush(objectMapper.treeToValue(envelope.getPayload(),
+                        WebSocketMessage.class));
+                pushed++;
+            } catch (Exception e) {
+                log.error("Failed to convert undelivered chat message to offline push", e);
+            }
+        }
+        if (pushed > 0) {
+            log.warn("Sent {} undelivered chat messages to offline push", pushed);
+        }
+    }
+
+    /**
+     * 从通道队首取出下一个批次（调用方持有通道锁）
+     * 广播信封单独成批，遇到广播信封时结束当前批次
+     */
+    private List<NodeEnvelope> takeBatch(Lane lane) {
+        List<NodeEnvelope> batch = new ArrayList<>(Math.min(lane.pending.size(), maxBatch));
+        while (batch.size() < maxBatch && !lane.pending.isEmpty()) {
+            boolean broadcast = lane.pending.peek().getType() == NodeEnvelope.Type.BROADCAST;
+            if (broadcast && !batch.isEmpty()) {
+                break;
+            }
+            batch.add(lane.pending.poll());
+            if (broadcast) {
+                break;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 序列化批次，超过max-batch-bytes时把后一半信封按原顺序放回通道队首，
+     * 直到不超过上限或只剩一条信封（单条超限的信封照常发送，由发送失败处理）
+     */
+    private String serializeWithinLimit(Lane lane, List<NodeEnvelope> batch, long sequence, long afterSequence)
+            throws Exception {
+        String json = serialize(lane, batch, sequence, afterSequence);
+        while (batch.size() > 1 && json.getBytes(StandardCharsets.UTF_8).length > maxBatchBytes) {
+            List<NodeEnvelope> tail = batch.subList(batch.size() / 2, batch.size());
+            synchronized (lane) {
+                for (int i = tail.size() - 1; i >= 0; i--) {
+                    lane.pending.addFirst(tail.get(i));
+                }
+            }
+            tail.clear();
+            json = serialize(lane, batch, sequence, afterSequence);
+        }
+        return json;
+    }
+
+    /**
+     * 批次发送完成，继续发送在此期间积压的信封
+     */
+    private void completeFlush(Lane lane) {
+        synchronized (lane) {
+            lane.inFlight = false;
+            if (!lane.pending.isEmpty() && !scheduler.isShutdown()) {
+                scheduler.execute(() -> flush(lane));
+            }
+        }
+    }
+
+    private String serialize(Lane lane, List<NodeEnvelope> batch, long sequence, long afterSequence)
+            throws Exception {
+        NodeEnvelopeBatch envelopeBatch = NodeEnvelopeBatch.builder()
+                .batchId(UUID.randomUUID().toString())
+                .sourceNodeId(serverId)
+                .laneId(serverId + "/" + instanceId + "#" + lane.index)
+                .sequence(sequence)
+                .afterSequence(afterSequence)
+                .envelopes(batch)
+                .timestamp(System.currentTimeMillis())
+                .build();
+        return objectMapper.writeValueAsString(envelopeBatch);
+    }
+
+    private Message<String> buildMessage(String json) {
+        return MessageBuilder
+                .withPayload(json)
+                .setHeader("sourceServerId", serverId)
+                .build();
+    }
+
+    /**
+     * 发往某个节点的一个有序通道
+     */
+    private static final class Lane {
+
+        private final String targetNodeId;
+
+        private final int index;
+
+        private final ArrayDeque<NodeEnvelope> pending = new ArrayDeque<>();
+
+        // 是否有批次正在发送
+        private boolean inFlight;
+
+        // 是否已安排延迟刷新
+        private boolean scheduled;
+
+        // 下一个批次的序号
+        private long nextSequence = 1;
+
+        // 最后一个经RocketMQ发送、之后还没有中继批次被对端确认的批次序号（0表示没有）
+        private long unconfirmedMqSequence;
+
+        Lane(String targetNodeId, int index) {
+            this.targetNodeId = targetNodeId;
+            this.index = index;
+        }
+
+        String destination() {
+            return TOPIC_NODE_PREFIX + targetNodeId;
+        }
+
+        String hashKey() {
+            return String.valueOf(index);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package com.airis.chat.relay;
+
+import com.airis.chat.entity.NodeEnvelopeBatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 节点间直连中继
+ * 聊天节点之间建立TCP长连接，跨节点的消息批次直接发送给目标节点，不经过RocketMQ Broker。
+ * 只与peers中列出的节点互通：中继只监听配置的内网地址，入站连接的第一帧必须是来自peers中节点、
+ * 并且用共享密钥签名了本端挑战的握手帧，否则直接关闭连接。
+ * 对端地址可以在peers中静态配置，否则按节点ID从Nacos实例元数据（chat-node-id、chat-relay-port）中发现。
+ * 对端不可达、连接断开或确认超时时发送失败，由调用方回退到RocketMQ节点topic。
+ * 连接空闲时定期发送探测；连续确认超时或探测超时的连接被关闭，并在reconnect-backoff-ms内不再重连该对端
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NodeRelay {
+
+    public static final String METADATA_NODE_ID = "chat-node-id";
+
+    public static final String METADATA_RELAY_PORT = "chat-relay-port";
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<DiscoveryClient> discoveryClient;
+
+    @Value("${airis.chat.server-id:server-1}")
+    private String serverId;
+
+    @Value("${spring.application.name:realtime-chat-service}")
+    private String serviceName;
+
+    @Value("${airis.chat.relay.enabled:false}")
+    private boolean enabled;
+
+    // 中继监听的内网地址，必须配置
+    @Value("${airis.chat.relay.bind-address:}")
+    private String bindAddress;
+
+    // 中继监听端口
+    @Value("${airis.chat.relay.port:9630}")
+    private int port;
+
+    // 允许互通的对端节点，格式：nodeId或nodeId=host:port，逗号分隔；未配置地址的节点通过服务发现查找
+    @Value("${airis.chat.relay.peers:}")
+    private String peers;
+
+    // 节点间共享的握手密钥，必须配置
+    @Value("${airis.chat.relay.secret:}")
+    private String secret;
+
+    @Value("${airis.chat.relay.connect-timeout-ms:500}")
+    private int connectTimeoutMs;
+
+    // 入站连接完成握手的最长时间
+    @Value("${airis.chat.relay.handshake-timeout-ms:2000}")
+    private int handshakeTimeoutMs;
+
+    // 每个对端连接最多排队等待写出的批次数，超过后直接回退到RocketMQ
+    @Value("${airis.chat.relay.send-queue-size:1024}")
+    private int sendQueueSize;
+
+    // 等待对端确认的最长时间，超时后回退到RocketMQ
+    @Value("${airis.chat.relay.ack-timeout-ms:1000}")
+    private long ackTimeoutMs;
+
+    // 连续多少个批次确认超时后关闭连接
+    @Value("${airis.chat.relay.max-ack-timeouts:3}")
+    private int maxAckTimeouts;
+
+    // 连接空闲多久后发送一次探测；入站连接超过3个间隔没有任何帧时关闭
+    @Value("${airis.chat.relay.ping-interval-ms:5000}")
+    private long pingIntervalMs;
+
+    // 连接失败后多久内不再尝试连接该对端
+    @Value("${airis.chat.relay.reconnect-backoff-ms:5000}")
+    private long reconnectBackoffMs;
+
+    // 对端节点ID -> 连接
+    private final Map<String, RelayConnection> connections = new ConcurrentHashMap<>();
+
+    // 正在建立连接的对端
+    private final Set<String> connecting = ConcurrentHashMap.newKeySet();
+
+    // 对端节点ID -> 下次允许尝试连接的时间
+    private final Map<String, Long> backoffUntil = new ConcurrentHashMap<>();
+
+    private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+
+    // 允许互通的对端节点ID -> 静态配置的地址（未配置时为null）
+    private final Map<String, InetSocketAddress> allowedPeers = new HashMap<>();
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private byte[] secretBytes;
+
+    private volatile Consumer<NodeEnvelopeBatch> batchHandler;
+
+    private ServerSocket serverSocket;
+
+    private ExecutorService connectExecutor;
+
+    private ExecutorService inboundExecutor;
+
+    private volatile boolean running;
+
+    private Timer ackTimer;
+
+    private Counter ackedCounter;
+
+    private Counter failedCounter;
+
+    private Counter receivedCounter;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            log.info("Node relay disabled, cross-node traffic uses RocketMQ only");
+            return;
+        }
+        parsePeers();
+        if (bindAddress == null || bindAddress.isBlank() || secret == null || secret.isBlank()
+                || allowedPeers.isEmpty()) {
+            log.error("Node relay requires airis.chat.relay.bind-address, secret and peers; "
+                    + "relay disabled, cross-node traffic uses RocketMQ only");
+            enabled = false;
+            return;
+        }
+        secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+
+        ackTimer = Timer.builder("chat.relay.ack")
+                .description("Time from relaying a batch to the peer acknowledging it")
+                .register(meterRegistry);
+        ackedCounter = Counter.builder("chat.relay.batches")
+                .description("Batches sent over the node relay")
+                .tag("result", "acked")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("chat.relay.batches")
+                .description("Batches sent over the node relay")
+                .tag("result", "failed")
+                .register(meterRegistry);
+        receivedCounter = Counter.builder("chat.relay.received")
+                .description("Batches received from peers over the node relay")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("chat.relay.rejected")
+                .description("Inbound relay connections closed for failing the handshake")
+                .register(meterRegistry);
+        Gauge.builder("chat.relay.peers", connections, Map::size)
+                .description("Open relay connections to peer nodes")
+                .register(meterRegistry);
+
+        connectExecutor = Executors.newCachedThreadPool(daemonThreads("relay-connect"));
+        inboundExecutor = Executors.newCachedThreadPool(daemonThreads("relay-inbound"));
+
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress.trim(), port));
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "relay-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        log.info("Node relay listening on {} for node {}, peers={}",
+                serverSocket.getLocalSocketAddress(), serverId, allowedPeers.keySet());
+    }
+
+    /**
+     * 解析peers配置
+     */
+    private void parsePeers() {
+        if (peers == null || peers.isBlank()) {
+            return;
+        }
+        for (String entry : peers.split(",")) {
+            String[] parts = entry.trim().split("=", 2);
+            if (parts[0].isEmpty()) {
+                continue;
+            }
+            InetSocketAddress address = null;
+            if (parts.length == 2) {
+                int colon = parts[1].lastIndexOf(':');
+                address = InetSocketAddress.createUnresolved(parts[1].substring(0, colon),
+                        Integer.parseInt(parts[1].substring(colon + 1)));
+            }
+            allowedPeers.put(parts[0], address);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+                // 已经关闭
+            }
+        }
+        for (Socket socket : inboundSockets) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 已经关闭
+            }
+        }
+        connections.values().forEach(RelayConnection::close);
+        connections.clear();
+        if (connectExecutor != null) {
+            connectExecutor.shutdownNow();
+            inboundExecutor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置收到批次时的处理器
+     */
+    public void setBatchHandler(Consumer<NodeEnvelopeBatch> batchHandler) {
+        this.batchHandler = batchHandler;
+    }
+
+    /**
+     * 通过中继把批次发送给目标节点
+     * 还没有可用连接时立即失败并在后台建立连接，后续批次再走中继
+     *
+     * @param payload 序列化好的NodeEnvelopeBatch
+     * @return 对端确认后完成；无法通过中继送达时异常完成
+     */
+    public CompletableFuture<Void> send(String targetNodeId, byte[] payload) {
+        RelayConnection connection = connections.get(targetNodeId);
+        if (connection == null || !connection.isOpen()) {
+            if (connection != null) {
+                dropConnection(targetNodeId, connection);
+            }
+            connectAsync(targetNodeId);
+            failedCounter.increment();
+            return CompletableFuture.failedFuture(new IOException("No relay connection to " + targetNodeId));
+        }
+
+        long start = System.nanoTime();
+        return connection.send(payload).whenComplete((ignored, e) -> {
+            if (e == null) {
+                ackedCounter.increment();
+                ackTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } else {
+                failedCounter.increment();
+                if (!connection.isOpen()) {
+                    dropConnection(targetNodeId, connection);
+                }
+            }
+        });
+    }
+
+    /**
+     * 移除已关闭的连接；因确认超时关闭的对端在退避时间内不再重连，期间直接回退到RocketMQ
+     */
+    private void dropConnection(String targetNodeId, RelayConnection connection) {
+        if (connections.remove(targetNodeId, connection) && connection.isUnhealthy()) {
+            backoffUntil.put(targetNodeId, System.currentTimeMillis() + reconnectBackoffMs);
+            log.warn("Relay to node {} is unhealthy, using RocketMQ for the next {}ms", targetNodeId,
+                    reconnectBackoffMs);
+        }
+    }
+
+    private void connectAsync(String targetNodeId) {
+        if (!running || targetNodeId.equals(serverId) || !allowedPeers.containsKey(targetNodeId)
+                || backoffUntil.getOrDefault(targetNodeId, 0L) > System.currentTimeMillis()
+                || !connecting.add(targetNodeId)) {
+            return;
+        }
+
+        connectExecutor.execute(() -> {
+            try {
+                InetSocketAddress address = resolvePeer(targetNodeId);
+                if (address == null) {
+                    log.debug("No relay address known for node {}", targetNodeId);
+                    backoffUntil.put(targetNodeId, System.currentTimeMillis() + reconnectBackoffMs);
+                    return;
+                }
+                RelayConnection connection = RelayConnection.open(serverId, targetNodeId, address, connectTimeoutMs,
+                        secretBytes, sendQueueSize, ackTimeoutMs, maxAckTimeouts, pingIntervalMs);
+                RelayConnection previous = connections.put(targetNodeId, connection);
+                if (previous != null) {
+                    previous.close();
+                }
+                backoffUntil.remove(targetNodeId);
+                log.info("Relay connection to node {} established at {}", targetNodeId, address);
+            } catch (Exception e) {
+                backoffUntil.put(targetNodeId, System.currentTimeMillis() + reconnectBackoffMs);
+                log.warn("Failed to connect relay to node {}: {}", targetNodeId, e.getMessage());
+            } finally {
+                connecting.remove(targetNodeId);
+            }
+        });
+    }
+
+    /**
+     * 查找对端节点的中继地址：先查静态配置，再查Nacos实例元数据
+     */
+    private InetSocketAddress resolvePeer(String targetNodeId) {
+        InetSocketAddress configured = allowedPeers.get(targetNodeId);
+        if (configured != null) {
+            return new InetSocketAddress(configured.getHostString(), configured.getPort());
+        }
+
+        DiscoveryClient client = discoveryClient.getIfAvailable();
+        if (client == null) {
+            return null;
+        }
+        for (ServiceInstance instance : client.getInstances(serviceName)) {
+            Map<String, String> metadata = instance.getMetadata();
+            if (targetNodeId.equals(metadata.get(METADATA_NODE_ID)) && metadata.containsKey(METADATA_RELAY_PORT)) {
+                return new InetSocketAddress(instance.getHost(), Integer.parseInt(metadata.get(METADATA_RELAY_PORT)));
+            }
+        }
+        return null;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                inboundSockets.add(socket);
+                inboundExecutor.execute(() -> serveInbound(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Relay accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理一个入站连接：先完成握手，再按顺序处理收到的批次，处理完成后回复确认
+     */
+    private void serveInbound(Socket socket) {
+        String peerNodeId = null;
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            peerNodeId = handshake(socket, in, out);
+            if (peerNodeId == null) {
+                rejectedCounter.increment();
+                return;
+            }
+            log.info("Relay connection accepted from node {}", peerNodeId);
+
+            while (running) {
+                int length = in.readInt();
+                if (length < RelayConnection.FRAME_HEADER_SIZE || length > RelayConnection.MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid relay frame length: " + length);
+                }
+                byte type = in.readByte();
+                long id = in.readLong();
+                byte[] payload = in.readNBytes(length - RelayConnection.FRAME_HEADER_SIZE);
+
+                if (type == RelayConnection.FRAME_BATCH || type == RelayConnection.FRAME_PING) {
+                    if (type == RelayConnection.FRAME_BATCH) {
+                        handleBatch(payload, peerNodeId);
+                    }
+                    out.writeInt(RelayConnection.FRAME_HEADER_SIZE);
+                    out.writeByte(RelayConnection.FRAME_ACK);
+                    out.writeLong(id);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                log.info("Relay connection from node {} closed: {}", peerNodeId, e.getMessage());
+            }
+        } finally {
+            inboundSockets.remove(socket);
+        }
+    }
+
+    /**
+     * 入站握手：发送随机挑战，要求第一帧是peers中节点发来的、目标为本节点、签名正确的握手帧
+     *
+     * @return 通过校验的对端节点ID，未通过时返回null
+     */
+    private String handshake(Socket socket, DataInputStream in, DataOutputStream out) throws IOException {
+        socket.setSoTimeout(handshakeTimeoutMs);
+        byte[] challenge = new byte[RelayConnection.CHALLENGE_SIZE];
+        secureRandom.nextBytes(challenge);
+        out.writeInt(RelayConnection.FRAME_HEADER_SIZE + challenge.length);
+        out.writeByte(RelayConnection.FRAME_CHALLENGE);
+        out.writeLong(0);
+        out.write(challenge);
+        out.flush();
+
+        int length = in.readInt();
+        if (length < RelayConnection.FRAME_HEADER_SIZE || length > RelayConnection.MAX_HANDSHAKE_FRAME_SIZE) {
+            log.warn("Relay connection from {} sent an invalid handshake frame, closing", socket.getRemoteSocketAddress());
+            return null;
+        }
+        byte type = in.readByte();
+        in.readLong();
+        byte[] payload = in.readNBytes(length - RelayConnection.FRAME_HEADER_SIZE);
+        if (type != RelayConnection.FRAME_HELLO) {
+            log.warn("Relay connection from {} did not start with a handshake, closing", socket.getRemoteSocketAddress());
+            return null;
+        }
+
+        String[] hello = new String(payload, StandardCharsets.UTF_8).split("\n", 3);
+        String peerNodeId = hello[0];
+        if (hello.length < 3 || !allowedPeers.containsKey(peerNodeId) || !serverId.equals(hello[1])) {
+            log.warn("Relay connection from {} as node {} to node {} is not allowed on {}, closing",
+                    socket.getRemoteSocketAddress(), peerNodeId, hello.length < 2 ? null : hello[1], serverId);
+            return null;
+        }
+
+        byte[] signature;
+        try {
+            signature = Base64.getDecoder().decode(hello[2]);
+        } catch (IllegalArgumentException e) {
+            signature = new byte[0];
+        }
+        if (!MessageDigest.isEqual(signature, RelayConnection.sign(secretBytes, challenge, peerNodeId, serverId))) {
+            log.warn("Relay connection from {} as node {} failed authentication, closing",
+                    socket.getRemoteSocketAddress(), peerNodeId);
+            return null;
+        }
+        // 对端空闲时会定期探测，长时间没有任何帧说明对端已经不可用
+        socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, pingIntervalMs * 3));
+        return peerNodeId;
+    }
+
+    private void handleBatch(byte[] payload, String peerNodeId) {
+        receivedCounter.increment();
+        Consumer<NodeEnvelopeBatch> handler = batchHandler;
+        if (handler == null) {
+            log.warn("Relay batch from node {} dropped: no handler registered", peerNodeId);
+            return;
+        }
+        try {
+            handler.accept(objectMapper.readValue(payload, NodeEnvelopeBatch.class));
+        } catch (Exception e) {
+            // 与RocketMQ消费一致：批次无法解析或处理失败时记录日志，不重复投递
+            log.error("Failed to process relay batch from node {}", peerNodeId, e);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
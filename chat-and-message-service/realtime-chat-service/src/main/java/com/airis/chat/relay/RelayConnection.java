@@ -0,0 +1,334 @@
+package com.airis.chat.relay;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 到一个对端节点的中继连接
+ * 一条长连接承载发往该节点的所有批次，每个批次带有递增的ID，对端处理完成后回复同ID的确认帧。
+ * 建立连接时对端先发送随机挑战，本端用共享密钥对挑战和双方节点ID计算HMAC后放入握手帧，校验通过前对端不处理任何批次。
+ * 每个连接有独立的写线程和有界发送队列，慢对端只会填满自己的队列，不会阻塞调用线程或其他对端。
+ * 连续多个批次确认超时或空闲探测（ping）未及时确认时认为对端不健康，关闭连接，由NodeRelay暂停重连。
+ * 帧格式：长度（int，不含自身） + 类型（byte） + ID（long） + 负载
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+public class RelayConnection {
+
+    static final byte FRAME_HELLO = 1;
+
+    static final byte FRAME_BATCH = 2;
+
+    static final byte FRAME_ACK = 3;
+
+    static final byte FRAME_CHALLENGE = 4;
+
+    // 空闲探测，对端回复同ID的确认帧
+    static final byte FRAME_PING = 5;
+
+    // 帧头长度：类型 + ID
+    static final int FRAME_HEADER_SIZE = 1 + Long.BYTES;
+
+    static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    // 握手完成前允许的最大帧长度
+    static final int MAX_HANDSHAKE_FRAME_SIZE = 1024;
+
+    static final int CHALLENGE_SIZE = 32;
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    private final String peerNodeId;
+
+    private final Socket socket;
+
+    // 等待对端确认的最长时间
+    private final long ackTimeoutMs;
+
+    // 连续多少次确认超时后关闭连接
+    private final int maxAckTimeouts;
+
+    // 连接空闲多久后发送一次探测
+    private final long pingIntervalMs;
+
+    private final DataOutputStream out;
+
+    private final DataInputStream in;
+
+    private final AtomicLong nextBatchId = new AtomicLong();
+
+    // 批次ID -> 等待确认的发送
+    private final Map<Long, CompletableFuture<Void>> pendingAcks = new ConcurrentHashMap<>();
+
+    // 等待写线程发送的批次
+    private final BlockingQueue<OutgoingBatch> sendQueue;
+
+    // 连续确认超时的次数，收到确认后清零
+    private final AtomicInteger consecutiveTimeouts = new AtomicInteger();
+
+    private volatile Thread writer;
+
+    private volatile boolean closed;
+
+    // 是否因确认超时而关闭
+    private volatile boolean unhealthy;
+
+    private RelayConnection(String peerNodeId, Socket socket, int sendQueueSize, long ackTimeoutMs,
+                            int maxAckTimeouts, long pingIntervalMs) throws IOException {
+        this.peerNodeId = peerNodeId;
+        this.socket = socket;
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.maxAckTimeouts = maxAckTimeouts;
+        this.pingIntervalMs = pingIntervalMs;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.sendQueue = new ArrayBlockingQueue<>(sendQueueSize);
+    }
+
+    /**
+     * 连接对端节点并完成握手：读取对端的挑战，回复携带本节点ID、期望的对端节点ID和HMAC的握手帧。
+     * 对端ID不符或HMAC校验失败时对端会关闭连接
+     */
+    static RelayConnection open(String localNodeId, String peerNodeId, InetSocketAddress address,
+                                int connectTimeoutMs, byte[] secret, int sendQueueSize, long ackTimeoutMs,
+                                int maxAckTimeouts, long pingIntervalMs) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(address, connectTimeoutMs);
+            RelayConnection connection = new RelayConnection(peerNodeId, socket, sendQueueSize, ackTimeoutMs,
+                    maxAckTimeouts, pingIntervalMs);
+
+            socket.setSoTimeout(connectTimeoutMs);
+            int length = connection.in.readInt();
+            if (length != FRAME_HEADER_SIZE + CHALLENGE_SIZE || connection.in.readByte() != FRAME_CHALLENGE) {
+                throw new IOException("Relay peer " + peerNodeId + " did not send a challenge");
+            }
+            connection.in.readLong();
+            byte[] challenge = connection.in.readNBytes(CHALLENGE_SIZE);
+            socket.setSoTimeout(0);
+
+            String signature = Base64.getEncoder().encodeToString(sign(secret, challenge, localNodeId, peerNodeId));
+            connection.writeFrame(FRAME_HELLO, 0,
+                    (localNodeId + "\n" + peerNodeId + "\n" + signature).getBytes(StandardCharsets.UTF_8));
+            connection.out.flush();
+
+            Thread reader = new Thread(connection::readAcks, "relay-client-" + peerNodeId);
+            reader.setDaemon(true);
+            reader.start();
+            Thread writer = new Thread(connection::writeBatches, "relay-writer-" + peerNodeId);
+            writer.setDaemon(true);
+            connection.writer = writer;
+            writer.start();
+            return connection;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 计算握手签名：HMAC-SHA256(密钥, 挑战 + 发起方节点ID + 接收方节点ID)
+     */
+    static byte[] sign(byte[] secret, byte[] challenge, String fromNodeId, String toNodeId) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+            mac.update(challenge);
+            mac.update((fromNodeId + "\n" + toNodeId).getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to sign relay handshake", e);
+        }
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * 连接是否因对端确认超时而关闭（对端卡住或网络中断）
+     */
+    public boolean isUnhealthy() {
+        return unhealthy;
+    }
+
+    /**
+     * 发送一个批次，由写线程异步写出
+     *
+     * @return 对端确认后完成；发送队列已满、超时或连接断开时异常完成
+     */
+    public CompletableFuture<Void> send(byte[] payload) {
+        long batchId = nextBatchId.incrementAndGet();
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        if (closed) {
+            ack.completeExceptionally(new IOException("Relay connection to " + peerNodeId + " closed"));
+            return ack;
+        }
+        awaitAck(batchId, ack, maxAckTimeouts);
+
+        if (!sendQueue.offer(new OutgoingBatch(batchId, payload))) {
+            ack.completeExceptionally(new IOException("Relay send queue to " + peerNodeId + " is full"));
+        } else if (closed) {
+            // 与close并发时，队列中的批次可能已经不会再被写出
+            ack.completeExceptionally(new IOException("Relay connection to " + peerNodeId + " closed"));
+        }
+        return ack;
+    }
+
+    /**
+     * 登记等待确认的帧，超时后累计连续超时次数，达到上限时关闭连接
+     *
+     * @param timeoutsToClose 连续超时多少次后关闭连接
+     */
+    private void awaitAck(long id, CompletableFuture<Void> ack, int timeoutsToClose) {
+        pendingAcks.put(id, ack);
+        ack.orTimeout(ackTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((ignored, e) -> {
+            pendingAcks.remove(id);
+            if (e == null) {
+                consecutiveTimeouts.set(0);
+            } else if (e instanceof TimeoutException && consecutiveTimeouts.incrementAndGet() >= timeoutsToClose
+                    && !closed) {
+                log.warn("Relay peer {} did not acknowledge within {}ms ({} in a row), closing connection",
+                        peerNodeId, ackTimeoutMs, consecutiveTimeouts.get());
+                unhealthy = true;
+                close(new IOException("Relay peer " + peerNodeId + " stopped acknowledging"));
+            }
+        });
+    }
+
+    public void close() {
+        close(new IOException("Relay connection to " + peerNodeId + " closed"));
+    }
+
+    private void close(Throwable cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // 已经关闭
+        }
+        Thread writerThread = writer;
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+        sendQueue.clear();
+        for (CompletableFuture<Void> ack : pendingAcks.values()) {
+            ack.completeExceptionally(cause);
+        }
+        pendingAcks.clear();
+    }
+
+    /**
+     * 写线程：依次写出队列中的批次，队列暂时为空时才刷新缓冲区；空闲超过ping间隔时发送探测
+     */
+    private void writeBatches() {
+        try {
+            while (!closed) {
+                OutgoingBatch batch = sendQueue.poll(pingIntervalMs, TimeUnit.MILLISECONDS);
+                if (batch == null) {
+                    ping();
+                    continue;
+                }
+                if (!pendingAcks.containsKey(batch.id)) {
+                    // 在队列中等待期间已超时，调用方已回退到RocketMQ
+                    continue;
+                }
+                writeFrame(FRAME_BATCH, batch.id, batch.payload);
+                if (sendQueue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!closed) {
+                log.warn("Relay write to {} failed: {}", peerNodeId, e.getMessage());
+            }
+            close(e);
+        }
+    }
+
+    /**
+     * 发送空闲探测，未及时确认时立即关闭连接
+     */
+    private void ping() throws IOException {
+        long pingId = nextBatchId.incrementAndGet();
+        awaitAck(pingId, new CompletableFuture<>(), 1);
+        writeFrame(FRAME_PING, pingId, EMPTY_PAYLOAD);
+        out.flush();
+    }
+
+    private void writeFrame(byte type, long id, byte[] payload) throws IOException {
+        out.writeInt(FRAME_HEADER_SIZE + payload.length);
+        out.writeByte(type);
+        out.writeLong(id);
+        out.write(payload);
+    }
+
+    private void readAcks() {
+        try {
+            while (!closed) {
+                int length = in.readInt();
+                byte type = in.readByte();
+                long id = in.readLong();
+                in.skipNBytes(length - FRAME_HEADER_SIZE);
+                if (type == FRAME_ACK) {
+                    CompletableFuture<Void> ack = pendingAcks.remove(id);
+                    if (ack != null) {
+                        ack.complete(null);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                log.warn("Relay connection to {} lost: {}", peerNodeId, e.getMessage());
+            }
+            close(e);
+        }
+    }
+
+    /**
+     * 等待写出的批次
+     */
+    private static final class OutgoingBatch {
+
+        private final long id;
+
+        private final byte[] payload;
+
+        OutgoingBatch(long id, byte[] payload) {
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+}
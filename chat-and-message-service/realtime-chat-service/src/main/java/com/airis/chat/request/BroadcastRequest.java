@@ -0,0 +1,41 @@
+package com.airis.chat.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 系统通知广播请求
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastRequest {
+
+    /**
+     * 接收者ID集合
+     */
+    @NotEmpty(message = "userIds cannot be empty")
+    @Size(max = 10000, message = "At most 10000 userIds per broadcast")
+    private Set<String> userIds;
+
+    /**
+     * 通知内容
+     */
+    private String content;
+
+    /**
+     * 额外数据
+     */
+    private Map<String, Object> extraData;
+}
@@ -0,0 +1,54 @@
+package com.airis.chat.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 广播结果响应
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastResponse {
+
+    /**
+     * 接收者总数
+     */
+    private int totalRecipients;
+
+    /**
+     * 本节点直接投递的接收者数
+     */
+    private int localRecipients;
+
+    /**
+     * 转发到其他节点的接收者数
+     */
+    private int remoteRecipients;
+
+    /**
+     * 转发涉及的节点数
+     */
+    private int remoteNodes;
+
+    /**
+     * 发送的广播信封数
+     */
+    private int envelopes;
+
+    /**
+     * 离线（未找到所在节点）的接收者数
+     */
+    private int offlineRecipients;
+
+    /**
+     * 时间戳
+     */
+    private Long timestamp;
+}
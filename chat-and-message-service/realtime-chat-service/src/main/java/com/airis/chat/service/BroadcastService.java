@@ -0,0 +1,123 @@
+package com.airis.chat.service;
+
+import com.airis.chat.entity.BroadcastEnvelope;
+import com.airis.chat.entity.WebSocketMessage;
+import com.airis.chat.producer.MessageProducer;
+import com.airis.chat.response.BroadcastResponse;
+import com.airis.chat.websocket.OutboundFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 集群广播服务
+ * 消息只序列化一次：本节点用户共享同一个出站帧，其他节点的用户按所在节点合并为广播信封
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BroadcastService {
+
+    private final WebSocketSessionManager sessionManager;
+    private final UserOnlineService userOnlineService;
+    private final MessageProducer messageProducer;
+    private final ObjectMapper objectMapper;
+
+    @Value("${airis.chat.server-id:server-1}")
+    private String serverId;
+
+    // 单个广播信封最多携带的接收者数（避免超过RocketMQ消息大小限制）
+    @Value("${airis.chat.broadcast.max-recipients-per-envelope:5000}")
+    private int maxRecipientsPerEnvelope;
+
+    /**
+     * 广播消息给集群内的多个用户
+     *
+     * @param userIds 接收者ID集合
+     * @param message 广播消息（receiverId不会被使用）
+     * @return 广播结果统计
+     */
+    public BroadcastResponse broadcast(Collection<String> userIds, WebSocketMessage message) {
+        Set<String> recipients = new LinkedHashSet<>(userIds);
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(message);
+        } catch (Exception e) {
+            log.error("Failed to serialize broadcast message", e);
+            throw new IllegalArgumentException("Failed to serialize broadcast message", e);
+        }
+
+        // 1. 本节点用户：共享同一个出站帧
+        OutboundFrame frame = OutboundFrame.ofJson(message.getType(), json);
+        List<String> remaining = sessionManager.broadcastFrame(recipients, frame);
+        int localRecipients = recipients.size() - remaining.size();
+
+        // 2. 其他节点用户：批量查询所在节点并按节点分组
+        Map<String, String> userServers = userOnlineService.getUserServers(remaining);
+        Map<String, List<String>> recipientsByNode = new HashMap<>();
+        int offlineRecipients = 0;
+        for (String userId : remaining) {
+            String targetServer = userServers.get(userId);
+            if (targetServer == null || serverId.equals(targetServer)) {
+                // 未找到所在节点，或者Redis显示在本节点但本地没有连接
+                offlineRecipients++;
+                continue;
+            }
+            recipientsByNode.computeIfAbsent(targetServer, k -> new ArrayList<>()).add(userId);
+        }
+
+        // 3. 每个节点发送一个（或少量分片的）广播信封
+        int remoteRecipients = 0;
+        int envelopes = 0;
+        int chunkSize = Math.max(1, maxRecipientsPerEnvelope);
+        long timestamp = System.currentTimeMillis();
+        for (Map.Entry<String, List<String>> entry : recipientsByNode.entrySet()) {
+            List<String> nodeRecipients = entry.getValue();
+            for (int from = 0; from < nodeRecipients.size(); from += chunkSize) {
+                List<String> chunk = nodeRecipients.subList(from, Math.min(from + chunkSize, nodeRecipients.size()));
+                BroadcastEnvelope envelope = BroadcastEnvelope.builder()
+                        .receiverIds(new ArrayList<>(chunk))
+                        .messageType(message.getType())
+                        .payload(json)
+                        .sourceNodeId(serverId)
+                        .timestamp(timestamp)
+                        .build();
+
+                if (messageProducer.sendBroadcastToSpecificServer(envelope, entry.getKey())) {
+                    remoteRecipients += chunk.size();
+                    envelopes++;
+                } else {
+                    offlineRecipients += chunk.size();
+                }
+            }
+        }
+
+        log.info("Broadcast completed on {}: total={}, local={}, remote={}, nodes={}, envelopes={}, offline={}",
+                serverId, recipients.size(), localRecipients, remoteRecipients, recipientsByNode.size(),
+                envelopes, offlineRecipients);
+
+        return BroadcastResponse.builder()
+                .totalRecipients(recipients.size())
+                .localRecipients(localRecipients)
+                .remoteRecipients(remoteRecipients)
+                .remoteNodes(recipientsByNode.size())
+                .envelopes(envelopes)
+                .offlineRecipients(offlineRecipients)
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+package com.airis.chat.service;
+
+import com.airis.chat.entity.WebSocketMessage;
+import com.airis.chat.util.HashedTimingWheel;
+import com.airis.chat.websocket.OutboundFrame;
+import com.airis.chat.websocket.OutboundMessageDispatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接交接服务
+ * 会话被新连接替换时：发送通知帧 -> 排空出站队列后关闭 -> 宽限期结束仍未关闭则强制关闭。
+ * 整个过程不阻塞调用线程，避免拖慢新连接的建立。
+ *
+ * 会话属性connectionState的状态流转：
+ * ESTABLISHING -> ESTABLISHED -> REPLACING
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConnectionHandoverService {
+
+    public static final String CONNECTION_STATE = "connectionState";
+
+    public static final String STATE_REPLACING = "REPLACING";
+
+    // 会话属性：连接纪元（Long），由UserOnlineService.registerConnection分配
+    public static final String CONNECTION_EPOCH = "connectionEpoch";
+
+    private final OutboundMessageDispatcher outboundDispatcher;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final HashedTimingWheel timingWheel;
+
+    // 交接宽限期（毫秒），超过后强制关闭旧连接
+    @Value("${airis.chat.handover.grace-period-ms:500}")
+    private long gracePeriodMs;
+
+    private Counter handoverCounter;
+
+    private Counter forcedCloseCounter;
+
+    @PostConstruct
+    public void init() {
+        handoverCounter = Counter.builder("chat.handover.started")
+                .description("Sessions handed over to a newer connection")
+                .register(meterRegistry);
+        forcedCloseCounter = Counter.builder("chat.handover.forced.closes")
+                .description("Replaced sessions closed after the grace period expired")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 开始交接旧会话，立即返回
+     *
+     * @param session 被替换的旧会话
+     * @param notice  发送给旧会话的通知消息
+     * @return 是否由本次调用发起交接（会话已关闭或已在交接中返回false）
+     */
+    public boolean handover(WebSocketSession session, WebSocketMessage notice) {
+        if (!session.isOpen()) {
+            return false;
+        }
+
+        // 状态切换为REPLACING，连接关闭时不再清理用户的在线状态
+        Object previousState = session.getAttributes().put(CONNECTION_STATE, STATE_REPLACING);
+        if (STATE_REPLACING.equals(previousState)) {
+            return false;
+        }
+        handoverCounter.increment();
+
+        try {
+            outboundDispatcher.enqueue(session, OutboundFrame.encode(objectMapper, notice));
+        } catch (Exception e) {
+            log.warn("Failed to queue handover notice for session: {}", session.getId(), e);
+        }
+
+        // 通知帧发送完成后关闭；客户端读得太慢时由宽限期兜底
+        outboundDispatcher.closeAfterDrain(session, CloseStatus.NORMAL);
+        timingWheel.schedule(() -> forceClose(session), gracePeriodMs, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private void forceClose(WebSocketSession session) {
+        if (!session.isOpen()) {
+            return;
+        }
+        log.info("Handover grace period of {}ms elapsed, force closing session: {}", gracePeriodMs, session.getId());
+        forcedCloseCounter.increment();
+        outboundDispatcher.closeNow(session, CloseStatus.NORMAL);
+    }
+}
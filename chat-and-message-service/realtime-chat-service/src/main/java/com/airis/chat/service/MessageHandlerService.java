@@ -2,11 +2,13 @@ package com.airis.chat.service;
 
 import com.airis.chat.entity.WebSocketMessage;
 import com.airis.chat.producer.MessageProducer;
+import com.airis.chat.websocket.InboundMessageDispatcher;
 import com.airis.message.dto.MessageDTO;
 import com.airis.message.dubbo.MessageDubboService;
 import com.airis.message.enums.MessageType;
 import com.airis.message.request.MarkReadRequest;
 import com.airis.message.request.SendMessageRequest;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.DubboReference;
@@ -16,6 +18,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 消息处理服务
@@ -30,37 +33,58 @@ import java.util.UUID;
 public class MessageHandlerService {
 
     private final WebSocketSessionManager sessionManager;
-    private final UserOnlineService userOnlineService;
     private final MessageProducer messageProducer;
 //    private final ContentModerationService contentModerationService;
     private final OfflinePushService offlinePushService;
+    private final InboundMessageDispatcher inboundDispatcher;
+    private final UserActivityAggregator activityAggregator;
+    private final TypingIndicatorService typingIndicatorService;
+    private final ReadReceiptCoalescer readReceiptCoalescer;
 
     @DubboReference(version = "1.0.0", timeout = 5000, check = false)
     private MessageDubboService messageDubboService;
 
     /**
      * 处理聊天消息
+     * 异步保存消息，保存成功后再推送给接收者并确认发送者（不会在持久化之前推送）
+     *
+     * @return 消息处理完成（推送和确认已发出，或已通知发送者失败）时完成的future
      */
-    public void handleChatMessage(WebSocketMessage wsMessage) {
+    public CompletableFuture<Void> handleChatMessage(WebSocketMessage wsMessage) {
+        // 保存客户端传来的临时消息ID用于后续确认
+        String tempMessageId = wsMessage.getTempMessageId();
+        String messageId;
+        CompletableFuture<MessageDTO> saveFuture;
+
         try {
-            // 确保发送者在线状态（处理超时后重新发消息的情况）
-            userOnlineService.updateUserActivity(wsMessage.getSenderId());
+            // 确保发送者在线状态（处理超时后重新发消息的情况），由活跃聚合器批量刷新
+            activityAggregator.markActive(wsMessage.getSenderId());
+
+            // 发出消息即结束发送者在该会话中的输入状态
+            typingIndicatorService.clear(wsMessage.getSenderId(), wsMessage.getChatId());
 
             // 生成服务器端消息ID
-            String messageId = generateMessageId();
+            messageId = generateMessageId();
             wsMessage.setMessageId(messageId);
 
-            // 保存客户端传来的临时消息ID用于后续确认
-            String tempMessageId = wsMessage.getTempMessageId();
-
-
             // 构建发送消息请求
             SendMessageRequest request = buildSendMessageRequest(wsMessage);
 
-            // 调用MessageService保存消息，必须确保保存成功
-            MessageDTO savedMessage = null;
+            // 异步调用MessageService保存消息，必须确保保存成功
+            saveFuture = messageDubboService.saveMessageAsync(request);
+        } catch (Exception e) {
+            log.error("Failed to handle chat message: senderId={}, receiverId={}, tempMessageId={}",
+                    wsMessage.getSenderId(), wsMessage.getReceiverId(), tempMessageId, e);
+            sendErrorToSender(wsMessage.getSenderId(), "消息发送失败", tempMessageId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // 保存完成后的推送在入站工作线程上执行，不占用Dubbo回调线程
+        return saveFuture.handleAsync((savedMessage, saveError) -> {
             try {
-                savedMessage = messageDubboService.saveMessage(request);
+                if (saveError != null) {
+                    throw saveError;
+                }
                 wsMessage.setTimestamp(savedMessage.getTimestamp());
                 log.info("Successfully saved message to database: messageId={}, tempMessageId={}, chatId={}",
                         messageId, tempMessageId, wsMessage.getChatId());
@@ -75,36 +99,43 @@ public class MessageHandlerService {
                 log.debug("Message processing completed successfully: messageId={}, tempMessageId={}",
                         messageId, tempMessageId);
 
-            } catch (Exception dubboException) {
+            } catch (Throwable dubboException) {
                 // 消息保存失败，记录错误并通知发送者
                 log.error("Failed to save message to database: messageId={}, tempMessageId={}, chatId={}, senderId={}",
                         messageId, tempMessageId, wsMessage.getChatId(), wsMessage.getSenderId(), dubboException);
 
                 // 发送错误消息给发送者，明确告知发送失败
-                sendErrorToSender(wsMessage.getSenderId(), "消息发送失败，请重试", tempMessageId);
-
                 // 不推送给接收者，不发送确认，确保数据一致性
-                return;
+                sendErrorToSender(wsMessage.getSenderId(), "消息发送失败，请重试", tempMessageId);
             }
+            return null;
+        }, inboundDispatcher.getWorkerExecutor());
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to handle chat message: senderId={}, receiverId={}, tempMessageId={}",
-                    wsMessage.getSenderId(), wsMessage.getReceiverId(), wsMessage.getTempMessageId(), e);
-            sendErrorToSender(wsMessage.getSenderId(), "消息发送失败", wsMessage.getTempMessageId());
-        }
+    @PostConstruct
+    public void registerReadReceiptHandler() {
+        readReceiptCoalescer.setFlushHandler(this::applyReadReceipt);
     }
 
     /**
      * 处理已读回执
+     * 合并到（会话，读者）的已读水位，由合并器定期标记已读并通知原发送者
      */
     public void handleReadReceipt(WebSocketMessage wsMessage) {
+        String messageId = extractMessageId(wsMessage);
+        if (messageId == null || messageId.isEmpty()) {
+            log.warn("Cannot handle read receipt: messageId is missing");
+            return;
+        }
+        readReceiptCoalescer.submit(wsMessage, messageId);
+    }
+
+    /**
+     * 标记已读水位之前的消息为已读，并通知原发送者
+     */
+    private void applyReadReceipt(WebSocketMessage wsMessage) {
         try {
-            // 提取消息ID
             String messageId = extractMessageId(wsMessage);
-            if (messageId == null || messageId.isEmpty()) {
-                log.warn("Cannot handle read receipt: messageId is missing");
-                return;
-            }
 
             // 构建标记已读请求
             MarkReadRequest request = MarkReadRequest.builder()
@@ -140,10 +171,8 @@ public class MessageHandlerService {
      * 处理输入状态
      */
     public void handleTypingStatus(WebSocketMessage wsMessage) {
-        // 直接转发输入状态给接收者
-        if (userOnlineService.isUserOnline(wsMessage.getReceiverId())) {
-            sessionManager.sendMessageToUser(wsMessage.getReceiverId(), wsMessage);
-        }
+        // 由输入状态服务合并，只推送开始和停止输入
+        typingIndicatorService.onTypingFrame(wsMessage);
     }
 
     /**
@@ -152,26 +181,28 @@ public class MessageHandlerService {
     private void sendMessageToReceiver(WebSocketMessage wsMessage) {
         String receiverId = wsMessage.getReceiverId();
 
-        // 检查接收者是否在线
-        if (userOnlineService.isUserOnline(receiverId)) {
-            // 检查接收者是否在当前服务器
-            if (sessionManager.isUserOnline(receiverId)) {
-                // 直接发送
-                sessionManager.sendMessageToUser(receiverId, wsMessage);
-                log.debug("Message delivered locally to user: {}", receiverId);
-            } else {
-                // 获取接收者所在的服务器节点
-                String targetServerId = userOnlineService.getUserServer(receiverId);
-                if (targetServerId != null && !targetServerId.isEmpty()) {
-                    // 精确发送到目标服务器节点
-                    messageProducer.sendToSpecificServer(wsMessage, targetServerId);
+        // 解析接收者的路由（接收者在当前服务器时不访问Redis）
+        MessageRoute route = sessionManager.resolveRoute(receiverId);
+        if (route.isLocal()) {
+            // 直接发送
+            sessionManager.sendMessageToUser(receiverId, wsMessage);
+            log.debug("Message delivered locally to user: {}", receiverId);
+        } else if (route.isRemote()) {
+            String targetServerId = route.getNodeId();
+            if (targetServerId != null) {
+                // 精确发送到目标服务器节点，发送者已经收到确认，发送失败时转为离线推送
+                if (messageProducer.sendToSpecificServer(wsMessage, targetServerId)) {
                     log.debug("Message sent to specific server: {} for user: {}", targetServerId, receiverId);
                 } else {
-                    log.warn("Cannot determine target server for user: {}, using deprecated broadcast method",
-                            receiverId);
-                    // 降级到旧方法
-                    messageProducer.sendToOtherServer(wsMessage);
+                    offlinePushService.sendOfflinePush(wsMessage);
+                    log.warn("Failed to send message to server: {} for user: {}, sent to offline push",
+                            targetServerId, receiverId);
                 }
+            } else {
+                log.warn("Cannot determine target server for user: {}, using deprecated broadcast method",
+                        receiverId);
+                // 降级到旧方法
+                messageProducer.sendToOtherServer(wsMessage);
             }
         } else {
             // 用户离线，发送离线推送
@@ -223,25 +254,27 @@ public class MessageHandlerService {
                 .timestamp(System.currentTimeMillis())
                 .build();
 
-        // 检查原发送者是否在线
-        if (userOnlineService.isUserOnline(originalSenderId)) {
-            if (sessionManager.isUserOnline(originalSenderId)) {
-                sessionManager.sendMessageToUser(originalSenderId, notification);
-                log.debug("Read receipt delivered locally to user: {}", originalSenderId);
-            } else {
-                // 获取原发送者所在的服务器节点
-                String targetServerId = userOnlineService.getUserServer(originalSenderId);
-                if (targetServerId != null && !targetServerId.isEmpty()) {
-                    // 精确发送到目标服务器节点
-                    messageProducer.sendReadReceiptToSpecificServer(notification, targetServerId);
+        // 解析原发送者的路由，原发送者离线时不通知
+        MessageRoute route = sessionManager.resolveRoute(originalSenderId);
+        if (route.isLocal()) {
+            sessionManager.sendMessageToUser(originalSenderId, notification);
+            log.debug("Read receipt delivered locally to user: {}", originalSenderId);
+        } else if (route.isRemote()) {
+            String targetServerId = route.getNodeId();
+            if (targetServerId != null) {
+                // 精确发送到目标服务器节点
+                if (messageProducer.sendReadReceiptToSpecificServer(notification, targetServerId)) {
                     log.debug("Read receipt sent to specific server: {} for user: {}", targetServerId,
                             originalSenderId);
                 } else {
-                    log.warn("Cannot determine target server for user: {}, using deprecated broadcast method",
+                    log.warn("Failed to send read receipt to server: {} for user: {}, dropped", targetServerId,
                             originalSenderId);
-                    // 降级到旧方法（不推荐）
-                    messageProducer.sendReadReceiptToOtherServer(notification);
                 }
+            } else {
+                log.warn("Cannot determine target server for user: {}, using deprecated broadcast method",
+                        originalSenderId);
+                // 降级到旧方法（不推荐）
+                messageProducer.sendReadReceiptToOtherServer(notification);
             }
         }
     }
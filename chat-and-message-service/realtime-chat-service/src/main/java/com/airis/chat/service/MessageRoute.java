@@ -0,0 +1,63 @@
+package com.airis.chat.service;
+
+import lombok.Getter;
+
+/**
+ * 消息投递路由
+ * LOCAL：接收者连接在当前节点；REMOTE：接收者在线，连接在nodeId节点（nodeId为null表示在线但节点未知）；
+ * OFFLINE：接收者离线
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Getter
+public final class MessageRoute {
+
+    public enum Type {
+        LOCAL,
+        REMOTE,
+        OFFLINE
+    }
+
+    private static final MessageRoute LOCAL = new MessageRoute(Type.LOCAL, null);
+
+    private static final MessageRoute OFFLINE = new MessageRoute(Type.OFFLINE, null);
+
+    private final Type type;
+
+    private final String nodeId;
+
+    private MessageRoute(Type type, String nodeId) {
+        this.type = type;
+        this.nodeId = nodeId;
+    }
+
+    public static MessageRoute local() {
+        return LOCAL;
+    }
+
+    public static MessageRoute remote(String nodeId) {
+        return new MessageRoute(Type.REMOTE, nodeId);
+    }
+
+    public static MessageRoute offline() {
+        return OFFLINE;
+    }
+
+    public boolean isLocal() {
+        return type == Type.LOCAL;
+    }
+
+    public boolean isRemote() {
+        return type == Type.REMOTE;
+    }
+
+    public boolean isOffline() {
+        return type == Type.OFFLINE;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.REMOTE ? "REMOTE(" + nodeId + ")" : type.name();
+    }
+}
@@ -0,0 +1,167 @@
+package com.airis.chat.service;
+
+import com.airis.chat.entity.WebSocketMessage;
+import com.airis.chat.util.HashedTimingWheel;
+import com.airis.chat.websocket.InboundMessageDispatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 已读回执合并器
+ * 按（会话，读者）保存已读水位，即最近一次已读回执。同一对（会话，读者）每隔固定时间最多刷新一次，
+ * 只有水位在上次刷新后前进过才交给处理器（标记已读并通知原发送者），中间的回执直接被后来的回执覆盖。
+ * 消息ID不带顺序，水位按回执到达顺序前进；入站分发器保证同一会话的帧按顺序处理
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReadReceiptCoalescer {
+
+    private final HashedTimingWheel timingWheel;
+    private final InboundMessageDispatcher inboundDispatcher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${airis.chat.read-receipt.coalesce-enabled:true}")
+    private boolean enabled;
+
+    // 同一对（会话，读者）两次刷新之间的最短间隔（毫秒）
+    @Value("${airis.chat.read-receipt.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    // 会话ID:读者ID -> 已读水位
+    private final Map<String, Watermark> watermarks = new ConcurrentHashMap<>();
+
+    private volatile Consumer<WebSocketMessage> flushHandler;
+
+    private Counter receivedCounter;
+
+    private Counter flushedCounter;
+
+    @PostConstruct
+    public void init() {
+        receivedCounter = Counter.builder("chat.read.receipt.received")
+                .description("Read receipts received from clients")
+                .register(meterRegistry);
+        flushedCounter = Counter.builder("chat.read.receipt.flushed")
+                .description("Read watermarks flushed to the message service")
+                .register(meterRegistry);
+        Gauge.builder("chat.read.receipt.pending", watermarks, Map::size)
+                .description("Chat and reader pairs with a tracked read watermark")
+                .register(meterRegistry);
+
+        log.info("Read receipt coalescer: enabled={}, flushIntervalMs={}", enabled, flushIntervalMs);
+    }
+
+    /**
+     * 设置水位前进时的处理器
+     */
+    public void setFlushHandler(Consumer<WebSocketMessage> flushHandler) {
+        this.flushHandler = flushHandler;
+    }
+
+    /**
+     * 提交一个已读回执
+     *
+     * @param readReceipt 已读回执，senderId为读者
+     * @param messageId   已读到的消息ID
+     */
+    public void submit(WebSocketMessage readReceipt, String messageId) {
+        receivedCounter.increment();
+        if (!enabled) {
+            flushedCounter.increment();
+            flushHandler.accept(readReceipt);
+            return;
+        }
+
+        String key = readReceipt.getChatId() + ":" + readReceipt.getSenderId();
+        Watermark watermark = watermarks.computeIfAbsent(key, Watermark::new);
+        synchronized (watermark) {
+            watermark.latest = readReceipt;
+            watermark.latestMessageId = messageId;
+            if (!watermark.scheduled) {
+                watermark.scheduled = true;
+                timingWheel.schedule(() -> flush(watermark), flushIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 刷新水位，水位前进过时交给处理器并在一个间隔后再次检查，否则不再跟踪该水位
+     */
+    private void flush(Watermark watermark) {
+        WebSocketMessage readReceipt;
+        synchronized (watermark) {
+            if (Objects.equals(watermark.latestMessageId, watermark.flushedMessageId)) {
+                watermark.scheduled = false;
+                watermarks.remove(watermark.key, watermark);
+                return;
+            }
+            readReceipt = watermark.latest;
+            watermark.flushedMessageId = watermark.latestMessageId;
+            timingWheel.schedule(() -> flush(watermark), flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        flushedCounter.increment();
+        // Dubbo调用会阻塞，不在时间轮线程上执行
+        inboundDispatcher.getWorkerExecutor().execute(() -> flushHandler.accept(readReceipt));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 同步刷新尚未刷新的水位
+        for (Watermark watermark : watermarks.values()) {
+            WebSocketMessage readReceipt;
+            synchronized (watermark) {
+                if (Objects.equals(watermark.latestMessageId, watermark.flushedMessageId)) {
+                    continue;
+                }
+                readReceipt = watermark.latest;
+                watermark.flushedMessageId = watermark.latestMessageId;
+            }
+            try {
+                flushHandler.accept(readReceipt);
+            } catch (Exception e) {
+                log.warn("Failed to flush read watermark {} on shutdown: {}", watermark.key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 一对（会话，读者）的已读水位
+     */
+    private static final class Watermark {
+
+        private final String key;
+
+        // 最近一次已读回执
+        private WebSocketMessage latest;
+
+        private String latestMessageId;
+
+        // 最近一次交给处理器的消息ID
+        private String flushedMessageId;
+
+        // 是否已安排刷新
+        private boolean scheduled;
+
+        Watermark(String key) {
+            this.key = key;
+        }
+    }
+}
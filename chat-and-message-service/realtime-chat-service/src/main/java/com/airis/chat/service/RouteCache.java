@@ -0,0 +1,175 @@
+package com.airis.chat.service;
+
+import com.airis.chat.entity.RouteChangeEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点本地的用户路由缓存（userId -> nodeId）
+ * 跨节点投递时先查缓存，命中则不访问Redis。只缓存在线且所在节点已知的远程路由，
+ * 离线结果不缓存，避免用户上线后消息仍被转为离线推送。
+ * 缓存通过以下途径失效：
+ * 1. 较短的写入后过期时间，兜底未收到事件的情况；
+ * 2. 用户切换节点或下线时通过Redis发布订阅广播的路由变更事件；
+ * 3. 本节点收到断开连接通知（用户已切换到通知的源节点）；
+ * 4. 缓存指向当前节点但本地没有该用户的连接（陈旧路由纠正）
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RouteCache implements MessageListener {
+
+    // 路由变更事件频道
+    public static final String ROUTE_EVENT_CHANNEL = "chat:route:events";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${airis.chat.route-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${airis.chat.route-cache.max-size:100000}")
+    private long maxSize;
+
+    // 缓存条目写入后的过期时间（毫秒）
+    @Value("${airis.chat.route-cache.ttl-ms:5000}")
+    private long ttlMs;
+
+    private Cache<String, String> routes;
+
+    private Counter staleCounter;
+
+    private Counter invalidationCounter;
+
+    @PostConstruct
+    public void init() {
+        routes = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+
+        FunctionCounter.builder("chat.route.cache.requests", routes, cache -> cache.stats().hitCount())
+                .description("Route cache lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.route.cache.requests", routes, cache -> cache.stats().missCount())
+                .description("Route cache lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("chat.route.cache.hit.ratio", routes, cache -> cache.stats().hitRate())
+                .description("Route cache hit ratio since startup")
+                .register(meterRegistry);
+        Gauge.builder("chat.route.cache.size", routes, Cache::size)
+                .description("Cached user routes")
+                .register(meterRegistry);
+        staleCounter = Counter.builder("chat.route.cache.stale")
+                .description("Cached routes found to be stale and corrected")
+                .register(meterRegistry);
+        invalidationCounter = Counter.builder("chat.route.cache.invalidations")
+                .description("Route change events applied to the cache")
+                .register(meterRegistry);
+
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(ROUTE_EVENT_CHANNEL));
+        }
+        log.info("Route cache: enabled={}, maxSize={}, ttlMs={}", enabled, maxSize, ttlMs);
+    }
+
+    /**
+     * 获取缓存的用户所在节点，未命中返回null
+     */
+    public String get(String userId) {
+        return enabled ? routes.getIfPresent(userId) : null;
+    }
+
+    /**
+     * 缓存用户所在节点
+     */
+    public void put(String userId, String nodeId) {
+        if (enabled && nodeId != null) {
+            routes.put(userId, nodeId);
+        }
+    }
+
+    /**
+     * 纠正陈旧路由：缓存的节点已被证实不是用户当前所在的节点
+     */
+    public void correctStale(String userId, String staleNodeId) {
+        if (enabled && routes.asMap().remove(userId, staleNodeId)) {
+            staleCounter.increment();
+            log.debug("Corrected stale route for user {}: {}", userId, staleNodeId);
+        }
+    }
+
+    /**
+     * 使用户的路由失效
+     *
+     * @param nodeId 用户新的所在节点，为null表示下线；缓存中是其他节点时计为一次陈旧路由纠正
+     */
+    public void invalidate(String userId, String nodeId) {
+        if (!enabled) {
+            return;
+        }
+        String cached = routes.asMap().remove(userId);
+        if (cached != null && !cached.equals(nodeId)) {
+            staleCounter.increment();
+        }
+    }
+
+    /**
+     * 向所有节点广播用户路由变更
+     *
+     * @param nodeId 用户新的所在节点，为null表示下线
+     */
+    public void publishRouteChange(String userId, String nodeId, String sourceNodeId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            RouteChangeEvent event = RouteChangeEvent.builder()
+                    .userId(userId)
+                    .nodeId(nodeId)
+                    .sourceNodeId(sourceNodeId)
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            redisTemplate.convertAndSend(ROUTE_EVENT_CHANNEL, objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            // 发布失败时依赖缓存过期时间兜底
+            log.warn("Failed to publish route change for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            RouteChangeEvent event = objectMapper.readValue(message.getBody(), RouteChangeEvent.class);
+            invalidationCounter.increment();
+            invalidate(event.getUserId(), event.getNodeId());
+        } catch (Exception e) {
+            log.warn("Failed to process route change event: {}", e.getMessage());
+        }
+    }
+}
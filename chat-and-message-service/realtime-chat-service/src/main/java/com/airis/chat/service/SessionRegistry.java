@@ -0,0 +1,434 @@
+package com.airis.chat.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * 本地WebSocket会话注册表
+ * 按用户ID分片，数字ID直接以long作为键存放在开放寻址表中，不保留字符串键；
+ * 读操作走StampedLock乐观读，不加锁、不分配对象，写操作按分片串行。
+ * 每个用户的值槽位在只有一个连接时直接保存会话对象，多个连接时才保存数组。
+ * 非数字（或非规范形式）的用户ID退回到ConcurrentHashMap。
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Component
+public class SessionRegistry {
+
+    // 分片数量（2的幂）
+    private static final int SHARD_COUNT = 64;
+
+    // 每个分片的初始容量（2的幂）
+    private static final int INITIAL_CAPACITY = 64;
+
+    // 空槽位标记，合法的数字键都是非负数
+    private static final long EMPTY = -1L;
+
+    // 超过18位的数字可能溢出long，走回退映射
+    private static final int MAX_NUMERIC_DIGITS = 18;
+
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+
+    // 非数字用户ID -> 会话（WebSocketSession 或 WebSocketSession[]）
+    private final ConcurrentHashMap<String, Object> fallback = new ConcurrentHashMap<>();
+
+    private final LongAdder userCount = new LongAdder();
+
+    private final LongAdder sessionCount = new LongAdder();
+
+    public SessionRegistry() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * 注册会话（同一会话重复注册无副作用）
+     */
+    public void add(String userId, WebSocketSession session) {
+        update(userId, current -> addTo(current, session));
+    }
+
+    /**
+     * 移除指定会话
+     *
+     * @return 会话是否存在并已移除
+     */
+    public boolean remove(String userId, WebSocketSession session) {
+        Object previous = update(userId, current -> removeFrom(current, session));
+        return contains(previous, session);
+    }
+
+    /**
+     * 移除用户的所有会话
+     *
+     * @return 被移除的会话
+     */
+    public List<WebSocketSession> removeAll(String userId) {
+        return toList(update(userId, current -> null));
+    }
+
+    /**
+     * 移除用户已经关闭的会话
+     *
+     * @return 被移除的会话数
+     */
+    public int removeClosed(String userId) {
+        if (lookup(userId) == null) {
+            return 0;
+        }
+        Object previous = update(userId, SessionRegistry::removeClosedFrom);
+        return count(previous) - count(removeClosedFrom(previous));
+    }
+
+    /**
+     * 获取用户的会话快照
+     */
+    public List<WebSocketSession> getSessions(String userId) {
+        return toList(lookup(userId));
+    }
+
+    /**
+     * 用户是否有开放的会话（不分配对象）
+     */
+    public boolean hasOpenSession(String userId) {
+        Object value = lookup(userId);
+        if (value instanceof WebSocketSession session) {
+            return session.isOpen();
+        }
+        if (value instanceof WebSocketSession[] sessions) {
+            for (WebSocketSession session : sessions) {
+                if (session.isOpen()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 已注册的用户数
+     */
+    public int getUserCount() {
+        return userCount.intValue();
+    }
+
+    /**
+     * 已注册的会话数
+     */
+    public int getSessionCount() {
+        return sessionCount.intValue();
+    }
+
+    private Object lookup(String userId) {
+        long key = numericKey(userId);
+        if (key == EMPTY) {
+            return fallback.get(userId);
+        }
+        long hash = mix(key);
+        return shardFor(hash).get(key, hash);
+    }
+
+    /**
+     * 原子更新用户的值槽位，返回更新前的值
+     */
+    private Object update(String userId, UnaryOperator<Object> fn) {
+        long key = numericKey(userId);
+        if (key != EMPTY) {
+            long hash = mix(key);
+            return shardFor(hash).update(key, hash, fn, this);
+        }
+
+        Object[] previous = new Object[1];
+        fallback.compute(userId, (k, current) -> {
+            previous[0] = current;
+            Object updated = fn.apply(current);
+            account(current, updated);
+            return updated;
+        });
+        return previous[0];
+    }
+
+    private Shard shardFor(long hash) {
+        return shards[(int) (hash >>> 32) & (SHARD_COUNT - 1)];
+    }
+
+    private void account(Object previous, Object updated) {
+        if (previous == null && updated != null) {
+            userCount.increment();
+        } else if (previous != null && updated == null) {
+            userCount.decrement();
+        }
+        sessionCount.add(count(updated) - count(previous));
+    }
+
+    /**
+     * 将规范形式的十进制用户ID解析为long，不是则返回EMPTY（不抛异常）
+     */
+    static long numericKey(String userId) {
+        int length = userId.length();
+        if (length == 0 || length > MAX_NUMERIC_DIGITS || (length > 1 && userId.charAt(0) == '0')) {
+            return EMPTY;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = userId.charAt(i);
+            if (c < '0' || c > '9') {
+                return EMPTY;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static Object addTo(Object current, WebSocketSession session) {
+        if (current == null) {
+            return session;
+        }
+        if (current instanceof WebSocketSession existing) {
+            return existing == session ? existing : new WebSocketSession[]{existing, session};
+        }
+        WebSocketSession[] sessions = (WebSocketSession[]) current;
+        for (WebSocketSession existing : sessions) {
+            if (existing == session) {
+                return current;
+            }
+        }
+        WebSocketSession[] grown = Arrays.copyOf(sessions, sessions.length + 1);
+        grown[sessions.length] = session;
+        return grown;
+    }
+
+    private static Object removeFrom(Object current, WebSocketSession session) {
+        if (current == null || current == session) {
+            return null;
+        }
+        if (current instanceof WebSocketSession) {
+            return current;
+        }
+        WebSocketSession[] sessions = (WebSocketSession[]) current;
+        int index = -1;
+        for (int i = 0; i < sessions.length; i++) {
+            if (sessions[i] == session) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return current;
+        }
+        if (sessions.length == 2) {
+            return sessions[1 - index];
+        }
+        WebSocketSession[] shrunk = new WebSocketSession[sessions.length - 1];
+        System.arraycopy(sessions, 0, shrunk, 0, index);
+        System.arraycopy(sessions, index + 1, shrunk, index, sessions.length - index - 1);
+        return shrunk;
+    }
+
+    private static Object removeClosedFrom(Object current) {
+        if (current instanceof WebSocketSession session) {
+            return session.isOpen() ? session : null;
+        }
+        if (current instanceof WebSocketSession[] sessions) {
+            Object result = null;
+            for (WebSocketSession session : sessions) {
+                if (session.isOpen()) {
+                    result = addTo(result, session);
+                }
+            }
+            return result;
+        }
+        return null;
+    }
+
+    private static boolean contains(Object value, WebSocketSession session) {
+        if (value == session) {
+            return value != null;
+        }
+        if (value instanceof WebSocketSession[] sessions) {
+            for (WebSocketSession existing : sessions) {
+                if (existing == session) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int count(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return value instanceof WebSocketSession[] sessions ? sessions.length : 1;
+    }
+
+    private static List<WebSocketSession> toList(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (value instanceof WebSocketSession session) {
+            return Collections.singletonList(session);
+        }
+        return List.of((WebSocketSession[]) value);
+    }
+
+    /**
+     * 开放寻址表（线性探测），键和值数组一起替换，保证读线程看到的是同一张表
+     */
+    private static final class Table {
+
+        final long[] keys;
+
+        final Object[] values;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            values = new Object[capacity];
+        }
+    }
+
+    /**
+     * 分片：写操作持有写锁，读操作使用乐观读，校验失败时退回读锁
+     */
+    private static final class Shard {
+
+        private final StampedLock lock = new StampedLock();
+
+        private Table table = new Table(INITIAL_CAPACITY);
+
+        private int size;
+
+        Object get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            Object value = find(table, key, hash);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    value = find(table, key, hash);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return value;
+        }
+
+        Object update(long key, long hash, UnaryOperator<Object> fn, SessionRegistry registry) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int mask = t.keys.length - 1;
+                int index = (int) hash & mask;
+                while (t.keys[index] != EMPTY && t.keys[index] != key) {
+                    index = (index + 1) & mask;
+                }
+
+                boolean present = t.keys[index] == key;
+                Object previous = present ? t.values[index] : null;
+                Object updated = fn.apply(previous);
+                if (updated == previous) {
+                    return previous;
+                }
+                registry.account(previous, updated);
+
+                if (updated == null) {
+                    delete(t, index);
+                    size--;
+                } else if (present) {
+                    t.values[index] = updated;
+                } else {
+                    t.keys[index] = key;
+                    t.values[index] = updated;
+                    if (++size * 2 > t.keys.length) {
+                        resize(t.keys.length * 2);
+                    }
+                }
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private static Object find(Table t, long key, long hash) {
+            long[] keys = t.keys;
+            int mask = keys.length - 1;
+            int index = (int) hash & mask;
+            // 乐观读期间表可能被修改，探测次数以表长为上限
+            for (int probes = 0; probes <= mask; probes++) {
+                long k = keys[index];
+                if (k == key) {
+                    return t.values[index];
+                }
+                if (k == EMPTY) {
+                    return null;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * 删除槽位并回移后续元素，避免使用墓碑标记
+         */
+        private static void delete(Table t, int index) {
+            long[] keys = t.keys;
+            Object[] values = t.values;
+            int mask = keys.length - 1;
+            int gap = index;
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                long k = keys[next];
+                if (k == EMPTY) {
+                    break;
+                }
+                int home = (int) mix(k) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = k;
+                    values[gap] = values[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = EMPTY;
+            values[gap] = null;
+        }
+
+        private void resize(int capacity) {
+            Table old = table;
+            Table grown = new Table(capacity);
+            int mask = capacity - 1;
+            for (int i = 0; i < old.keys.length; i++) {
+                long k = old.keys[i];
+                if (k != EMPTY) {
+                    int index = (int) mix(k) & mask;
+                    while (grown.keys[index] != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    grown.keys[index] = k;
+                    grown.values[index] = old.values[i];
+                }
+            }
+            table = grown;
+        }
+    }
+}
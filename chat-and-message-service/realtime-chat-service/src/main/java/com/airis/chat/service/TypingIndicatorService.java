@@ -0,0 +1,269 @@
+package com.airis.chat.service;
+
+import com.airis.chat.entity.WebSocketMessage;
+import com.airis.chat.util.HashedTimingWheel;
+import com.airis.chat.websocket.InboundMessageDispatcher;
+import com.airis.chat.websocket.OutboundFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 输入状态服务
+ * 按（发送者，会话）合并客户端的输入状态帧，只向接收者推送"开始输入"和"停止输入"两种状态变化：
+ * 1. 第一个typing帧推送开始输入，之后的typing帧只刷新最后输入时间，不再推送；
+ * 2. 收到stop_typing、发送者发出消息或超过过期时间没有新的typing帧时推送停止输入（发出消息时由客户端自行清除，不推送）。
+ * 只在状态变化时解析接收者路由；接收者在其他节点时通过Redis发布订阅发往该节点的输入状态频道，
+ * 不进入持久化的聊天消息通道，丢失时由过期时间兜底
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TypingIndicatorService implements MessageListener {
+
+    // 节点输入状态频道前缀，后接节点ID
+    public static final String TYPING_CHANNEL_PREFIX = "chat:typing:";
+
+    public static final String TYPING = "typing";
+
+    public static final String STOP_TYPING = "stop_typing";
+
+    private final WebSocketSessionManager sessionManager;
+    private final UserOnlineService userOnlineService;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final HashedTimingWheel timingWheel;
+    private final InboundMessageDispatcher inboundDispatcher;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    // 没有新的typing帧多久后自动推送停止输入（毫秒）
+    @Value("${airis.chat.typing.expire-ms:5000}")
+    private long expireMs;
+
+    // 发送者ID:会话ID -> 输入状态
+    private final Map<String, TypingState> states = new ConcurrentHashMap<>();
+
+    private Counter receivedCounter;
+
+    private Counter startCounter;
+
+    private Counter stopCounter;
+
+    private Counter expiredCounter;
+
+    private Counter remoteCounter;
+
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void init() {
+        receivedCounter = Counter.builder("chat.typing.received")
+                .description("Typing frames received from clients")
+                .register(meterRegistry);
+        startCounter = transitionCounter("start");
+        stopCounter = transitionCounter("stop");
+        expiredCounter = transitionCounter("expired");
+        remoteCounter = Counter.builder("chat.typing.remote")
+                .description("Typing transitions published to other nodes")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("chat.typing.dropped")
+                .description("Typing transitions dropped because the receiver was offline or unreachable")
+                .register(meterRegistry);
+        Gauge.builder("chat.typing.active", states, Map::size)
+                .description("Sender and chat pairs currently typing")
+                .register(meterRegistry);
+
+        listenerContainer.addMessageListener(this,
+                new ChannelTopic(TYPING_CHANNEL_PREFIX + userOnlineService.getServerId()));
+        log.info("Typing indicator service started: expireMs={}", expireMs);
+    }
+
+    private Counter transitionCounter(String transition) {
+        return Counter.builder("chat.typing.transitions")
+                .description("Typing transitions pushed to receivers")
+                .tag("transition", transition)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 处理客户端发来的输入状态帧
+     */
+    public void onTypingFrame(WebSocketMessage wsMessage) {
+        receivedCounter.increment();
+        String senderId = wsMessage.getSenderId();
+        String receiverId = wsMessage.getReceiverId();
+        if (senderId == null || receiverId == null) {
+            return;
+        }
+
+        String key = stateKey(senderId, wsMessage.getChatId());
+        if (STOP_TYPING.equals(wsMessage.getContent())) {
+            TypingState state = states.remove(key);
+            if (state != null) {
+                state.cancelExpiry();
+                stopCounter.increment();
+                emit(state, STOP_TYPING);
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        TypingState existing = states.get(key);
+        if (existing != null) {
+            // 已在输入中，只刷新最后输入时间，到期任务会按新的时间重新计算
+            existing.lastTypingAt = now;
+            return;
+        }
+
+        TypingState state = new TypingState(key, senderId, receiverId, wsMessage.getChatId(), now);
+        existing = states.putIfAbsent(key, state);
+        if (existing != null) {
+            existing.lastTypingAt = now;
+            return;
+        }
+        state.expiry = timingWheel.schedule(() -> checkExpiry(state), expireMs, TimeUnit.MILLISECONDS);
+        startCounter.increment();
+        emit(state, TYPING);
+    }
+
+    /**
+     * 发送者在会话中发出了消息，结束其输入状态
+     * 接收者收到消息时客户端会自行清除输入提示，这里不再推送停止输入
+     */
+    public void clear(String senderId, String chatId) {
+        TypingState state = states.remove(stateKey(senderId, chatId));
+        if (state != null) {
+            state.cancelExpiry();
+        }
+    }
+
+    private void checkExpiry(TypingState state) {
+        long remaining = state.lastTypingAt + expireMs - System.currentTimeMillis();
+        if (remaining > 0 && states.get(state.key) == state) {
+            // 期间收到过新的typing帧，按剩余时间重新安排
+            state.expiry = timingWheel.schedule(() -> checkExpiry(state), remaining, TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (states.remove(state.key, state)) {
+            expiredCounter.increment();
+            // 解析路由和Redis发布会阻塞，不在时间轮线程上执行
+            inboundDispatcher.getWorkerExecutor().execute(() -> {
+                // 期间发送者又开始输入时，接收者应继续显示输入中
+                if (!states.containsKey(state.key)) {
+                    emit(state, STOP_TYPING);
+                }
+            });
+        }
+    }
+
+    /**
+     * 向接收者推送输入状态变化
+     */
+    private void emit(TypingState state, String content) {
+        WebSocketMessage message = WebSocketMessage.builder()
+                .type(WebSocketMessage.WebSocketMessageType.TYPING)
+                .senderId(state.senderId)
+                .receiverId(state.receiverId)
+                .chatId(state.chatId)
+                .content(content)
+                .timestamp(System.currentTimeMillis())
+                .build();
+
+        try {
+            MessageRoute route = sessionManager.resolveRoute(state.receiverId);
+            if (route.isLocal()) {
+                deliverLocally(message);
+            } else if (route.isRemote() && route.getNodeId() != null) {
+                redisTemplate.convertAndSend(TYPING_CHANNEL_PREFIX + route.getNodeId(),
+                        objectMapper.writeValueAsString(message));
+                remoteCounter.increment();
+            } else {
+                droppedCounter.increment();
+            }
+        } catch (Exception e) {
+            droppedCounter.increment();
+            log.debug("Failed to deliver typing status to user {}: {}", state.receiverId, e.getMessage());
+        }
+    }
+
+    /**
+     * 推送给本节点的接收者，接收者不在本节点时直接丢弃
+     */
+    private void deliverLocally(WebSocketMessage message) throws Exception {
+        if (!sessionManager.isUserOnline(message.getReceiverId())) {
+            droppedCounter.increment();
+            return;
+        }
+        // 输入状态丢失无需记录推送失败
+        sessionManager.sendFrameToUser(message.getReceiverId(), OutboundFrame.encode(objectMapper, message), false);
+    }
+
+    /**
+     * 其他节点发来的输入状态
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            deliverLocally(objectMapper.readValue(message.getBody(), WebSocketMessage.class));
+        } catch (Exception e) {
+            log.debug("Failed to process remote typing status: {}", e.getMessage());
+        }
+    }
+
+    private static String stateKey(String senderId, String chatId) {
+        return senderId + ":" + chatId;
+    }
+
+    /**
+     * 一个发送者在一个会话中的输入状态
+     */
+    private static final class TypingState {
+
+        private final String key;
+
+        private final String senderId;
+
+        private final String receiverId;
+
+        private final String chatId;
+
+        // 最后收到typing帧的时间
+        private volatile long lastTypingAt;
+
+        private volatile HashedTimingWheel.Timeout expiry;
+
+        TypingState(String key, String senderId, String receiverId, String chatId, long lastTypingAt) {
+            this.key = key;
+            this.senderId = senderId;
+            this.receiverId = receiverId;
+            this.chatId = chatId;
+            this.lastTypingAt = lastTypingAt;
+        }
+
+        void cancelExpiry() {
+            HashedTimingWheel.Timeout timeout = expiry;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
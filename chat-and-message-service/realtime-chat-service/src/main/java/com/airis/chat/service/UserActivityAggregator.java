@@ -0,0 +1,136 @@
+package com.airis.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户活跃状态聚合器
+ * 心跳和聊天消息只在本地标记用户为活跃，定期把所有活跃用户分批交给一次Lua脚本刷新在线状态的TTL，
+ * 代替每次心跳都同步执行两次EXPIRE和一次SADD。
+ * 刷新间隔远小于状态过期时间（80秒），心跳间隔（30秒）加上刷新间隔仍在过期时间之内
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserActivityAggregator {
+
+    private final UserOnlineService userOnlineService;
+    private final SessionRegistry sessionRegistry;
+    private final MeterRegistry meterRegistry;
+
+    // 单次Lua脚本调用刷新的用户数
+    @Value("${airis.chat.activity.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    // 自上次刷新以来活跃过的用户
+    private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    private DistributionSummary batchSizeSummary;
+
+    private Timer flushTimer;
+
+    private Counter restoredCounter;
+
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() {
+        batchSizeSummary = DistributionSummary.builder("chat.activity.flush.batch.size")
+                .description("Users refreshed per activity flush")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("chat.activity.flush")
+                .description("Time spent flushing user activity to Redis")
+                .register(meterRegistry);
+        restoredCounter = Counter.builder("chat.activity.restored")
+                .description("Users whose online status keys had expired and were restored")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("chat.activity.flush.failed")
+                .description("Activity flush batches that failed")
+                .register(meterRegistry);
+        Gauge.builder("chat.activity.dirty", dirtyUsers, Set::size)
+                .description("Users waiting for the next activity flush")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 标记用户活跃，下次刷新时更新在线状态
+     */
+    public void markActive(String userId) {
+        dirtyUsers.add(userId);
+    }
+
+    /**
+     * 刷新所有活跃用户的在线状态
+     */
+    @Scheduled(fixedDelayString = "${airis.chat.activity.flush-interval-ms:5000}")
+    public void flush() {
+        if (dirtyUsers.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int flushed = 0;
+        List<String> batch = new ArrayList<>(flushBatchSize);
+        List<String> failed = new ArrayList<>();
+        Iterator<String> iterator = dirtyUsers.iterator();
+        while (iterator.hasNext()) {
+            String userId = iterator.next();
+            // 先移除再刷新，刷新期间再次活跃的用户留给下一轮
+            iterator.remove();
+            // 连接已经关闭的用户不刷新，否则会把已离线的用户恢复为在线
+            if (!sessionRegistry.hasOpenSession(userId)) {
+                continue;
+            }
+            batch.add(userId);
+            if (batch.size() == flushBatchSize) {
+                flushed += refresh(batch, failed);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushed += refresh(batch, failed);
+        }
+        // 失败的用户放回待刷新集合，下一轮重试（遍历结束后再放回，避免本轮重复处理）
+        dirtyUsers.addAll(failed);
+
+        batchSizeSummary.record(flushed);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Flushed activity for {} users in {}ms", flushed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private int refresh(List<String> userIds, List<String> failed) {
+        try {
+            long restored = userOnlineService.refreshUserActivity(userIds);
+            if (restored > 0) {
+                restoredCounter.increment(restored);
+                log.info("Restored complete online status for {} users during activity flush", restored);
+            }
+            return userIds.size();
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("Failed to flush activity for {} users, retrying next round", userIds.size(), e);
+            failed.addAll(userIds);
+            return 0;
+        }
+    }
+}
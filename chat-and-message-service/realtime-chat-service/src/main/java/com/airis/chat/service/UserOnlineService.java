@@ -1,20 +1,33 @@
 package com.airis.chat.service;
 
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.net.InetAddress;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 用户在线状态服务
- * 使用Redis管理用户的在线状态和活跃时间
+ * 使用Redis管理用户的在线状态和活跃时间：
+ * chat:online:lastseen为有序集合，成员为用户ID，分数为最后活跃时间（毫秒），分数在过期时间内即视为在线；
+ * chat:user:server:{userId}记录用户所在节点（带TTL），用于消息路由。
+ * 滚动升级期间旧版本节点只认在线集合chat:online:users和状态键chat:user:status:{userId}，
+ * 因此默认同时写入旧版结构（legacy-compat-enabled），所有节点升级完成后再关闭并清理
  *
  * @author AIRIS Team
  * @since 1.0.0
@@ -32,96 +45,220 @@ public class UserOnlineService {
     @Value("${server.port:9430}")
     private int serverPort;
 
+    // 是否同时写入旧版在线状态结构，所有节点升级到当前版本后再关闭（第二次发布），
+    // 关闭后定期清理会逐步移除旧版在线集合
+    @Value("${airis.chat.presence.legacy-compat-enabled:true}")
+    private boolean legacyCompatEnabled;
+
     // Redis键前缀
-    private static final String ONLINE_USERS_KEY = "chat:online:users";
-    private static final String USER_STATUS_PREFIX = "chat:user:status:";
+    private static final String LAST_SEEN_KEY = "chat:online:lastseen";
     private static final String USER_SERVER_PREFIX = "chat:user:server:";
-    private static final String CONNECT_LOCK_PREFIX = "lock:user:connect:";
+    private static final String USER_EPOCH_PREFIX = "chat:user:epoch:";
 
     // 用户状态过期时间（秒）
     private static final long STATUS_EXPIRE_SECONDS = 80;
-
-    // 分布式锁相关常量
-    private static final int LOCK_EXPIRE_SECONDS = 10; // 锁超时时间
-    private static final int LOCK_RETRY_TIMES = 3; // 重试次数
-    private static final int LOCK_RETRY_INTERVAL_MS = 100; // 重试间隔
+    private static final long STATUS_EXPIRE_MILLIS = TimeUnit.SECONDS.toMillis(STATUS_EXPIRE_SECONDS);
+
+    // 旧版在线状态结构（在线用户集合 + 状态键）：兼容期间同时写入，启动及定期清理时合并到LAST_SEEN_KEY
+    private static final String LEGACY_ONLINE_USERS_KEY = "chat:online:users";
+    private static final String LEGACY_USER_STATUS_PREFIX = "chat:user:status:";
+    private static final int LEGACY_MIGRATION_BATCH_SIZE = 500;
+
+    // 批量查询用户节点时每次MGET的键数量
+    private static final int SERVER_LOOKUP_BATCH_SIZE = 1000;
+
+    // 建立连接：原子地递增连接纪元、记录新的所在节点和最后活跃时间，返回之前的节点和新纪元
+    // 纪元键不设过期时间：过期后纪元会从1重新开始，比仍存活的长连接持有的纪元还小，
+    // 新连接会被拒绝、旧连接也不会被踢下线。persist用于清除旧版本设置的过期时间
+    // KEYS[1]=节点键，KEYS[2]=纪元键，KEYS[3]=最后活跃时间有序集合，KEYS[4]=旧版在线集合，KEYS[5]=旧版状态键
+    // ARGV[1]=当前节点ID，ARGV[2]=过期秒数，ARGV[3]=当前时间（毫秒），ARGV[4]=用户ID，ARGV[5]=是否写入旧版结构（1/0）
+    private static final RedisScript<List<Object>> CONNECT_SCRIPT = listScript(
+            "local previous = redis.call('get', KEYS[1]) " +
+            "local epoch = redis.call('incr', KEYS[2]) " +
+            "redis.call('persist', KEYS[2]) " +
+            "redis.call('set', KEYS[1], ARGV[1], 'EX', ARGV[2]) " +
+            "redis.call('zadd', KEYS[3], ARGV[3], ARGV[4]) " +
+            "if ARGV[5] == '1' then " +
+            "  redis.call('sadd', KEYS[4], ARGV[4]) " +
+            "  redis.call('set', KEYS[5], 'ONLINE', 'EX', ARGV[2]) " +
+            "end " +
+            "return {previous or '', tostring(epoch)}");
+
+    // 断开连接：仅当用户仍在当前节点且纪元未变（没有更新的连接）时清理在线状态
+    // 旧版结构同样清理，与旧版本节点的setUserOffline一致
+    // KEYS[1]=节点键，KEYS[2]=纪元键，KEYS[3]=最后活跃时间有序集合，KEYS[4]=旧版状态键，KEYS[5]=旧版在线集合
+    // ARGV[1]=当前节点ID，ARGV[2]=连接纪元（空串表示不校验），ARGV[3]=用户ID
+    private static final RedisScript<Long> DISCONNECT_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "if ARGV[2] ~= '' and redis.call('get', KEYS[2]) ~= ARGV[2] then return 0 end " +
+            "redis.call('del', KEYS[1], KEYS[4]) " +
+            "redis.call('zrem', KEYS[3], ARGV[3]) " +
+            "redis.call('srem', KEYS[5], ARGV[3]) " +
+            "return 1",
+            Long.class);
+
+    // 解析消息路由：用户离线时返回false（Java侧为null），在线时返回所在节点，节点未知时返回空字符串
+    // KEYS[1]=最后活跃时间有序集合，KEYS[2]=节点键；ARGV[1]=用户ID，ARGV[2]=在线判定的最早活跃时间（毫秒）
+    private static final RedisScript<String> RESOLVE_ROUTE_SCRIPT = RedisScript.of(
+            "local lastSeen = redis.call('zscore', KEYS[1], ARGV[1]) " +
+            "if not lastSeen or tonumber(lastSeen) < tonumber(ARGV[2]) then return false end " +
+            "return redis.call('get', KEYS[2]) or ''",
+            String.class);
+
+    // 批量刷新活跃状态：更新最后活跃时间；节点键存在时只刷新TTL，否则恢复为当前节点；
+    // 兼容期间同时刷新旧版在线集合和状态键，避免旧版本节点的定期清理把用户判为离线
+    // KEYS[1]=最后活跃时间有序集合，KEYS[2]=旧版在线集合，KEYS[2i+1]/KEYS[2i+2]=第i个用户的节点键/旧版状态键
+    // ARGV[1]=过期秒数，ARGV[2]=当前节点ID，ARGV[3]=当前时间（毫秒），ARGV[4]=是否写入旧版结构（1/0），ARGV[5..]=用户ID
+    private static final RedisScript<Long> REFRESH_ACTIVITY_SCRIPT = RedisScript.of(
+            "local ttl = tonumber(ARGV[1]) " +
+            "local legacy = ARGV[4] == '1' " +
+            "local restored = 0 " +
+            "for i = 5, #ARGV do " +
+            "  local serverKey = KEYS[(i - 5) * 2 + 3] " +
+            "  redis.call('zadd', KEYS[1], ARGV[3], ARGV[i]) " +
+            "  if redis.call('expire', serverKey, ttl) == 0 then " +
+            "    redis.call('set', serverKey, ARGV[2], 'EX', ttl) " +
+            "    restored = restored + 1 " +
+            "  end " +
+            "  if legacy then " +
+            "    redis.call('sadd', KEYS[2], ARGV[i]) " +
+            "    redis.call('set', KEYS[(i - 5) * 2 + 4], 'ONLINE', 'EX', ttl) " +
+            "  end " +
+            "end " +
+            "return restored",
+            Long.class);
+
+    // 把旧版在线集合中的一批用户合并到最后活跃时间有序集合：
+    // 根据状态键/节点键剩余的TTL推算最后活跃时间，两个键都已过期的用户不合并。
+    // 只有关闭兼容（所有节点都已升级）后才从旧集合中移除，否则旧版本节点会把这些用户判为离线
+    // KEYS[1]=最后活跃时间有序集合，KEYS[2]=旧版在线集合，KEYS[2i+1]/KEYS[2i+2]=第i个用户的状态键/节点键
+    // ARGV[1]=当前时间（毫秒），ARGV[2]=过期毫秒数，ARGV[3]=是否从旧集合移除（1/0），ARGV[4..]=用户ID
+    private static final RedisScript<Long> MIGRATE_LEGACY_SCRIPT = RedisScript.of(
+            "local now = tonumber(ARGV[1]) " +
+            "local expire = tonumber(ARGV[2]) " +
+            "local remove = ARGV[3] == '1' " +
+            "local migrated = 0 " +
+            "for i = 4, #ARGV do " +
+            "  local ttl = math.max(redis.call('pttl', KEYS[(i - 4) * 2 + 3]), " +
+            "      redis.call('pttl', KEYS[(i - 4) * 2 + 4])) " +
+            "  if ttl > 0 then " +
+            "    local lastSeen = now - (expire - ttl) " +
+            "    local current = redis.call('zscore', KEYS[1], ARGV[i]) " +
+            "    if not current or tonumber(current) < lastSeen then " +
+            "      redis.call('zadd', KEYS[1], lastSeen, ARGV[i]) " +
+            "    end " +
+            "    migrated = migrated + 1 " +
+            "  end " +
+            "  if remove then redis.call('srem', KEYS[2], ARGV[i]) end " +
+            "end " +
+            "return migrated",
+            Long.class);
+
+    @SuppressWarnings("unchecked")
+    private static RedisScript<List<Object>> listScript(String script) {
+        return (RedisScript<List<Object>>) (RedisScript<?>) RedisScript.of(script, List.class);
+    }
 
     /**
-     * 设置用户在线
+     * 启动时迁移旧版在线状态结构
      */
-    public void setUserOnline(String userId) {
-        String serverId = getServerId();
-
-        // 添加到在线用户集合
-        redisTemplate.opsForSet().add(ONLINE_USERS_KEY, userId);
-
-        // 设置用户状态
-        String statusKey = USER_STATUS_PREFIX + userId;
-        redisTemplate.opsForValue().set(statusKey, "ONLINE", STATUS_EXPIRE_SECONDS, TimeUnit.SECONDS);
-
-        // 记录用户所在的服务器节点
-        String serverKey = USER_SERVER_PREFIX + userId;
-        redisTemplate.opsForValue().set(serverKey, serverId, STATUS_EXPIRE_SECONDS, TimeUnit.SECONDS);
-
-        log.info("User {} is now online on server {}", userId, serverId);
+    @PostConstruct
+    public void migrateOnStartup() {
+        try {
+            migrateLegacyOnlineUsers();
+        } catch (Exception e) {
+            log.warn("Failed to migrate legacy online users, will retry during cleanup", e);
+        }
     }
 
     /**
      * 设置用户离线
      */
     public void setUserOffline(String userId) {
-        // 从在线用户集合中移除
-        redisTemplate.opsForSet().remove(ONLINE_USERS_KEY, userId);
+        // 移除最后活跃时间
+        redisTemplate.opsForZSet().remove(LAST_SEEN_KEY, userId);
 
-        // 删除用户状态
-        redisTemplate.delete(USER_STATUS_PREFIX + userId);
-        redisTemplate.delete(USER_SERVER_PREFIX + userId);
+        // 删除节点键（以及旧版的在线集合成员和状态键）
+        redisTemplate.delete(List.of(USER_SERVER_PREFIX + userId, LEGACY_USER_STATUS_PREFIX + userId));
+        redisTemplate.opsForSet().remove(LEGACY_ONLINE_USERS_KEY, userId);
 
         log.info("User {} is now offline", userId);
     }
 
+    /**
+     * 建立连接时登记用户的所在节点（一次Redis调用）
+     * 原子地递增用户的连接纪元，记录当前节点和最后活跃时间，并返回之前所在的节点
+     *
+     * @return 之前所在的节点（可能为null）和本次连接的纪元
+     */
+    public ConnectResult registerConnection(String userId) {
+        String serverId = getServerId();
+        List<String> keys = List.of(USER_SERVER_PREFIX + userId, USER_EPOCH_PREFIX + userId, LAST_SEEN_KEY,
+                LEGACY_ONLINE_USERS_KEY, LEGACY_USER_STATUS_PREFIX + userId);
+
+        List<Object> result = redisTemplate.execute(CONNECT_SCRIPT, keys, serverId,
+                String.valueOf(STATUS_EXPIRE_SECONDS), String.valueOf(System.currentTimeMillis()), userId,
+                legacyFlag());
+        if (result == null || result.size() < 2) {
+            throw new IllegalStateException("Unexpected connect script result: " + result);
+        }
+
+        String previousServerId = (String) result.get(0);
+        long epoch = Long.parseLong((String) result.get(1));
+        log.info("User {} is now online on server {} with epoch {}", userId, serverId, epoch);
+        return new ConnectResult(previousServerId.isEmpty() ? null : previousServerId, epoch);
+    }
+
     /**
      * 安全地设置用户离线（仅当用户在当前节点时）
      * 防止误清理已在其他节点上线的用户状态
      */
     public boolean setUserOfflineIfOnCurrentNode(String userId) {
+        return setUserOfflineIfOnCurrentNode(userId, null);
+    }
+
+    /**
+     * 安全地设置用户离线（仅当用户在当前节点且没有更新的连接时）
+     * 节点和纪元的检查与清理在同一个脚本中完成，避免检查之后用户在其他节点重新上线被误清理
+     *
+     * @param epoch 关闭的连接的纪元，为null时只检查节点
+     */
+    public boolean setUserOfflineIfOnCurrentNode(String userId, Long epoch) {
         String currentServerId = getServerId();
-        String userCurrentServer = getUserServer(userId);
+        List<String> keys = List.of(USER_SERVER_PREFIX + userId, USER_EPOCH_PREFIX + userId, LAST_SEEN_KEY,
+                LEGACY_USER_STATUS_PREFIX + userId, LEGACY_ONLINE_USERS_KEY);
 
-        // 只有用户确实在当前节点时才清理状态
-        if (currentServerId.equals(userCurrentServer)) {
-            setUserOffline(userId);
+        Long result = redisTemplate.execute(DISCONNECT_SCRIPT, keys, currentServerId,
+                epoch != null ? String.valueOf(epoch) : "", userId);
+        if (result != null && result == 1) {
             log.info("User {} set offline from current node: {}", userId, currentServerId);
             return true;
-        } else {
-            log.debug("User {} not on current node (current: {}, user on: {}), skipping offline operation",
-                    userId, currentServerId, userCurrentServer);
-            return false;
         }
+        log.debug("User {} not on current node {} or reconnected since epoch {}, skipping offline operation",
+                userId, currentServerId, epoch);
+        return false;
     }
 
     /**
-     * 检查用户是否在线
+     * 检查用户是否在线（最后活跃时间在过期时间之内）
      */
     public boolean isUserOnline(String userId) {
-        // 既要在在线集合中，状态键也要存在
-        boolean inOnlineSet = redisTemplate.opsForSet().isMember(ONLINE_USERS_KEY, userId);
-        if (!inOnlineSet) {
-            return false;
-        }
-
-        // 检查状态键是否存在
-        String statusKey = USER_STATUS_PREFIX + userId;
-        boolean statusKeyExists = redisTemplate.hasKey(statusKey);
+        Double lastSeen = redisTemplate.opsForZSet().score(LAST_SEEN_KEY, userId);
+        return lastSeen != null && lastSeen >= System.currentTimeMillis() - STATUS_EXPIRE_MILLIS;
+    }
 
-        if (!statusKeyExists) {
-            // 状态键不存在但用户在在线集合中，清理不一致状态
-            redisTemplate.opsForSet().remove(ONLINE_USERS_KEY, userId);
-            log.debug("Cleaned inconsistent online status for user: {}", userId);
-            return false;
+    /**
+     * 解析不在当前节点的用户的消息路由（一次Redis调用）
+     * 用户在线时返回REMOTE（节点未知时nodeId为null），否则返回OFFLINE
+     */
+    public MessageRoute resolveRemoteRoute(String userId) {
+        String serverId = redisTemplate.execute(RESOLVE_ROUTE_SCRIPT,
+                List.of(LAST_SEEN_KEY, USER_SERVER_PREFIX + userId), userId,
+                String.valueOf(System.currentTimeMillis() - STATUS_EXPIRE_MILLIS));
+        if (serverId == null) {
+            return MessageRoute.offline();
         }
-
-        return true;
+        return MessageRoute.remote(serverId.isEmpty() ? null : serverId);
     }
 
     /**
@@ -132,42 +269,92 @@ public class UserOnlineService {
     }
 
     /**
-     * 更新用户活跃时间（心跳）
+     * 批量获取用户所在的服务器节点
+     * 使用MGET分批查询，不在线的用户不会出现在结果中
+     */
+    public Map<String, String> getUserServers(Collection<String> userIds) {
+        Map<String, String> result = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return result;
+        }
+
+        List<String> batch = new ArrayList<>(Math.min(userIds.size(), SERVER_LOOKUP_BATCH_SIZE));
+        for (String userId : userIds) {
+            batch.add(userId);
+            if (batch.size() == SERVER_LOOKUP_BATCH_SIZE) {
+                lookupUserServers(batch, result);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            lookupUserServers(batch, result);
+        }
+        return result;
+    }
+
+    private void lookupUserServers(List<String> userIds, Map<String, String> result) {
+        List<String> keys = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            keys.add(USER_SERVER_PREFIX + userId);
+        }
+
+        List<String> servers = redisTemplate.opsForValue().multiGet(keys);
+        if (servers == null) {
+            return;
+        }
+        for (int i = 0; i < userIds.size() && i < servers.size(); i++) {
+            String serverId = servers.get(i);
+            if (serverId != null && !serverId.isEmpty()) {
+                result.put(userIds.get(i), serverId);
+            }
+        }
+    }
+
+    /**
+     * 批量刷新用户活跃时间（由UserActivityAggregator定期调用）
+     * 一次Lua脚本调用完成所有用户的最后活跃时间和TTL刷新，节点键缺失的用户恢复完整的在线状态
+     *
+     * @return 恢复了完整在线状态的用户数
      */
-    public void updateUserActivity(String userId) {
-        log.debug("Processing heartbeat for user: {}", userId);
-
-        String statusKey = USER_STATUS_PREFIX + userId;
-        String serverKey = USER_SERVER_PREFIX + userId;
-
-        // 直接尝试刷新TTL，如果键不存在，expire返回false
-        boolean statusKeyExists = redisTemplate.expire(statusKey, STATUS_EXPIRE_SECONDS, TimeUnit.SECONDS);
-        boolean serverKeyExists = redisTemplate.expire(serverKey, STATUS_EXPIRE_SECONDS, TimeUnit.SECONDS);
-
-        if (statusKeyExists && serverKeyExists) {
-            // 键存在且刷新成功，确保用户在在线集合中
-            redisTemplate.opsForSet().add(ONLINE_USERS_KEY, userId);
-            log.debug("Successfully updated activity for user: {}, TTL refreshed", userId);
-        } else {
-            // 键不存在或刷新失败，重新设置完整的在线状态
-            log.info("User {} status keys missing (statusKey: {}, serverKey: {}), restoring complete online status",
-                    userId, statusKeyExists, serverKeyExists);
-            setUserOnline(userId);
+    public long refreshUserActivity(List<String> userIds) {
+        if (userIds.isEmpty()) {
+            return 0;
         }
+
+        List<String> keys = new ArrayList<>(userIds.size() * 2 + 2);
+        keys.add(LAST_SEEN_KEY);
+        keys.add(LEGACY_ONLINE_USERS_KEY);
+        Object[] args = new Object[userIds.size() + 4];
+        args[0] = String.valueOf(STATUS_EXPIRE_SECONDS);
+        args[1] = getServerId();
+        args[2] = String.valueOf(System.currentTimeMillis());
+        args[3] = legacyFlag();
+        for (int i = 0; i < userIds.size(); i++) {
+            String userId = userIds.get(i);
+            keys.add(USER_SERVER_PREFIX + userId);
+            keys.add(LEGACY_USER_STATUS_PREFIX + userId);
+            args[i + 4] = userId;
+        }
+
+        Long restored = redisTemplate.execute(REFRESH_ACTIVITY_SCRIPT, keys, args);
+        return restored != null ? restored : 0;
     }
 
     /**
      * 获取所有在线用户
      */
     public Set<String> getOnlineUsers() {
-        return redisTemplate.opsForSet().members(ONLINE_USERS_KEY);
+        return redisTemplate.opsForZSet().rangeByScore(LAST_SEEN_KEY,
+                System.currentTimeMillis() - STATUS_EXPIRE_MILLIS, Double.POSITIVE_INFINITY);
     }
 
     /**
      * 获取在线用户数量
+     * 按分数统计，尚未被定期清理移除的过期用户不计入
      */
     public long getOnlineUserCount() {
-        Long count = redisTemplate.opsForSet().size(ONLINE_USERS_KEY);
+        Long count = redisTemplate.opsForZSet().count(LAST_SEEN_KEY,
+                System.currentTimeMillis() - STATUS_EXPIRE_MILLIS, Double.POSITIVE_INFINITY);
         return count != null ? count : 0;
     }
 
@@ -176,34 +363,70 @@ public class UserOnlineService {
      * 应该定期调用此方法
      */
     public void cleanupExpiredStatus() {
-        Set<String> onlineUsers = getOnlineUsers();
-        if (onlineUsers == null || onlineUsers.isEmpty()) {
+        // 节点键由TTL自动过期，这里只需一次移除所有超时的最后活跃记录
+        Long cleanedCount = redisTemplate.opsForZSet().removeRangeByScore(LAST_SEEN_KEY,
+                Double.NEGATIVE_INFINITY, System.currentTimeMillis() - STATUS_EXPIRE_MILLIS);
+        if (cleanedCount != null && cleanedCount > 0) {
+            log.info("Cleanup completed, removed {} expired users", cleanedCount);
+        }
+
+        // 滚动升级期间旧版本节点只写入旧版在线集合，持续合并；关闭兼容后逐步清空该集合
+        migrateLegacyOnlineUsers();
+    }
+
+    /**
+     * 合并旧版在线状态结构（在线用户集合 + 状态键）到最后活跃时间有序集合
+     * 兼容期间保留旧集合中的用户；关闭兼容后每批用户合并后从旧集合中移除。可以重复执行
+     */
+    private void migrateLegacyOnlineUsers() {
+        Long legacySize = redisTemplate.opsForSet().size(LEGACY_ONLINE_USERS_KEY);
+        if (legacySize == null || legacySize == 0) {
             return;
         }
 
-        int cleanedCount = 0;
-        for (String userId : onlineUsers) {
-            String statusKey = USER_STATUS_PREFIX + userId;
-            String serverKey = USER_SERVER_PREFIX + userId;
-
-            // 检查状态键和服务器键是否都不存在
-            boolean statusExists = redisTemplate.hasKey(statusKey);
-            boolean serverExists = redisTemplate.hasKey(serverKey);
-
-            if (!statusExists && !serverExists) {
-                // 两个键都不存在，才清理用户
-                redisTemplate.opsForSet().remove(ONLINE_USERS_KEY, userId);
-                cleanedCount++;
-                log.info("Cleaned up expired status for user: {}", userId);
-            } else if (!statusExists || !serverExists) {
-                // 如果只有一个键不存在，可能是TTL时间差导致的，等下次清理
-                log.debug("User {} has partial expired keys, will check next time", userId);
+        long migrated = 0;
+        long scanned = 0;
+        List<String> batch = new ArrayList<>(LEGACY_MIGRATION_BATCH_SIZE);
+        ScanOptions options = ScanOptions.scanOptions().count(LEGACY_MIGRATION_BATCH_SIZE).build();
+        try (Cursor<String> cursor = redisTemplate.opsForSet().scan(LEGACY_ONLINE_USERS_KEY, options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() == LEGACY_MIGRATION_BATCH_SIZE) {
+                    migrated += migrateLegacyBatch(batch);
+                    scanned += batch.size();
+                    batch.clear();
+                }
             }
         }
+        if (!batch.isEmpty()) {
+            migrated += migrateLegacyBatch(batch);
+            scanned += batch.size();
+        }
+        log.info("Migrated {} of {} legacy online users to {} (legacy set {})", migrated, scanned, LAST_SEEN_KEY,
+                legacyCompatEnabled ? "kept" : "cleaned");
+    }
 
-        if (cleanedCount > 0) {
-            log.info("Cleanup completed, removed {} expired users", cleanedCount);
+    private long migrateLegacyBatch(List<String> userIds) {
+        List<String> keys = new ArrayList<>(userIds.size() * 2 + 2);
+        keys.add(LAST_SEEN_KEY);
+        keys.add(LEGACY_ONLINE_USERS_KEY);
+        Object[] args = new Object[userIds.size() + 3];
+        args[0] = String.valueOf(System.currentTimeMillis());
+        args[1] = String.valueOf(STATUS_EXPIRE_MILLIS);
+        args[2] = legacyCompatEnabled ? "0" : "1";
+        for (int i = 0; i < userIds.size(); i++) {
+            String userId = userIds.get(i);
+            keys.add(LEGACY_USER_STATUS_PREFIX + userId);
+            keys.add(USER_SERVER_PREFIX + userId);
+            args[i + 3] = userId;
         }
+
+        Long migrated = redisTemplate.execute(MIGRATE_LEGACY_SCRIPT, keys, args);
+        return migrated != null ? migrated : 0;
+    }
+
+    private String legacyFlag() {
+        return legacyCompatEnabled ? "1" : "0";
     }
 
     /**
@@ -226,72 +449,20 @@ public class UserOnlineService {
     }
 
     /**
-     * 尝试获取用户连接锁（带重试）
+     * 连接登记结果
      */
-    public boolean tryAcquireConnectLock(String userId) {
-        String nodeId = getServerId();
-
-        for (int i = 0; i < LOCK_RETRY_TIMES; i++) {
-            if (tryLockUserConnect(userId, nodeId)) {
-                log.debug("Successfully acquired connect lock for user: {} on attempt {}", userId, i + 1);
-                return true;
-            }
-
-            if (i < LOCK_RETRY_TIMES - 1) {
-                try {
-                    Thread.sleep(LOCK_RETRY_INTERVAL_MS);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Interrupted while waiting for connect lock retry for user: {}", userId);
-                    return false;
-                }
-            }
-        }
-
-        log.warn("Failed to acquire connect lock for user: {} after {} attempts", userId, LOCK_RETRY_TIMES);
-        return false;
-    }
-
-    /**
-     * 尝试获取用户连接锁（单次尝试）
-     */
-    private boolean tryLockUserConnect(String userId, String nodeId) {
-        String lockKey = CONNECT_LOCK_PREFIX + userId;
-        // 使用SET NX EX命令实现分布式锁
-        Boolean result = redisTemplate.opsForValue().setIfAbsent(
-                lockKey, nodeId, LOCK_EXPIRE_SECONDS, TimeUnit.SECONDS);
-
-        boolean acquired = Boolean.TRUE.equals(result);
-        if (acquired) {
-            log.debug("Acquired connect lock for user: {} by node: {}", userId, nodeId);
-        }
-        return acquired;
-    }
-
-    /**
-     * 释放用户连接锁
-     */
-    public void releaseConnectLock(String userId) {
-        String nodeId = getServerId();
-        String lockKey = CONNECT_LOCK_PREFIX + userId;
-
-        // 使用Lua脚本确保只有锁的持有者能释放锁
-        String script = "if redis.call('get', KEYS[1]) == ARGV[1] then " +
-                "return redis.call('del', KEYS[1]) else return 0 end";
-
-        try {
-            Long result = redisTemplate.execute(
-                    RedisScript.of(script, Long.class),
-                    Collections.singletonList(lockKey),
-                    nodeId);
-
-            if (result != null && result == 1) {
-                log.debug("Successfully released connect lock for user: {} by node: {}", userId, nodeId);
-            } else {
-                log.debug("Connect lock for user: {} was not held by node: {} or already expired", userId, nodeId);
-            }
-        } catch (Exception e) {
-            log.warn("Failed to release connect lock for user: {} by node: {}", userId, nodeId, e);
-        }
+    @Getter
+    @AllArgsConstructor
+    public static class ConnectResult {
+
+        /**
+         * 用户之前所在的节点，首次上线时为null
+         */
+        private final String previousServerId;
+
+        /**
+         * 本次连接的纪元，单调递增，用于识别过期的断开通知和离线清理
+         */
+        private final long epoch;
     }
 }
\ No newline at end of file
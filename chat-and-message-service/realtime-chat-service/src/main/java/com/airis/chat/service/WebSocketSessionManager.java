@@ -3,25 +3,26 @@ package com.airis.chat.service;
 import com.airis.chat.entity.DisconnectNotification;
 import com.airis.chat.entity.WebSocketMessage;
 import com.airis.chat.producer.MessageProducer;
+import com.airis.chat.util.HashedTimingWheel;
+import com.airis.chat.websocket.OutboundFrame;
+import com.airis.chat.websocket.OutboundMessageDispatcher;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.socket.CloseStatus;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * WebSocket会话管理器
- * 管理用户的WebSocket连接，支持一个用户多个连接
+ * 管理用户的WebSocket连接，会话存放在分片的SessionRegistry中
  *
  * @author AIRIS Team
  * @since 1.0.0
@@ -34,9 +35,17 @@ public class WebSocketSessionManager {
     private final ObjectMapper objectMapper;
     private final UserOnlineService userOnlineService;
     private final MessageProducer messageProducer;
+    private final OutboundMessageDispatcher outboundDispatcher;
+    private final ConnectionHandoverService handoverService;
+    private final HashedTimingWheel timingWheel;
+    private final RouteCache routeCache;
 
-    // 用户ID -> WebSocket会话集合的映射
-    private final Map<String, Set<WebSocketSession>> userSessions = new ConcurrentHashMap<>();
+    // 用户ID -> WebSocket会话的注册表
+    private final SessionRegistry sessionRegistry;
+
+    // 本地连接登记的分段锁
+    private static final int CONNECT_LOCK_STRIPES = 256;
+    private final Object[] connectLocks = createConnectLocks();
 
     // 用户ID -> 推送失败信息的映射
     private final Map<String, FailedPushInfo> failedPushCache = new ConcurrentHashMap<>();
@@ -46,10 +55,12 @@ public class WebSocketSessionManager {
 
     /**
      * 推送失败信息
+     * 过期由时间轮负责移除，记录存在即表示未过期
      */
     private static class FailedPushInfo {
         private final long firstFailedTime;
-        private boolean notified;
+        private volatile boolean notified;
+        private volatile HashedTimingWheel.Timeout expiry;
 
         public FailedPushInfo() {
             this.firstFailedTime = System.currentTimeMillis();
@@ -68,9 +79,24 @@ public class WebSocketSessionManager {
             this.notified = notified;
         }
 
-        public boolean isExpired() {
-            return System.currentTimeMillis() - firstFailedTime > FAILED_PUSH_EXPIRE_TIME;
+        public void setExpiry(HashedTimingWheel.Timeout expiry) {
+            this.expiry = expiry;
+        }
+
+        public void cancelExpiry() {
+            HashedTimingWheel.Timeout timeout = expiry;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+
+    private static Object[] createConnectLocks() {
+        Object[] locks = new Object[CONNECT_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
         }
+        return locks;
     }
 
     /**
@@ -78,35 +104,26 @@ public class WebSocketSessionManager {
      * 一个用户只能有一个连接，新连接会替换旧连接
      */
     public void addSession(String userId, WebSocketSession session) {
-        Set<WebSocketSession> existingSessions = userSessions.get(userId);
+        List<WebSocketSession> existingSessions = sessionRegistry.getSessions(userId);
 
         // 如果用户已经有连接，先关闭旧连接
-        if (existingSessions != null && !existingSessions.isEmpty()) {
+        if (!existingSessions.isEmpty()) {
             log.info("User {} already has {} session(s), closing old connections", userId, existingSessions.size());
             for (WebSocketSession existingSession : existingSessions) {
-                try {
-                    if (existingSession.isOpen()) {
-                        // 发送替换通知
-                        String replaceMessage = objectMapper.writeValueAsString(
-                                WebSocketMessage.builder()
-                                        .type(WebSocketMessage.WebSocketMessageType.ERROR)
-                                        .senderId("system")
-                                        .content("Connection replaced by new session")
-                                        .timestamp(System.currentTimeMillis())
-                                        .build());
-                        existingSession.sendMessage(new TextMessage(replaceMessage));
-                        existingSession.close();
-                    }
-                } catch (Exception e) {
-                    log.warn("Failed to close existing session for user: {}", userId, e);
-                }
+                // 发送替换通知，发送完成后关闭旧连接
+                handoverService.handover(existingSession, WebSocketMessage.builder()
+                        .type(WebSocketMessage.WebSocketMessageType.ERROR)
+                        .senderId("system")
+                        .content("Connection replaced by new session")
+                        .timestamp(System.currentTimeMillis())
+                        .build());
             }
             // 清除旧会话
-            userSessions.remove(userId);
+            sessionRegistry.removeAll(userId);
         }
 
         // 添加新会话
-        userSessions.computeIfAbsent(userId, k -> new CopyOnWriteArraySet<>()).add(session);
+        sessionRegistry.add(userId, session);
         log.info("Added WebSocket session for user: {}, replaced old connections", userId);
     }
 
@@ -114,50 +131,87 @@ public class WebSocketSessionManager {
      * 移除WebSocket会话
      */
     public void removeSession(String userId, WebSocketSession session) {
-        Set<WebSocketSession> sessions = userSessions.get(userId);
-        if (sessions != null) {
-            sessions.remove(session);
-            if (sessions.isEmpty()) {
-                userSessions.remove(userId);
-            }
+        if (sessionRegistry.remove(userId, session)) {
             log.info("Removed WebSocket session for user: {}, remaining sessions: {}",
-                    userId, sessions.size());
+                    userId, sessionRegistry.getSessions(userId).size());
         }
     }
 
     /**
      * 获取用户的所有WebSocket会话
      */
-    public Set<WebSocketSession> getUserSessions(String userId) {
-        return userSessions.getOrDefault(userId, new CopyOnWriteArraySet<>());
+    public List<WebSocketSession> getUserSessions(String userId) {
+        return sessionRegistry.getSessions(userId);
     }
 
     /**
-     * 检查用户是否在线（是否有活跃的WebSocket连接）
+     * 解析消息投递路由
+     * 先查本地会话注册表，接收者连接在当前节点时不访问Redis；再查路由缓存；
+     * 都未命中时通过一次脚本调用判断在线状态和所在节点，并缓存远程路由
      */
-    public boolean isUserOnline(String userId) {
-        Set<WebSocketSession> sessions = userSessions.get(userId);
-        if (sessions == null || sessions.isEmpty()) {
-            return false;
+    public MessageRoute resolveRoute(String userId) {
+        if (isUserOnline(userId)) {
+            return MessageRoute.local();
         }
 
+        String currentNodeId = userOnlineService.getServerId();
+        String cachedNodeId = routeCache.get(userId);
+        if (cachedNodeId != null) {
+            if (!cachedNodeId.equals(currentNodeId)) {
+                return MessageRoute.remote(cachedNodeId);
+            }
+            // 缓存指向当前节点，但本地已没有该用户的连接
+            routeCache.correctStale(userId, cachedNodeId);
+        }
+
+        MessageRoute route = userOnlineService.resolveRemoteRoute(userId);
+        if (route.isRemote() && route.getNodeId() != null && !route.getNodeId().equals(currentNodeId)) {
+            routeCache.put(userId, route.getNodeId());
+        }
+        return route;
+    }
+
+    /**
+     * 检查用户是否在线（是否有活跃的WebSocket连接）
+     */
+    public boolean isUserOnline(String userId) {
         // 检查是否有开放的连接
-        boolean hasOpenConnection = sessions.stream().anyMatch(WebSocketSession::isOpen);
+        if (sessionRegistry.hasOpenSession(userId)) {
+            return true;
+        }
 
         // 如果没有开放的连接，清理死会话
-        if (!hasOpenConnection) {
-            userSessions.remove(userId);
+        if (sessionRegistry.removeClosed(userId) > 0) {
             log.debug("Cleaned up dead sessions for user: {}", userId);
         }
 
-        return hasOpenConnection;
+        return false;
     }
 
     /**
      * 向指定用户发送消息
      */
     public boolean sendMessageToUser(String userId, WebSocketMessage message) {
-        Set<WebSocketSession> sessions = getUserSessions(userId);
+        // 只序列化一次，所有会话共享同一个出站帧
+        OutboundFrame frame;
+        try {
+            frame = OutboundFrame.encode(objectMapper, message);
+        } catch (Exception e) {
+            log.error("Failed to serialize message", e);
+            return false;
+        }
+
+        // 记录推送失败状态（排除系统通知消息，避免循环）
+        return sendFrameToUser(userId, frame, !isSystemNotification(message));
+    }
+
+    /**
+     * 向指定用户发送已序列化的出站帧
+     *
+     * @param trackFailure 推送失败时是否记录失败状态
+     */
+    public boolean sendFrameToUser(String userId, OutboundFrame frame, boolean trackFailure) {
+        List<WebSocketSession> sessions = getUserSessions(userId);
         if (sessions.isEmpty()) {
             log.debug("No active sessions found for user: {}", userId);
             // 没有会话，清除在线状态
@@ -165,27 +219,20 @@ public class WebSocketSessionManager {
             return false;
         }
 
-        String json;
-        try {
-            json = objectMapper.writeValueAsString(message);
-        } catch (Exception e) {
-            log.error("Failed to serialize message", e);
-            return false;
-        }
-
         boolean sent = false;
-        Set<WebSocketSession> deadSessions = new CopyOnWriteArraySet<>();
+        boolean dropped = false;
+        List<WebSocketSession> deadSessions = new ArrayList<>(0);
 
         for (WebSocketSession session : sessions) {
             if (session.isOpen()) {
-                try {
-                    session.sendMessage(new TextMessage(json));
+                // 加入会话的出站队列，由写线程异步发送，不阻塞当前线程
+                if (outboundDispatcher.enqueue(session, frame)) {
                     sent = true;
-                    log.debug("Message sent to user {} via session {}", userId, session.getId());
-                } catch (IOException e) {
-                    log.error("Failed to send message to session: {}", session.getId(), e);
-                    // 发送失败的会话标记为死会话
-                    deadSessions.add(session);
+                    log.debug("Message queued to user {} via session {}", userId, session.getId());
+                } else {
+                    dropped = true;
+                    log.debug("Message dropped by outbound queue of session {}, type={}",
+                            session.getId(), frame.getType());
                 }
             } else {
                 // 连接已关闭的会话标记为死会话
@@ -202,13 +249,18 @@ public class WebSocketSessionManager {
             }
         }
 
+        // 可丢弃的消息（如输入状态）被出站队列丢弃不视为推送失败
+        if (!sent && dropped && outboundDispatcher.getOverflowPolicy(frame.getType())
+                == OutboundMessageDispatcher.OverflowPolicy.DROP_FIRST) {
+            return false;
+        }
+
         // 如果所有会话都失败了，清除在线状态
         if (!sent) {
             log.warn("Failed to send message to user: {} - all sessions are dead", userId);
             clearUserOnlineStatusIfNeeded(userId);
 
-            // 记录推送失败状态（排除系统通知消息，避免循环）
-            if (!isSystemNotification(message)) {
+            if (trackFailure) {
                 markPushFailed(userId);
             }
         } else {
@@ -224,8 +276,12 @@ public class WebSocketSessionManager {
      */
     private void markPushFailed(String userId) {
         // 使用putIfAbsent确保只记录第一次失败的时间
-        FailedPushInfo existing = failedPushCache.putIfAbsent(userId, new FailedPushInfo());
+        FailedPushInfo info = new FailedPushInfo();
+        FailedPushInfo existing = failedPushCache.putIfAbsent(userId, info);
         if (existing == null) {
+            // 到期后只移除本条记录，避免误删之后新建的记录
+            info.setExpiry(timingWheel.schedule(() -> failedPushCache.remove(userId, info),
+                    FAILED_PUSH_EXPIRE_TIME, TimeUnit.MILLISECONDS));
             log.info("Marked push failed for user: {} at {}", userId, System.currentTimeMillis());
         } else {
             log.debug("User {} already has failed push record since {}", userId, existing.getFirstFailedTime());
@@ -237,7 +293,7 @@ public class WebSocketSessionManager {
      */
     public boolean hasUnnotifiedFailedPush(String userId) {
         FailedPushInfo info = failedPushCache.get(userId);
-        return info != null && !info.isNotified() && !info.isExpired();
+        return info != null && !info.isNotified();
     }
 
     /**
@@ -245,7 +301,7 @@ public class WebSocketSessionManager {
      */
     public void sendFailedPushNotification(String userId) {
         FailedPushInfo info = failedPushCache.get(userId);
-        if (info != null && !info.isNotified() && !info.isExpired()) {
+        if (info != null && !info.isNotified()) {
             WebSocketMessage notification = WebSocketMessage.builder()
                     .type(WebSocketMessage.WebSocketMessageType.SYSTEM_NOTIFICATION)
                     .senderId("system")
@@ -270,6 +326,7 @@ public class WebSocketSessionManager {
     private void clearFailedPushStatus(String userId) {
         FailedPushInfo removed = failedPushCache.remove(userId);
         if (removed != null) {
+            removed.cancelExpiry();
             log.debug("Cleared failed push status for user: {}", userId);
         }
     }
@@ -290,26 +347,6 @@ public class WebSocketSessionManager {
                 "system".equals(message.getSenderId());
     }
 
-    /**
-     * 定时清理过期的推送失败记录
-     */
-    @Scheduled(fixedRate = 10000) // 每10秒执行一次
-    public void cleanupExpiredFailedPush() {
-        int removedCount = 0;
-        var iterator = failedPushCache.entrySet().iterator();
-        while (iterator.hasNext()) {
-            var entry = iterator.next();
-            if (entry.getValue().isExpired()) {
-                iterator.remove();
-                removedCount++;
-            }
-        }
-
-        if (removedCount > 0) {
-            log.debug("Cleaned up {} expired failed push records", removedCount);
-        }
-    }
-
     /**
      * 清除用户在线状态（如果需要的话）
      */
@@ -322,150 +359,165 @@ public class WebSocketSessionManager {
     }
 
     /**
-     * 广播消息给多个用户
+     * 广播消息给本节点上的多个用户
+     * 消息只序列化一次，所有接收者共享同一个出站帧
      */
-    public void broadcastMessage(Set<String> userIds, WebSocketMessage message) {
+    public void broadcastMessage(Collection<String> userIds, WebSocketMessage message) {
+        OutboundFrame frame;
+        try {
+            frame = OutboundFrame.encode(objectMapper, message);
+        } catch (Exception e) {
+            log.error("Failed to serialize broadcast message", e);
+            return;
+        }
+
+        List<String> missed = broadcastFrame(userIds, frame);
+        if (!missed.isEmpty()) {
+            log.debug("Failed to broadcast message to {} user(s) not connected to this node", missed.size());
+        }
+    }
+
+    /**
+     * 向本节点上的多个用户投递同一个出站帧
+     *
+     * @return 在本节点没有活跃连接的用户ID
+     */
+    public List<String> broadcastFrame(Collection<String> userIds, OutboundFrame frame) {
+        List<String> missed = new ArrayList<>();
         for (String userId : userIds) {
-            boolean sent = sendMessageToUser(userId, message);
-            if (!sent) {
-                log.debug("Failed to broadcast message to user: {}", userId);
+            if (!isUserOnline(userId)) {
+                missed.add(userId);
+                continue;
+            }
+            if (!sendFrameToUser(userId, frame, false)) {
+                log.debug("Failed to broadcast frame to user: {}", userId);
             }
         }
+        return missed;
     }
 
     /**
      * 获取当前在线用户数
      */
     public int getOnlineUserCount() {
-        return userSessions.size();
+        return sessionRegistry.getUserCount();
     }
 
     /**
      * 获取当前活跃的WebSocket连接数
      */
     public int getActiveSessionCount() {
-        return userSessions.values().stream()
-                .mapToInt(Set::size)
-                .sum();
+        return sessionRegistry.getSessionCount();
     }
 
     /**
-     * 带分布式锁的连接建立方法
-     * 确保同一时间只有一个节点能处理用户的连接状态变更
+     * 建立连接
+     * 一次Redis脚本调用登记所在节点并取得连接纪元，不再使用带重试等待的分布式锁；
+     * 同一用户的并发连接按纪元决定胜负：纪元最大的连接保留，其余的被交接关闭
      */
     public boolean addSessionWithLock(String userId, WebSocketSession session) {
-        // 尝试获取分布式锁
-        if (!userOnlineService.tryAcquireConnectLock(userId)) {
-            log.warn("Failed to acquire connect lock for user: {}", userId);
-            return false;
-        }
-
-        try {
-            return handleConnectionWithLock(userId, session);
-        } finally {
-            userOnlineService.releaseConnectLock(userId);
-        }
+        return handleConnectionWithLock(userId, session);
     }
 
     /**
-     * 在锁保护下处理连接建立
+     * 处理连接建立，本节点内同一用户的会话登记在分段锁内串行执行
      */
     private boolean handleConnectionWithLock(String userId, WebSocketSession session) {
         try {
             // 标记连接正在建立
-            session.getAttributes().put("connectionState", "ESTABLISHING");
+            session.getAttributes().put(ConnectionHandoverService.CONNECTION_STATE, "ESTABLISHING");
 
             String currentNodeId = userOnlineService.getServerId();
 
-            // 检查用户是否已在其他节点连接
-            String existingNodeId = userOnlineService.getUserServer(userId);
+            // 登记所在节点并取得连接纪元（唯一的一次Redis调用）
+            UserOnlineService.ConnectResult connectResult = userOnlineService.registerConnection(userId);
+            long epoch = connectResult.getEpoch();
+            session.getAttributes().put(ConnectionHandoverService.CONNECTION_EPOCH, epoch);
 
+            // 用户之前在其他节点连接，异步通知旧节点断开，避免阻塞当前连接建立
+            String existingNodeId = connectResult.getPreviousServerId();
             if (existingNodeId != null && !existingNodeId.equals(currentNodeId)) {
-                // 异步通知旧节点断开，避免阻塞当前连接建立
-                log.info("User {} switching from node {} to node {}",
-                        userId, existingNodeId, currentNodeId);
-
-                CompletableFuture.runAsync(() -> notifyNodeDisconnectUser(userId, existingNodeId, currentNodeId));
+                log.info("User {} switching from node {} to node {} with epoch {}",
+                        userId, existingNodeId, currentNodeId, epoch);
+
+                CompletableFuture.runAsync(() -> {
+                    notifyNodeDisconnectUser(userId, existingNodeId, currentNodeId, epoch);
+                    // 通知所有节点清除该用户的路由缓存
+                    routeCache.publishRouteChange(userId, currentNodeId, currentNodeId);
+                });
             }
 
-            // 清理本地旧连接（如果有）
-            removeExistingLocalSessions(userId);
+            synchronized (connectLocks[Math.floorMod(userId.hashCode(), CONNECT_LOCK_STRIPES)]) {
+                // 本地已有纪元更大的连接，说明当前连接已被更新的连接取代
+                for (WebSocketSession existingSession : sessionRegistry.getSessions(userId)) {
+                    if (getConnectionEpoch(existingSession) > epoch) {
+                        log.info("User {} already has a newer session {} on this node, rejecting epoch {}",
+                                userId, existingSession.getId(), epoch);
+                        return false;
+                    }
+                }
 
-            // 建立新连接
-            userSessions.computeIfAbsent(userId, k -> new CopyOnWriteArraySet<>()).add(session);
+                // 清理本地旧连接（如果有）
+                removeExistingLocalSessions(userId);
 
-            // 更新Redis状态
-            userOnlineService.setUserOnline(userId);
+                // 建立新连接
+                sessionRegistry.add(userId, session);
+            }
 
             // 标记连接已建立
-            session.getAttributes().put("connectionState", "ESTABLISHED");
+            session.getAttributes().put(ConnectionHandoverService.CONNECTION_STATE, "ESTABLISHED");
 
             log.info("Successfully established connection for user: {} on node: {}", userId, currentNodeId);
             return true;
 
         } catch (Exception e) {
-            log.error("Failed to handle connection with lock for user: {}", userId, e);
+            log.error("Failed to handle connection for user: {}", userId, e);
             return false;
         }
     }
 
+    /**
+     * 获取会话的连接纪元，没有纪元的会话视为最旧
+     */
+    private static long getConnectionEpoch(WebSocketSession session) {
+        Object epoch = session.getAttributes().get(ConnectionHandoverService.CONNECTION_EPOCH);
+        return epoch instanceof Long value ? value : 0L;
+    }
+
     /**
      * 清理本地的旧连接
      */
     private void removeExistingLocalSessions(String userId) {
-        Set<WebSocketSession> existingSessions = userSessions.get(userId);
+        List<WebSocketSession> existingSessions = sessionRegistry.getSessions(userId);
 
-        if (existingSessions != null && !existingSessions.isEmpty()) {
+        if (!existingSessions.isEmpty()) {
             log.info("Removing {} existing local sessions for user: {}", existingSessions.size(), userId);
 
+            // 交接旧连接：通知帧入队后立即返回，关闭由交接服务异步完成
             for (WebSocketSession existingSession : existingSessions) {
-                try {
-                    if (existingSession.isOpen()) {
-                        sendConnectionReplacedMessage(existingSession);
-                        existingSession.close(CloseStatus.NORMAL);
-                    }
-                } catch (Exception e) {
-                    log.warn("Failed to close existing session for user: {}", userId, e);
-                }
+                handoverService.handover(existingSession, WebSocketMessage.builder()
+                        .type(WebSocketMessage.WebSocketMessageType.CONNECTION_REPLACED)
+                        .senderId("system")
+                        .content("Connection replaced by new session")
+                        .timestamp(System.currentTimeMillis())
+                        .build());
             }
 
-            userSessions.remove(userId);
-        }
-    }
-
-    /**
-     * 发送连接被替换的消息
-     */
-    private void sendConnectionReplacedMessage(WebSocketSession session) {
-        try {
-            WebSocketMessage message = WebSocketMessage.builder()
-                    .type(WebSocketMessage.WebSocketMessageType.CONNECTION_REPLACED)
-                    .senderId("system")
-                    .content("Connection replaced by new session")
-                    .timestamp(System.currentTimeMillis())
-                    .build();
-
-            String json = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(json));
-
-            // 短暂延迟确保消息送达
-            Thread.sleep(100);
-
-        } catch (Exception e) {
-            log.warn("Failed to send connection replaced message", e);
+            sessionRegistry.removeAll(userId);
         }
     }
 
     /**
      * 通知指定节点断开用户连接
      */
-    private void notifyNodeDisconnectUser(String userId, String targetNodeId, String currentNodeId) {
+    private void notifyNodeDisconnectUser(String userId, String targetNodeId, String currentNodeId, long epoch) {
         try {
             DisconnectNotification notification = DisconnectNotification.builder()
                     .userId(userId)
                     .targetNodeId(targetNodeId)
                     .sourceNodeId(currentNodeId)
                     .reason("Connection switched to another node")
+                    .epoch(epoch)
                     .timestamp(System.currentTimeMillis())
                     .build();
 
@@ -480,9 +532,11 @@ public class WebSocketSessionManager {
     /**
      * 向用户发送通知并断开连接
      * 用于处理来自其他节点的断开通知
+     *
+     * @param epoch 新连接的纪元，只断开纪元更小的会话；为null时断开所有会话
      */
-    public boolean disconnectUserWithNotification(String userId, String reason) {
-        Set<WebSocketSession> sessions = getUserSessions(userId);
+    public boolean disconnectUserWithNotification(String userId, String reason, Long epoch) {
+        List<WebSocketSession> sessions = getUserSessions(userId);
 
         if (sessions.isEmpty()) {
             log.debug("No sessions found for user: {} to disconnect", userId);
@@ -492,35 +546,29 @@ public class WebSocketSessionManager {
         boolean disconnected = false;
 
         for (WebSocketSession session : sessions) {
-            try {
-                if (session.isOpen()) {
-                    // 发送断开通知
-                    WebSocketMessage notification = WebSocketMessage.builder()
-                            .type(WebSocketMessage.WebSocketMessageType.CONNECTION_REPLACED)
-                            .senderId("system")
-                            .content(reason != null ? reason : "Connection terminated")
-                            .timestamp(System.currentTimeMillis())
-                            .build();
-
-                    String json = objectMapper.writeValueAsString(notification);
-                    session.sendMessage(new TextMessage(json));
-
-                    // 短暂延迟后断开
-                    Thread.sleep(100);
-                    session.close(CloseStatus.NORMAL);
-
-                    disconnected = true;
-                    log.debug("Disconnected session for user: {}, reason: {}", userId, reason);
-                }
-            } catch (Exception e) {
-                log.warn("Failed to disconnect session for user: {}", userId, e);
+            // 通知晚于本地的新连接到达时，不能断开新连接
+            if (epoch != null && getConnectionEpoch(session) >= epoch) {
+                log.debug("Skipping session {} of user {}: epoch {} is not older than {}",
+                        session.getId(), userId, getConnectionEpoch(session), epoch);
+                continue;
+            }
+
+            // 发送断开通知，发送完成后断开（不阻塞MQ消费线程）
+            WebSocketMessage notification = WebSocketMessage.builder()
+                    .type(WebSocketMessage.WebSocketMessageType.CONNECTION_REPLACED)
+                    .senderId("system")
+                    .content(reason != null ? reason : "Connection terminated")
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+
+            if (handoverService.handover(session, notification)) {
+                sessionRegistry.remove(userId, session);
+                disconnected = true;
+                log.debug("Disconnected session for user: {}, reason: {}", userId, reason);
             }
         }
 
         if (disconnected) {
-            // 清理用户会话
-            userSessions.remove(userId);
-
             // 重要：不调用setUserOffline，因为用户可能已经在其他节点上线
             // Redis状态由TTL自然过期或者由用户真正离线时清理
             log.debug("Disconnected user: {} from current node, but keeping Redis online status " +
@@ -0,0 +1,320 @@
+package com.airis.chat.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮
+ * 用于大量短生命周期的定时任务（推送失败记录过期、连接交接超时等），
+ * 添加和取消都是O(1)：调用线程只把任务放入无锁队列，由时间轮线程在每个tick批量挂入/摘除槽位。
+ * 到期任务在时间轮线程上执行，必须是非阻塞的短任务，耗时操作应自行转交其他线程池。
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+public class HashedTimingWheel {
+
+    // 每个tick最多从待添加队列转移的任务数，避免单个tick耗时过长
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    private final Queue<TimeoutEntry> pendingAdds = new ConcurrentLinkedQueue<>();
+
+    private final Queue<TimeoutEntry> pendingCancels = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingTimeouts = new AtomicInteger();
+
+    private final AtomicLong expiredTotal = new AtomicLong();
+
+    private final AtomicLong cancelledTotal = new AtomicLong();
+
+    private final long startTime;
+
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    // 当前tick，只由时间轮线程访问
+    private long tick;
+
+    /**
+     * @param name          时间轮线程名
+     * @param tickDuration  每个tick的时长
+     * @param unit          时长单位
+     * @param ticksPerWheel 槽位数（会向上取整为2的幂）
+     */
+    public HashedTimingWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("tickDuration and ticksPerWheel must be positive");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 添加定时任务
+     *
+     * @return 可用于取消任务的句柄
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("Timing wheel has been stopped");
+        }
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+        TimeoutEntry entry = new TimeoutEntry(this, task, deadline);
+        pendingTimeouts.incrementAndGet();
+        pendingAdds.add(entry);
+        return entry;
+    }
+
+    /**
+     * 停止时间轮，未到期的任务不再执行
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待到期的任务数
+     */
+    public int getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * 已到期执行的任务总数
+     */
+    public long getExpiredTotal() {
+        return expiredTotal.get();
+    }
+
+    /**
+     * 已取消的任务总数
+     */
+    public long getCancelledTotal() {
+        return cancelledTotal.get();
+    }
+
+    /**
+     * 槽位数
+     */
+    public int getWheelSize() {
+        return wheel.length;
+    }
+
+    private void run() {
+        while (running) {
+            long tickDeadline = tickNanos * (tick + 1);
+            long sleepNanos = tickDeadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+
+            processCancels();
+            transferAdds();
+            wheel[(int) (tick & mask)].expire(tickDeadline);
+            tick++;
+        }
+    }
+
+    private void processCancels() {
+        TimeoutEntry entry;
+        while ((entry = pendingCancels.poll()) != null) {
+            if (entry.bucket != null) {
+                entry.bucket.remove(entry);
+            }
+        }
+    }
+
+    private void transferAdds() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            TimeoutEntry entry = pendingAdds.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entry.state != TimeoutEntry.ST_INIT) {
+                continue;
+            }
+
+            long calculated = entry.deadline / tickNanos;
+            entry.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的任务放入当前槽位，本tick立即执行
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(entry);
+        }
+    }
+
+    /**
+     * 定时任务句柄
+     */
+    public interface Timeout {
+
+        /**
+         * 取消任务
+         *
+         * @return 是否取消成功（任务已执行或已取消时返回false）
+         */
+        boolean cancel();
+
+        boolean isExpired();
+
+        boolean isCancelled();
+    }
+
+    private static final class TimeoutEntry implements Timeout {
+
+        static final int ST_INIT = 0;
+        static final int ST_CANCELLED = 1;
+        static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<TimeoutEntry> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(TimeoutEntry.class, "state");
+
+        private final HashedTimingWheel timingWheel;
+
+        private final Runnable task;
+
+        private final long deadline;
+
+        private volatile int state = ST_INIT;
+
+        // 以下字段只由时间轮线程访问
+        long remainingRounds;
+
+        Bucket bucket;
+
+        TimeoutEntry next;
+
+        TimeoutEntry prev;
+
+        TimeoutEntry(HashedTimingWheel timingWheel, Runnable task, long deadline) {
+            this.timingWheel = timingWheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timingWheel.pendingTimeouts.decrementAndGet();
+            timingWheel.cancelledTotal.incrementAndGet();
+            // 从槽位摘除交给时间轮线程处理
+            timingWheel.pendingCancels.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            timingWheel.pendingTimeouts.decrementAndGet();
+            timingWheel.expiredTotal.incrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.warn("Timing wheel task threw an exception", t);
+            }
+        }
+    }
+
+    /**
+     * 槽位：双向链表，只由时间轮线程访问
+     */
+    private static final class Bucket {
+
+        private TimeoutEntry head;
+
+        private TimeoutEntry tail;
+
+        void add(TimeoutEntry entry) {
+            entry.bucket = this;
+            if (head == null) {
+                head = tail = entry;
+            } else {
+                tail.next = entry;
+                entry.prev = tail;
+                tail = entry;
+            }
+        }
+
+        void expire(long tickDeadline) {
+            TimeoutEntry entry = head;
+            while (entry != null) {
+                TimeoutEntry next = entry.next;
+                if (entry.isCancelled()) {
+                    remove(entry);
+                } else if (entry.remainingRounds > 0) {
+                    entry.remainingRounds--;
+                } else if (entry.deadline <= tickDeadline) {
+                    remove(entry);
+                    entry.expire();
+                }
+                entry = next;
+            }
+        }
+
+        void remove(TimeoutEntry entry) {
+            if (entry.bucket != this) {
+                return;
+            }
+            TimeoutEntry next = entry.next;
+            if (entry.prev != null) {
+                entry.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = entry.prev;
+            }
+            if (entry == head) {
+                head = next;
+            }
+            if (entry == tail) {
+                tail = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            entry.bucket = null;
+        }
+    }
+}
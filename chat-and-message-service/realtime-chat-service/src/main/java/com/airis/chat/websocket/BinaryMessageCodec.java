@@ -0,0 +1,451 @@
+package com.airis.chat.websocket;
+
+import com.airis.chat.entity.WebSocketMessage;
+import com.airis.message.enums.MessageType;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 二进制WebSocket子协议（airis.binary.v1）编解码器
+ * 客户端在握手时通过Sec-WebSocket-Protocol选择该子协议后，收发的帧都使用此格式，否则仍使用JSON文本帧。
+ *
+ * 帧格式：
+ * <pre>
+ * frame    := header:u8 body
+ * header   := 低7位为版本号，最高位为1时body使用raw deflate压缩
+ * body     := type:u8 presence:varint field*
+ * presence := 按位标记存在的字段（见FIELD_*常量），字段按位序依次出现
+ * id       := varint，最低位为0时其余位是数值ID，为1时其余位是UTF-8字节长度，后跟字符串字节
+ * string   := len:varint utf8
+ * long/int := varint（无符号）
+ * media    := presence:u8 url:string? fileName:string? fileSize:varint? duration:varint? width:varint? height:varint?
+ * extra    := string（extraData的JSON）
+ * </pre>
+ * 服务端只压缩达到CompressionPolicy阈值的帧，客户端也可以发送压缩帧。
+ * 枚举按序号编码，因此WebSocketMessageType和MessageType只能在末尾追加新值
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Component
+@RequiredArgsConstructor
+public class BinaryMessageCodec {
+
+    public static final String SUBPROTOCOL = "airis.binary.v1";
+
+    private static final int VERSION = 1;
+
+    private static final int FLAG_DEFLATE = 0x80;
+
+    // 解压后的帧大小上限，防止压缩炸弹
+    private static final int MAX_INFLATED_SIZE = 1 << 20;
+
+    private static final int FIELD_CHAT_MESSAGE_TYPE = 1;
+    private static final int FIELD_SENDER_ID = 1 << 1;
+    private static final int FIELD_RECEIVER_ID = 1 << 2;
+    private static final int FIELD_CHAT_ID = 1 << 3;
+    private static final int FIELD_MESSAGE_ID = 1 << 4;
+    private static final int FIELD_TEMP_MESSAGE_ID = 1 << 5;
+    private static final int FIELD_CONTENT = 1 << 6;
+    private static final int FIELD_MEDIA_METADATA = 1 << 7;
+    private static final int FIELD_TIMESTAMP = 1 << 8;
+    private static final int FIELD_EXTRA_DATA = 1 << 9;
+
+    private static final int MEDIA_URL = 1;
+    private static final int MEDIA_FILE_NAME = 1 << 1;
+    private static final int MEDIA_FILE_SIZE = 1 << 2;
+    private static final int MEDIA_DURATION = 1 << 3;
+    private static final int MEDIA_WIDTH = 1 << 4;
+    private static final int MEDIA_HEIGHT = 1 << 5;
+
+    // 数值ID编码时左移一位，需要留出最高两位
+    private static final long MAX_NUMERIC_ID = (1L << 62) - 1;
+
+    private static final WebSocketMessage.WebSocketMessageType[] MESSAGE_TYPES =
+            WebSocketMessage.WebSocketMessageType.values();
+
+    private static final MessageType[] CHAT_MESSAGE_TYPES = MessageType.values();
+
+    private static final TypeReference<Map<String, Object>> EXTRA_DATA_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final CompressionPolicy compressionPolicy;
+
+    // Deflater/Inflater持有较大的本地内存，按线程复用（出站为固定的写线程池，入站为容器线程）
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(this::newDeflater);
+
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /**
+     * 编码消息，达到压缩阈值的帧会被压缩
+     */
+    public byte[] encode(WebSocketMessage message) throws IOException {
+        byte[] frame = encodeUncompressed(message);
+        return compressionPolicy.shouldCompress(frame.length) ? compress(frame) : frame;
+    }
+
+    private byte[] encodeUncompressed(WebSocketMessage message) throws IOException {
+        Writer out = new Writer();
+        out.writeByte(VERSION);
+        out.writeByte(message.getType().ordinal());
+
+        int presence = 0;
+        presence |= message.getChatMessageType() != null ? FIELD_CHAT_MESSAGE_TYPE : 0;
+        presence |= message.getSenderId() != null ? FIELD_SENDER_ID : 0;
+        presence |= message.getReceiverId() != null ? FIELD_RECEIVER_ID : 0;
+        presence |= message.getChatId() != null ? FIELD_CHAT_ID : 0;
+        presence |= message.getMessageId() != null ? FIELD_MESSAGE_ID : 0;
+        presence |= message.getTempMessageId() != null ? FIELD_TEMP_MESSAGE_ID : 0;
+        presence |= message.getContent() != null ? FIELD_CONTENT : 0;
+        presence |= message.getMediaMetadata() != null ? FIELD_MEDIA_METADATA : 0;
+        presence |= message.getTimestamp() != null ? FIELD_TIMESTAMP : 0;
+        presence |= message.getExtraData() != null ? FIELD_EXTRA_DATA : 0;
+        out.writeVarint(presence);
+
+        if (message.getChatMessageType() != null) {
+            out.writeByte(message.getChatMessageType().ordinal());
+        }
+        if (message.getSenderId() != null) {
+            out.writeId(message.getSenderId());
+        }
+        if (message.getReceiverId() != null) {
+            out.writeId(message.getReceiverId());
+        }
+        if (message.getChatId() != null) {
+            out.writeId(message.getChatId());
+        }
+        if (message.getMessageId() != null) {
+            out.writeId(message.getMessageId());
+        }
+        if (message.getTempMessageId() != null) {
+            out.writeId(message.getTempMessageId());
+        }
+        if (message.getContent() != null) {
+            out.writeString(message.getContent());
+        }
+        if (message.getMediaMetadata() != null) {
+            writeMediaMetadata(out, message.getMediaMetadata());
+        }
+        if (message.getTimestamp() != null) {
+            out.writeVarint(message.getTimestamp());
+        }
+        if (message.getExtraData() != null) {
+            out.writeString(objectMapper.writeValueAsString(message.getExtraData()));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 把已经序列化好的JSON消息转换为二进制格式
+     */
+    public byte[] encodeJson(String json) throws IOException {
+        return encode(objectMapper.readValue(json, WebSocketMessage.class));
+    }
+
+    /**
+     * 解码消息
+     *
+     * @throws IOException 帧格式错误或版本不支持
+     */
+    public WebSocketMessage decode(ByteBuffer buffer) throws IOException {
+        try {
+            int header = buffer.get() & 0xFF;
+            int version = header & ~FLAG_DEFLATE;
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary frame version: " + version);
+            }
+            if ((header & FLAG_DEFLATE) != 0) {
+                buffer = inflate(buffer);
+            }
+
+            WebSocketMessage message = new WebSocketMessage();
+            message.setType(enumAt(MESSAGE_TYPES, buffer.get() & 0xFF));
+
+            long presence = readVarint(buffer);
+            if ((presence & FIELD_CHAT_MESSAGE_TYPE) != 0) {
+                message.setChatMessageType(enumAt(CHAT_MESSAGE_TYPES, buffer.get() & 0xFF));
+            }
+            if ((presence & FIELD_SENDER_ID) != 0) {
+                message.setSenderId(readId(buffer));
+            }
+            if ((presence & FIELD_RECEIVER_ID) != 0) {
+                message.setReceiverId(readId(buffer));
+            }
+            if ((presence & FIELD_CHAT_ID) != 0) {
+                message.setChatId(readId(buffer));
+            }
+            if ((presence & FIELD_MESSAGE_ID) != 0) {
+                message.setMessageId(readId(buffer));
+            }
+            if ((presence & FIELD_TEMP_MESSAGE_ID) != 0) {
+                message.setTempMessageId(readId(buffer));
+            }
+            if ((presence & FIELD_CONTENT) != 0) {
+                message.setContent(readString(buffer, readLength(buffer)));
+            }
+            if ((presence & FIELD_MEDIA_METADATA) != 0) {
+                message.setMediaMetadata(readMediaMetadata(buffer));
+            }
+            if ((presence & FIELD_TIMESTAMP) != 0) {
+                message.setTimestamp(readVarint(buffer));
+            }
+            if ((presence & FIELD_EXTRA_DATA) != 0) {
+                message.setExtraData(objectMapper.readValue(readString(buffer, readLength(buffer)), EXTRA_DATA_TYPE));
+            }
+            return message;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException等，统一视为格式错误
+            throw new IOException("Malformed binary frame", e);
+        }
+    }
+
+    /**
+     * 压缩帧体（头字节保持不压缩），压缩后没有变小则原样返回
+     */
+    private byte[] compress(byte[] frame) {
+        long start = System.nanoTime();
+        Deflater deflater = deflaters.get();
+        byte[] out = new byte[frame.length];
+        out[0] = (byte) (frame[0] | FLAG_DEFLATE);
+        int length = 1;
+        try {
+            deflater.setInput(frame, 1, frame.length - 1);
+            deflater.finish();
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            boolean smaller = deflater.finished() && length < frame.length;
+            compressionPolicy.recordCompression(frame.length, smaller ? length : frame.length,
+                    System.nanoTime() - start);
+            return smaller ? Arrays.copyOf(out, length) : frame;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    private ByteBuffer inflate(ByteBuffer buffer) throws IOException {
+        Inflater inflater = inflaters.get();
+        try {
+            inflater.setInput(buffer);
+            byte[] out = new byte[Math.min(MAX_INFLATED_SIZE, Math.max(256, buffer.remaining() * 4))];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == out.length) {
+                    if (out.length >= MAX_INFLATED_SIZE) {
+                        throw new IOException("Inflated binary frame exceeds " + MAX_INFLATED_SIZE + " bytes");
+                    }
+                    out = Arrays.copyOf(out, Math.min(MAX_INFLATED_SIZE, out.length << 1));
+                }
+                int inflated = inflater.inflate(out, length, out.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed binary frame");
+                }
+                length += inflated;
+            }
+            return ByteBuffer.wrap(out, 0, length);
+        } catch (DataFormatException e) {
+            throw new IOException("Malformed compressed binary frame", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    private Deflater newDeflater() {
+        return new Deflater(compressionPolicy.getLevel(), true);
+    }
+
+    private void writeMediaMetadata(Writer out, WebSocketMessage.MediaMetadataRequest media) {
+        int presence = 0;
+        presence |= media.getUrl() != null ? MEDIA_URL : 0;
+        presence |= media.getFileName() != null ? MEDIA_FILE_NAME : 0;
+        presence |= media.getFileSize() != null ? MEDIA_FILE_SIZE : 0;
+        presence |= media.getDuration() != null ? MEDIA_DURATION : 0;
+        presence |= media.getWidth() != null ? MEDIA_WIDTH : 0;
+        presence |= media.getHeight() != null ? MEDIA_HEIGHT : 0;
+        out.writeByte(presence);
+
+        if (media.getUrl() != null) {
+            out.writeString(media.getUrl());
+        }
+        if (media.getFileName() != null) {
+            out.writeString(media.getFileName());
+        }
+        if (media.getFileSize() != null) {
+            out.writeVarint(media.getFileSize());
+        }
+        if (media.getDuration() != null) {
+            out.writeVarint(Integer.toUnsignedLong(media.getDuration()));
+        }
+        if (media.getWidth() != null) {
+            out.writeVarint(Integer.toUnsignedLong(media.getWidth()));
+        }
+        if (media.getHeight() != null) {
+            out.writeVarint(Integer.toUnsignedLong(media.getHeight()));
+        }
+    }
+
+    private WebSocketMessage.MediaMetadataRequest readMediaMetadata(ByteBuffer buffer) throws IOException {
+        int presence = buffer.get() & 0xFF;
+        WebSocketMessage.MediaMetadataRequest media = new WebSocketMessage.MediaMetadataRequest();
+        if ((presence & MEDIA_URL) != 0) {
+            media.setUrl(readString(buffer, readLength(buffer)));
+        }
+        if ((presence & MEDIA_FILE_NAME) != 0) {
+            media.setFileName(readString(buffer, readLength(buffer)));
+        }
+        if ((presence & MEDIA_FILE_SIZE) != 0) {
+            media.setFileSize(readVarint(buffer));
+        }
+        if ((presence & MEDIA_DURATION) != 0) {
+            media.setDuration((int) readVarint(buffer));
+        }
+        if ((presence & MEDIA_WIDTH) != 0) {
+            media.setWidth((int) readVarint(buffer));
+        }
+        if ((presence & MEDIA_HEIGHT) != 0) {
+            media.setHeight((int) readVarint(buffer));
+        }
+        return media;
+    }
+
+    private static <E extends Enum<E>> E enumAt(E[] values, int ordinal) throws IOException {
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown " + values[0].getDeclaringClass().getSimpleName() + " ordinal: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static String readId(ByteBuffer buffer) throws IOException {
+        long header = readVarint(buffer);
+        if ((header & 1) == 0) {
+            return Long.toString(header >>> 1);
+        }
+        return readString(buffer, checkLength(buffer, header >>> 1));
+    }
+
+    private static int readLength(ByteBuffer buffer) throws IOException {
+        return checkLength(buffer, readVarint(buffer));
+    }
+
+    private static int checkLength(ByteBuffer buffer, long length) throws IOException {
+        if (length > buffer.remaining()) {
+            throw new IOException("Field length " + length + " exceeds remaining " + buffer.remaining() + " bytes");
+        }
+        return (int) length;
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        if (!buffer.hasArray()) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static long readVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    /**
+     * 可以用数值形式编码的ID：规范的十进制非负整数（无前导零），且不超过MAX_NUMERIC_ID
+     */
+    private static long parseNumericId(String id) {
+        int length = id.length();
+        if (length == 0 || length > 19 || (length > 1 && id.charAt(0) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (value > (MAX_NUMERIC_ID - (c - '0')) / 10) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * 可增长的字节缓冲区
+     */
+    private static final class Writer {
+
+        private byte[] buf = new byte[64];
+
+        private int pos;
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buf[pos++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeId(String id) {
+            long numeric = parseNumericId(id);
+            if (numeric >= 0) {
+                writeVarint(numeric << 1);
+                return;
+            }
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            writeVarint(((long) bytes.length << 1) | 1);
+            writeBytes(bytes);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + extra));
+            }
+        }
+    }
+}
@@ -1,21 +1,30 @@
 package com.airis.chat.websocket;
 
 import com.airis.chat.entity.WebSocketMessage;
+import com.airis.chat.service.ConnectionHandoverService;
 import com.airis.chat.service.MessageHandlerService;
+import com.airis.chat.service.RouteCache;
+import com.airis.chat.service.UserActivityAggregator;
 import com.airis.chat.service.UserOnlineService;
 import com.airis.chat.service.WebSocketSessionManager;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 /**
  * WebSocket消息处理器
- * 处理WebSocket连接、消息收发和断开连接
+ * 处理WebSocket连接、消息收发和断开连接。
+ * 握手时客户端可以通过Sec-WebSocket-Protocol选择二进制子协议（airis.binary.v1），未选择的继续使用JSON文本帧
  *
  * @author AIRIS Team
  * @since 1.0.0
@@ -23,12 +32,25 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class ChatWebSocketHandler extends TextWebSocketHandler {
+public class ChatWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
 
     private final WebSocketSessionManager sessionManager;
     private final UserOnlineService userOnlineService;
     private final MessageHandlerService messageHandlerService;
     private final ObjectMapper objectMapper;
+    private final OutboundMessageDispatcher outboundDispatcher;
+    private final InboundMessageDispatcher inboundDispatcher;
+    private final BinaryMessageCodec binaryCodec;
+    private final UserActivityAggregator activityAggregator;
+    private final RouteCache routeCache;
+
+    /**
+     * 可协商的子协议，握手时由DefaultHandshakeHandler根据客户端请求的Sec-WebSocket-Protocol选择
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(BinaryMessageCodec.SUBPROTOCOL);
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
@@ -58,7 +80,7 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                         .type(WebSocketMessage.WebSocketMessageType.ERROR)
                         .content("Connection failed due to concurrent connection")
                         .build());
-                session.close(CloseStatus.SERVER_ERROR);
+                outboundDispatcher.closeAfterDrain(session, CloseStatus.SERVER_ERROR);
             }
         }
     }
@@ -70,9 +92,38 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
+        WebSocketMessage wsMessage;
         try {
             // 解析消息
-            WebSocketMessage wsMessage = objectMapper.readValue(message.getPayload(), WebSocketMessage.class);
+            wsMessage = objectMapper.readValue(message.getPayload(), WebSocketMessage.class);
+        } catch (Exception e) {
+            log.error("Error handling WebSocket message", e);
+            sendError(session, "Failed to process message");
+            return;
+        }
+        handleMessage(session, userId, wsMessage);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        String userId = getUserId(session);
+        if (userId == null) {
+            return;
+        }
+
+        WebSocketMessage wsMessage;
+        try {
+            wsMessage = binaryCodec.decode(message.getPayload());
+        } catch (Exception e) {
+            log.warn("Malformed binary frame from user: {}, sessionId: {}", userId, session.getId(), e);
+            sendErrorQuietly(session, "Failed to process message");
+            return;
+        }
+        handleMessage(session, userId, wsMessage);
+    }
+
+    private void handleMessage(WebSocketSession session, String userId, WebSocketMessage wsMessage) {
+        try {
             wsMessage.setSenderId(userId);
 
             log.debug("Received message from user {}: {}", userId, wsMessage);
@@ -80,43 +131,49 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             // 根据消息类型处理
             switch (wsMessage.getType()) {
                 case CHAT_MESSAGE:
-                    messageHandlerService.handleChatMessage(wsMessage);
+                case READ_RECEIPT:
+                case TYPING:
+                    // 交给入站分发器，同一会话内按顺序处理，不占用容器线程
+                    dispatchInbound(session, wsMessage);
                     break;
                 case HEARTBEAT:
                     handleHeartbeat(session, userId);
                     break;
-                case READ_RECEIPT:
-                    messageHandlerService.handleReadReceipt(wsMessage);
-                    break;
-                case TYPING:
-                    messageHandlerService.handleTypingStatus(wsMessage);
-                    break;
                 default:
                     log.warn("Unknown message type: {}", wsMessage.getType());
             }
         } catch (Exception e) {
             log.error("Error handling WebSocket message", e);
-            sendError(session, "Failed to process message");
+            sendErrorQuietly(session, "Failed to process message");
         }
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        // 释放出站队列，丢弃尚未发送的帧
+        outboundDispatcher.release(session);
+
         String userId = getUserId(session);
         if (userId != null) {
             // 移除WebSocket会话
             sessionManager.removeSession(userId, session);
 
             // 只有完全建立的连接才需要清理在线状态
-            String connectionState = (String) session.getAttributes().get("connectionState");
+            // 被新连接替换（REPLACING）的旧连接关闭时，用户仍然在线，不能清理
+            String connectionState = (String) session.getAttributes().get(ConnectionHandoverService.CONNECTION_STATE);
             if ("ESTABLISHED".equals(connectionState)) {
                 // 安全地更新用户离线状态（仅当用户确实在当前节点时）
-                boolean offlineSet = userOnlineService.setUserOfflineIfOnCurrentNode(userId);
+                // 带上连接纪元，用户已经重新连接（纪元变化）时不会被误清理
+                Long epoch = (Long) session.getAttributes().get(ConnectionHandoverService.CONNECTION_EPOCH);
+                boolean offlineSet = userOnlineService.setUserOfflineIfOnCurrentNode(userId, epoch);
 
                 // 清理推送失败状态
                 sessionManager.clearFailedPushOnDisconnect(userId);
 
-                if (!offlineSet) {
+                if (offlineSet) {
+                    // 通知其他节点清除该用户的路由缓存
+                    routeCache.publishRouteChange(userId, null, userOnlineService.getServerId());
+                } else {
                     log.debug("User {} connection closed but user is active on another node", userId);
                 }
             }
@@ -140,8 +197,8 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     private void handleHeartbeat(WebSocketSession session, String userId) throws Exception {
         log.debug("Received heartbeat from user: {}, sessionId: {}", userId, session.getId());
 
-        // 更新用户活跃时间
-        userOnlineService.updateUserActivity(userId);
+        // 更新用户活跃时间（本地标记，由活跃聚合器批量刷新到Redis）
+        activityAggregator.markActive(userId);
 
         // 回复心跳
         sendMessage(session, WebSocketMessage.builder()
@@ -157,10 +214,58 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         log.info("Heartbeat processed for user: {}, activity updated and ACK sent", userId);
     }
 
+    private void dispatchInbound(WebSocketSession session, WebSocketMessage wsMessage) throws Exception {
+        boolean accepted = inboundDispatcher.submitAsync(getLaneKey(wsMessage), wsMessage.getType(),
+                () -> handleInbound(wsMessage));
+        if (accepted) {
+            return;
+        }
+
+        log.warn("Inbound queue full, rejected {} from user: {}, chatId: {}, tempMessageId: {}",
+                wsMessage.getType(), wsMessage.getSenderId(), wsMessage.getChatId(), wsMessage.getTempMessageId());
+
+        // 输入状态可以直接丢弃，其他消息需要告知发送者重试
+        if (wsMessage.getType() != WebSocketMessage.WebSocketMessageType.TYPING) {
+            sendMessage(session, WebSocketMessage.builder()
+                    .type(WebSocketMessage.WebSocketMessageType.ERROR)
+                    .content("服务器繁忙，请稍后重试")
+                    .chatId(wsMessage.getChatId())
+                    .tempMessageId(wsMessage.getTempMessageId())
+                    .timestamp(System.currentTimeMillis())
+                    .build());
+        }
+    }
+
+    /**
+     * 处理入站帧，聊天消息返回异步保存和推送的future，同一会话的下一帧会等待它完成
+     */
+    private CompletionStage<?> handleInbound(WebSocketMessage wsMessage) {
+        switch (wsMessage.getType()) {
+            case CHAT_MESSAGE:
+                return messageHandlerService.handleChatMessage(wsMessage);
+            case READ_RECEIPT:
+                messageHandlerService.handleReadReceipt(wsMessage);
+                break;
+            case TYPING:
+                messageHandlerService.handleTypingStatus(wsMessage);
+                break;
+            default:
+                log.warn("Unexpected inbound message type: {}", wsMessage.getType());
+        }
+        return null;
+    }
+
+    /**
+     * 入站帧的串行化键：同一会话内保持顺序，没有chatId时按发送者串行
+     */
+    private String getLaneKey(WebSocketMessage wsMessage) {
+        String chatId = wsMessage.getChatId();
+        return chatId != null && !chatId.isEmpty() ? chatId : "user:" + wsMessage.getSenderId();
+    }
+
     private void sendMessage(WebSocketSession session, WebSocketMessage message) throws Exception {
         if (session.isOpen()) {
-            String json = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(json));
+            outboundDispatcher.enqueue(session, OutboundFrame.encode(objectMapper, message));
         }
     }
 
@@ -171,6 +276,14 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                 .build());
     }
 
+    private void sendErrorQuietly(WebSocketSession session, String error) {
+        try {
+            sendError(session, error);
+        } catch (Exception e) {
+            log.warn("Failed to send error to session: {}", session.getId(), e);
+        }
+    }
+
     private String getUserId(WebSocketSession session) {
         Object userId = session.getAttributes().get("userId");
         return userId != null ? userId.toString() : null;
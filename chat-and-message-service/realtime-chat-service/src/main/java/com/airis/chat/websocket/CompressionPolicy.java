@@ -0,0 +1,198 @@
+package com.airis.chat.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket压缩策略
+ * 统一决定两种压缩是否生效：
+ * 1. 握手时协商的permessage-deflate扩展（JSON客户端），Tomcat对协商成功的连接压缩每一帧，
+ *    因此只能在握手时决定是否接受、是否保留压缩上下文；
+ * 2. 二进制子协议的帧级压缩，按帧大小阈值决定，压缩结果在多个接收者之间共享。
+ * 进程CPU使用率超过高水位时暂停压缩（新连接不再协商扩展，新帧不再压缩），回落到低水位以下后恢复
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompressionPolicy {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${airis.chat.compression.enabled:true}")
+    private boolean enabled;
+
+    // 小于该字节数的帧不压缩
+    @Value("${airis.chat.compression.min-size:512}")
+    private int minSize;
+
+    // Deflater压缩级别（1最快，9压缩率最高）
+    @Value("${airis.chat.compression.level:1}")
+    private int level;
+
+    // 是否保留permessage-deflate的服务端压缩上下文，关闭后每条消息独立压缩，节省每个连接的内存
+    @Value("${airis.chat.compression.server-context-takeover:false}")
+    private boolean serverContextTakeover;
+
+    // 进程CPU使用率高于该值时暂停压缩
+    @Value("${airis.chat.compression.cpu-high-watermark:0.80}")
+    private double cpuHighWatermark;
+
+    // 暂停后CPU使用率低于该值时恢复压缩
+    @Value("${airis.chat.compression.cpu-low-watermark:0.60}")
+    private double cpuLowWatermark;
+
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+
+    private volatile boolean suspended;
+
+    private Counter originalBytesCounter;
+
+    private Counter compressedBytesCounter;
+
+    private Timer compressionTimer;
+
+    private Counter skippedSmallCounter;
+
+    private Counter skippedCpuCounter;
+
+    private Counter skippedIncompressibleCounter;
+
+    private Counter negotiatedCounter;
+
+    private Counter declinedCounter;
+
+    @PostConstruct
+    public void init() {
+        originalBytesCounter = Counter.builder("chat.compression.bytes.original")
+                .description("Size of binary frames before compression")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        compressedBytesCounter = Counter.builder("chat.compression.bytes.compressed")
+                .description("Size of binary frames after compression")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        compressionTimer = Timer.builder("chat.compression.time")
+                .description("Time spent compressing binary frames")
+                .register(meterRegistry);
+        skippedSmallCounter = skippedCounter("below_min_size");
+        skippedCpuCounter = skippedCounter("cpu_budget");
+        skippedIncompressibleCounter = skippedCounter("incompressible");
+        negotiatedCounter = Counter.builder("chat.compression.handshake")
+                .description("permessage-deflate negotiation results")
+                .tag("result", "accepted")
+                .register(meterRegistry);
+        declinedCounter = Counter.builder("chat.compression.handshake")
+                .description("permessage-deflate negotiation results")
+                .tag("result", "declined")
+                .register(meterRegistry);
+        Gauge.builder("chat.compression.suspended", this, policy -> policy.suspended ? 1 : 0)
+                .description("Whether compression is suspended because of CPU load")
+                .register(meterRegistry);
+
+        log.info("WebSocket compression: enabled={}, minSize={}, level={}, serverContextTakeover={}, cpuWatermarks={}/{}",
+                enabled, minSize, level, serverContextTakeover, cpuLowWatermark, cpuHighWatermark);
+    }
+
+    /**
+     * 定期检查进程CPU使用率，超过高水位暂停压缩，低于低水位恢复
+     */
+    @Scheduled(fixedDelayString = "${airis.chat.compression.cpu-check-interval-ms:1000}")
+    public void checkCpuBudget() {
+        if (!enabled || !(osBean instanceof com.sun.management.OperatingSystemMXBean sunOsBean)) {
+            return;
+        }
+
+        double cpuLoad = sunOsBean.getProcessCpuLoad();
+        if (cpuLoad < 0) {
+            return;
+        }
+        if (!suspended && cpuLoad >= cpuHighWatermark) {
+            suspended = true;
+            log.warn("Process CPU load {} above {}, suspending WebSocket compression", cpuLoad, cpuHighWatermark);
+        } else if (suspended && cpuLoad <= cpuLowWatermark) {
+            suspended = false;
+            log.info("Process CPU load {} below {}, resuming WebSocket compression", cpuLoad, cpuLowWatermark);
+        }
+    }
+
+    /**
+     * 判断指定大小的帧是否需要压缩
+     */
+    public boolean shouldCompress(int size) {
+        if (!enabled) {
+            return false;
+        }
+        if (size < minSize) {
+            skippedSmallCounter.increment();
+            return false;
+        }
+        if (suspended) {
+            skippedCpuCounter.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 新连接是否接受permessage-deflate扩展，并记录协商结果
+     */
+    public boolean acceptDeflateNegotiation() {
+        if (enabled && !suspended) {
+            negotiatedCounter.increment();
+            return true;
+        }
+        declinedCounter.increment();
+        return false;
+    }
+
+    /**
+     * 记录一次帧压缩
+     *
+     * @param originalSize   压缩前字节数
+     * @param compressedSize 压缩后字节数，不小于原始大小时表示压缩无效，按原样发送
+     * @param elapsedNanos   压缩耗时
+     */
+    public void recordCompression(int originalSize, int compressedSize, long elapsedNanos) {
+        compressionTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (compressedSize >= originalSize) {
+            skippedIncompressibleCounter.increment();
+            return;
+        }
+        originalBytesCounter.increment(originalSize);
+        compressedBytesCounter.increment(compressedSize);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public boolean isServerContextTakeover() {
+        return serverContextTakeover;
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    private Counter skippedCounter(String reason) {
+        return Counter.builder("chat.compression.skipped")
+                .description("Frames sent without compression")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,173 @@
+package com.airis.chat.websocket;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.websocket.Decoder;
+import jakarta.websocket.Encoder;
+import jakarta.websocket.Extension;
+import jakarta.websocket.HandshakeResponse;
+import jakarta.websocket.server.HandshakeRequest;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按压缩策略协商permessage-deflate的升级策略
+ * Tomcat总会接受客户端请求的permessage-deflate，这里在协商结果上按CompressionPolicy处理：
+ * 压缩关闭或CPU超出预算时拒绝该扩展；不保留服务端压缩上下文时追加server_no_context_takeover参数
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+public class DeflateNegotiationUpgradeStrategy extends StandardWebSocketUpgradeStrategy {
+
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    private final CompressionPolicy compressionPolicy;
+
+    public DeflateNegotiationUpgradeStrategy(CompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    @Override
+    protected void upgradeHttpToWebSocket(HttpServletRequest request, HttpServletResponse response,
+                                          ServerEndpointConfig endpointConfig, Map<String, String> pathParams)
+            throws Exception {
+        super.upgradeHttpToWebSocket(request, response, new DeflatePolicyEndpointConfig(endpointConfig), pathParams);
+    }
+
+    private List<Extension> applyPolicy(List<Extension> negotiated) {
+        if (negotiated.stream().noneMatch(extension -> PERMESSAGE_DEFLATE.equals(extension.getName()))) {
+            return negotiated;
+        }
+
+        boolean accept = compressionPolicy.acceptDeflateNegotiation();
+        List<Extension> result = new ArrayList<>(negotiated.size());
+        for (Extension extension : negotiated) {
+            if (!PERMESSAGE_DEFLATE.equals(extension.getName())) {
+                result.add(extension);
+            } else if (accept) {
+                result.add(compressionPolicy.isServerContextTakeover() ? extension : withoutContextTakeover(extension));
+            }
+        }
+        return result;
+    }
+
+    private static Extension withoutContextTakeover(Extension extension) {
+        boolean present = extension.getParameters().stream()
+                .anyMatch(parameter -> SERVER_NO_CONTEXT_TAKEOVER.equals(parameter.getName()));
+        if (present) {
+            return extension;
+        }
+
+        List<Extension.Parameter> parameters = new ArrayList<>(extension.getParameters());
+        parameters.add(new Extension.Parameter() {
+            @Override
+            public String getName() {
+                return SERVER_NO_CONTEXT_TAKEOVER;
+            }
+
+            @Override
+            public String getValue() {
+                return null;
+            }
+        });
+        return new Extension() {
+            @Override
+            public String getName() {
+                return extension.getName();
+            }
+
+            @Override
+            public List<Parameter> getParameters() {
+                return parameters;
+            }
+        };
+    }
+
+    /**
+     * 委托给Spring生成的端点配置，只替换扩展协商
+     */
+    private final class DeflatePolicyEndpointConfig extends ServerEndpointConfig.Configurator
+            implements ServerEndpointConfig {
+
+        private final ServerEndpointConfig delegate;
+
+        private final ServerEndpointConfig.Configurator delegateConfigurator;
+
+        DeflatePolicyEndpointConfig(ServerEndpointConfig delegate) {
+            this.delegate = delegate;
+            this.delegateConfigurator = delegate.getConfigurator();
+        }
+
+        @Override
+        public List<Extension> getNegotiatedExtensions(List<Extension> installed, List<Extension> requested) {
+            return applyPolicy(delegateConfigurator.getNegotiatedExtensions(installed, requested));
+        }
+
+        @Override
+        public String getNegotiatedSubprotocol(List<String> supported, List<String> requested) {
+            return delegateConfigurator.getNegotiatedSubprotocol(supported, requested);
+        }
+
+        @Override
+        public boolean checkOrigin(String originHeaderValue) {
+            return delegateConfigurator.checkOrigin(originHeaderValue);
+        }
+
+        @Override
+        public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response) {
+            delegateConfigurator.modifyHandshake(sec, request, response);
+        }
+
+        @Override
+        public <T> T getEndpointInstance(Class<T> clazz) throws InstantiationException {
+            return delegateConfigurator.getEndpointInstance(clazz);
+        }
+
+        @Override
+        public Class<?> getEndpointClass() {
+            return delegate.getEndpointClass();
+        }
+
+        @Override
+        public String getPath() {
+            return delegate.getPath();
+        }
+
+        @Override
+        public List<String> getSubprotocols() {
+            return delegate.getSubprotocols();
+        }
+
+        @Override
+        public List<Extension> getExtensions() {
+            return delegate.getExtensions();
+        }
+
+        @Override
+        public Configurator getConfigurator() {
+            return this;
+        }
+
+        @Override
+        public List<Class<? extends Encoder>> getEncoders() {
+            return delegate.getEncoders();
+        }
+
+        @Override
+        public List<Class<? extends Decoder>> getDecoders() {
+            return delegate.getDecoders();
+        }
+
+        @Override
+        public Map<String, Object> getUserProperties() {
+            return delegate.getUserProperties();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.airis.chat.websocket;
+
+import com.airis.chat.entity.WebSocketMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * WebSocket入站消息分发器
+ * 把入站帧从WebSocket容器线程转移到有界的工作线程池处理：
+ * 同一会话（chatId）的帧按到达顺序串行处理，不同会话之间并行处理。
+ * 处理任务可以返回CompletionStage（如异步的Dubbo调用），该会话的下一帧会等到它完成后才开始，
+ * 等待期间不占用工作线程
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InboundMessageDispatcher {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${airis.chat.inbound.worker-threads:16}")
+    private int workerThreads;
+
+    // 单个会话最多排队的帧数
+    @Value("${airis.chat.inbound.max-pending-per-chat:256}")
+    private int maxPendingPerChat;
+
+    // 全局最多排队的帧数
+    @Value("${airis.chat.inbound.max-pending-total:10000}")
+    private int maxPendingTotal;
+
+    // 工作线程单次为一个会话连续处理的最大帧数，保证会话之间的公平性
+    @Value("${airis.chat.inbound.drain-batch-size:32}")
+    private int drainBatchSize;
+
+    // 会话键 -> 待处理的帧（存在即表示该会话已有一个排空任务在运行或排队）
+    // 只在ConcurrentHashMap.compute中修改，同一个键上的操作天然串行
+    private final Map<String, ArrayDeque<InboundTask>> lanes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pendingTotal = new AtomicInteger();
+
+    private final Map<WebSocketMessage.WebSocketMessageType, Timer> queueWaitTimers =
+            new EnumMap<>(WebSocketMessage.WebSocketMessageType.class);
+
+    private final Map<WebSocketMessage.WebSocketMessageType, Timer> processingTimers =
+            new EnumMap<>(WebSocketMessage.WebSocketMessageType.class);
+
+    private ThreadPoolExecutor workerExecutor;
+
+    private Counter rejectedLaneCounter;
+
+    private Counter rejectedTotalCounter;
+
+    @PostConstruct
+    public void init() {
+        for (WebSocketMessage.WebSocketMessageType type : WebSocketMessage.WebSocketMessageType.values()) {
+            queueWaitTimers.put(type, Timer.builder("chat.inbound.queue.wait")
+                    .description("Time inbound frames spend queued before processing")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+            processingTimers.put(type, Timer.builder("chat.inbound.processing")
+                    .description("Time spent processing inbound frames")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerExecutor = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ws-inbound-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        rejectedLaneCounter = Counter.builder("chat.inbound.rejected")
+                .description("Inbound frames rejected by queue limits")
+                .tag("reason", "chat_queue_full")
+                .register(meterRegistry);
+        rejectedTotalCounter = Counter.builder("chat.inbound.rejected")
+                .description("Inbound frames rejected by queue limits")
+                .tag("reason", "global_queue_full")
+                .register(meterRegistry);
+        Gauge.builder("chat.inbound.pending", pendingTotal, AtomicInteger::get)
+                .description("Inbound frames waiting to be processed")
+                .register(meterRegistry);
+        Gauge.builder("chat.inbound.lanes", lanes, Map::size)
+                .description("Conversations with queued inbound frames")
+                .register(meterRegistry);
+
+        log.info("Inbound dispatcher started: workers={}, maxPendingPerChat={}, maxPendingTotal={}",
+                workerThreads, maxPendingPerChat, maxPendingTotal);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workerExecutor != null) {
+            workerExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 提交同步的入站帧处理任务
+     *
+     * @see #submitAsync(String, WebSocketMessage.WebSocketMessageType, Supplier)
+     */
+    public boolean submit(String laneKey, WebSocketMessage.WebSocketMessageType type, Runnable task) {
+        return submitAsync(laneKey, type, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 提交入站帧的处理任务
+     *
+     * @param laneKey 串行化的键（通常为chatId），相同键的任务按提交顺序执行
+     * @param type    消息类型，用于指标
+     * @param task    处理任务，返回的CompletionStage完成后才会处理同一会话的下一帧（可以返回null）
+     * @return 是否被接受（超过排队上限时返回false）
+     */
+    public boolean submitAsync(String laneKey, WebSocketMessage.WebSocketMessageType type,
+                               Supplier<? extends CompletionStage<?>> task) {
+        if (pendingTotal.incrementAndGet() > maxPendingTotal) {
+            pendingTotal.decrementAndGet();
+            rejectedTotalCounter.increment();
+            return false;
+        }
+
+        InboundTask inboundTask = new InboundTask(type, task, System.nanoTime());
+        boolean[] result = new boolean[2];
+        lanes.compute(laneKey, (key, lane) -> {
+            if (lane == null) {
+                // 新建的队列需要启动一个排空任务
+                lane = new ArrayDeque<>();
+                result[1] = true;
+            } else if (lane.size() >= maxPendingPerChat) {
+                return lane;
+            }
+            lane.add(inboundTask);
+            result[0] = true;
+            return lane;
+        });
+
+        if (!result[0]) {
+            pendingTotal.decrementAndGet();
+            rejectedLaneCounter.increment();
+            return false;
+        }
+        if (result[1]) {
+            scheduleDrain(laneKey);
+        }
+        return true;
+    }
+
+    /**
+     * 入站工作线程池，供异步处理的后续步骤使用
+     */
+    public Executor getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    private void scheduleDrain(String laneKey) {
+        try {
+            workerExecutor.execute(() -> drain(laneKey));
+        } catch (RejectedExecutionException e) {
+            // 只会在关闭过程中发生，丢弃该会话上排队的帧
+            ArrayDeque<InboundTask> dropped = lanes.remove(laneKey);
+            if (dropped != null) {
+                pendingTotal.addAndGet(-dropped.size());
+            }
+            log.warn("Inbound executor rejected drain task for lane: {}", laneKey);
+        }
+    }
+
+    private void drain(String laneKey) {
+        for (int processed = 0; processed < drainBatchSize; processed++) {
+            InboundTask task = nextTask(laneKey);
+            if (task == null) {
+                return;
+            }
+
+            CompletionStage<?> stage = run(task);
+            if (stage != null) {
+                // 异步任务：释放工作线程，完成后再继续处理该会话（会话队列保留，新帧继续排队）
+                stage.whenComplete((result, error) -> {
+                    complete(task, error);
+                    scheduleDrain(laneKey);
+                });
+                return;
+            }
+        }
+        // 达到批次上限，让出线程给其他会话，稍后继续
+        scheduleDrain(laneKey);
+    }
+
+    /**
+     * 取出会话的下一个任务，队列为空时删除该会话（排空任务随之结束）
+     */
+    private InboundTask nextTask(String laneKey) {
+        InboundTask[] next = new InboundTask[1];
+        lanes.computeIfPresent(laneKey, (key, lane) -> {
+            next[0] = lane.poll();
+            return next[0] == null ? null : lane;
+        });
+        return next[0];
+    }
+
+    /**
+     * 执行任务，返回尚未完成的CompletionStage；同步任务或已完成的任务返回null
+     */
+    private CompletionStage<?> run(InboundTask task) {
+        task.startedAt = System.nanoTime();
+        queueWaitTimers.get(task.type).record(task.startedAt - task.enqueuedAt, TimeUnit.NANOSECONDS);
+        try {
+            CompletionStage<?> stage = task.task.get();
+            if (stage != null && !stage.toCompletableFuture().isDone()) {
+                return stage;
+            }
+            complete(task, null);
+        } catch (Throwable t) {
+            complete(task, t);
+        }
+        return null;
+    }
+
+    private void complete(InboundTask task, Throwable error) {
+        if (error != null) {
+            log.error("Unexpected error while processing inbound {} frame", task.type, error);
+        }
+        pendingTotal.decrementAndGet();
+        processingTimers.get(task.type).record(System.nanoTime() - task.startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private static final class InboundTask {
+
+        private final WebSocketMessage.WebSocketMessageType type;
+
+        private final Supplier<? extends CompletionStage<?>> task;
+
+        private final long enqueuedAt;
+
+        private long startedAt;
+
+        InboundTask(WebSocketMessage.WebSocketMessageType type, Supplier<? extends CompletionStage<?>> task,
+                    long enqueuedAt) {
+            this.type = type;
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
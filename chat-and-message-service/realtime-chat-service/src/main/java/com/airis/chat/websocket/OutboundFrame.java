@@ -0,0 +1,73 @@
+package com.airis.chat.websocket;
+
+import com.airis.chat.entity.WebSocketMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+
+/**
+ * 出站帧
+ * 已经序列化好的WebSocket消息，可以在多个会话之间共享。
+ * JSON编码在创建时完成；二进制子协议的编码在第一次发给二进制会话时生成并缓存
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+public final class OutboundFrame {
+
+    private final WebSocketMessage.WebSocketMessageType type;
+
+    private final TextMessage payload;
+
+    // 原始消息，通过ofJson创建时为null
+    private final WebSocketMessage message;
+
+    // 多个写线程可能同时生成，结果相同，无需加锁
+    private volatile BinaryMessage binaryPayload;
+
+    private OutboundFrame(WebSocketMessage.WebSocketMessageType type, TextMessage payload, WebSocketMessage message) {
+        this.type = type;
+        this.payload = payload;
+        this.message = message;
+    }
+
+    /**
+     * 序列化消息并生成出站帧（二进制编码会延迟使用message，之后不应再修改它）
+     */
+    public static OutboundFrame encode(ObjectMapper objectMapper, WebSocketMessage message)
+            throws JsonProcessingException {
+        return new OutboundFrame(message.getType(), new TextMessage(objectMapper.writeValueAsString(message)),
+                message);
+    }
+
+    /**
+     * 使用已经序列化好的JSON生成出站帧
+     */
+    public static OutboundFrame ofJson(WebSocketMessage.WebSocketMessageType type, String json) {
+        return new OutboundFrame(type, new TextMessage(json), null);
+    }
+
+    public WebSocketMessage.WebSocketMessageType getType() {
+        return type;
+    }
+
+    public TextMessage getPayload() {
+        return payload;
+    }
+
+    /**
+     * 获取二进制子协议的帧
+     */
+    public BinaryMessage getBinaryPayload(BinaryMessageCodec codec) throws IOException {
+        BinaryMessage binary = binaryPayload;
+        if (binary == null) {
+            byte[] bytes = message != null ? codec.encode(message) : codec.encodeJson(payload.getPayload());
+            binary = new BinaryMessage(bytes);
+            binaryPayload = binary;
+        }
+        return binary;
+    }
+}
@@ -0,0 +1,432 @@
+package com.airis.chat.websocket;
+
+import com.airis.chat.entity.WebSocketMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket出站消息分发器
+ * 每个会话拥有一个有界的无锁出站队列，由专用写线程异步排空，
+ * 避免单个慢客户端阻塞Tomcat工作线程、RocketMQ消费线程或Dubbo回调线程
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboundMessageDispatcher {
+
+    private final MeterRegistry meterRegistry;
+    private final BinaryMessageCodec binaryCodec;
+
+    // 高水位：超过后进入拥塞状态，开始丢弃可丢弃的消息
+    @Value("${airis.chat.outbound.high-watermark:256}")
+    private int highWatermark;
+
+    // 低水位：拥塞状态下队列回落到该值以下时恢复正常
+    @Value("${airis.chat.outbound.low-watermark:64}")
+    private int lowWatermark;
+
+    // 队列硬上限：超过后除不可丢弃的消息外全部丢弃
+    @Value("${airis.chat.outbound.max-queue-size:1024}")
+    private int maxQueueSize;
+
+    // 会话持续拥塞超过该时间后被判定为慢消费者并关闭
+    @Value("${airis.chat.outbound.slow-consumer-timeout-ms:15000}")
+    private long slowConsumerTimeoutMs;
+
+    // 单帧阻塞发送超时时间
+    @Value("${airis.chat.outbound.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    // 写线程上限：发送是阻塞的，卡住的客户端最多占用一个写线程send-timeout-ms，
+    // 上限需大于预期同时卡住的连接数；空闲线程会回收
+    @Value("${airis.chat.outbound.writer-threads:64}")
+    private int writerThreads;
+
+    // 写线程单次为一个会话连续发送的最大帧数，保证会话之间的公平性
+    @Value("${airis.chat.outbound.drain-batch-size:64}")
+    private int drainBatchSize;
+
+    // 拥塞时优先丢弃的消息类型
+    @Value("${airis.chat.outbound.drop-first-types:TYPING,HEARTBEAT_ACK,ONLINE_STATUS}")
+    private String dropFirstTypes;
+
+    // 永不丢弃的消息类型（CHAT_MESSAGE和MESSAGE_ACK始终包含在内）
+    @Value("${airis.chat.outbound.never-drop-types:CHAT_MESSAGE,MESSAGE_ACK}")
+    private String neverDropTypes;
+
+    // Tomcat阻塞发送超时时间的会话属性
+    private static final String TOMCAT_BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    // 会话ID -> 出站队列
+    private final Map<String, SessionOutboundQueue> queues = new ConcurrentHashMap<>();
+
+    // 处于拥塞状态的队列，定时检查是否需要驱逐
+    private final Set<SessionOutboundQueue> congestedQueues = ConcurrentHashMap.newKeySet();
+
+    private final Map<WebSocketMessage.WebSocketMessageType, OverflowPolicy> overflowPolicies =
+            new EnumMap<>(WebSocketMessage.WebSocketMessageType.class);
+
+    private final Map<WebSocketMessage.WebSocketMessageType, Counter> droppedCounters =
+            new EnumMap<>(WebSocketMessage.WebSocketMessageType.class);
+
+    private final AtomicLong totalDepth = new AtomicLong();
+
+    private final AtomicLong droppedTotal = new AtomicLong();
+
+    private final AtomicLong evictedTotal = new AtomicLong();
+
+    private ThreadPoolExecutor writerExecutor;
+
+    private Counter sentCounter;
+
+    private Counter evictedCounter;
+
+    /**
+     * 队列溢出策略
+     */
+    public enum OverflowPolicy {
+        // 拥塞（超过高水位）时即丢弃
+        DROP_FIRST,
+        // 达到队列硬上限时丢弃
+        DROP_WHEN_FULL,
+        // 永不丢弃，队列已满时直接驱逐会话
+        NEVER_DROP
+    }
+
+    @PostConstruct
+    public void init() {
+        for (WebSocketMessage.WebSocketMessageType type : WebSocketMessage.WebSocketMessageType.values()) {
+            overflowPolicies.put(type, OverflowPolicy.DROP_WHEN_FULL);
+            droppedCounters.put(type, Counter.builder("chat.outbound.dropped")
+                    .description("Outbound frames dropped by overflow policy")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+        applyPolicy(dropFirstTypes, OverflowPolicy.DROP_FIRST);
+        applyPolicy(neverDropTypes, OverflowPolicy.NEVER_DROP);
+        overflowPolicies.put(WebSocketMessage.WebSocketMessageType.CHAT_MESSAGE, OverflowPolicy.NEVER_DROP);
+        overflowPolicies.put(WebSocketMessage.WebSocketMessageType.MESSAGE_ACK, OverflowPolicy.NEVER_DROP);
+
+        if (lowWatermark >= highWatermark) {
+            log.warn("Outbound low watermark {} is not below high watermark {}, using {}",
+                    lowWatermark, highWatermark, highWatermark / 2);
+            lowWatermark = highWatermark / 2;
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        writerExecutor = new ThreadPoolExecutor(writerThreads, writerThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ws-writer-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        writerExecutor.allowCoreThreadTimeOut(true);
+
+        sentCounter = Counter.builder("chat.outbound.sent")
+                .description("Outbound frames written to WebSocket sessions")
+                .register(meterRegistry);
+        evictedCounter = Counter.builder("chat.outbound.evicted")
+                .description("Sessions closed as slow consumers")
+                .register(meterRegistry);
+        Gauge.builder("chat.outbound.queue.depth", totalDepth, AtomicLong::get)
+                .description("Total frames waiting in outbound queues")
+                .register(meterRegistry);
+        Gauge.builder("chat.outbound.queue.sessions", queues, Map::size)
+                .description("Sessions with an outbound queue")
+                .register(meterRegistry);
+        Gauge.builder("chat.outbound.congested.sessions", congestedQueues, Set::size)
+                .description("Sessions above the outbound high watermark")
+                .register(meterRegistry);
+
+        log.info("Outbound dispatcher started: writers={}, highWatermark={}, lowWatermark={}, maxQueueSize={}, " +
+                "policies={}", writerThreads, highWatermark, lowWatermark, maxQueueSize, overflowPolicies);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writerExecutor != null) {
+            writerExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 将帧加入会话的出站队列
+     *
+     * @return 帧是否被接受（被溢出策略丢弃或会话已关闭时返回false）
+     */
+    public boolean enqueue(WebSocketSession session, OutboundFrame frame) {
+        if (!session.isOpen()) {
+            return false;
+        }
+
+        SessionOutboundQueue queue = queues.computeIfAbsent(session.getId(), id -> createQueue(session));
+        if (queue.isClosed() || queue.getCloseAfterDrain() != null) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        int depth = queue.depth();
+        if (depth >= highWatermark && queue.markCongested(now)) {
+            congestedQueues.add(queue);
+            log.warn("Outbound queue congested: sessionId={}, depth={}", session.getId(), depth);
+        }
+
+        if (queue.isCongested() && now - queue.getCongestedSince() > slowConsumerTimeoutMs) {
+            evict(queue, "stayed above high watermark for " + (now - queue.getCongestedSince()) + "ms");
+            return false;
+        }
+
+        OverflowPolicy policy = getOverflowPolicy(frame.getType());
+        if (policy == OverflowPolicy.DROP_FIRST && queue.isCongested()) {
+            recordDrop(frame);
+            return false;
+        }
+
+        if (depth >= maxQueueSize) {
+            if (policy != OverflowPolicy.NEVER_DROP) {
+                recordDrop(frame);
+                return false;
+            }
+            // 不可丢弃的消息无法再缓冲，直接判定为慢消费者
+            evict(queue, "queue full with undroppable " + frame.getType());
+            return false;
+        }
+
+        // 先计入总深度再入队，清空队列的一方总能对应扣减
+        totalDepth.incrementAndGet();
+        queue.offer(frame);
+
+        // 入队期间会话可能已关闭并释放了队列，此时队列不会再被排空，撤销入队
+        if (queues.get(session.getId()) != queue || queue.isClosed() || !session.isOpen()) {
+            queues.remove(session.getId(), queue);
+            discard(queue);
+            return false;
+        }
+        scheduleDrain(queue);
+        return true;
+    }
+
+    /**
+     * 排空出站队列后关闭会话
+     * 已入队的帧会先发送出去，之后不再接受新的帧
+     */
+    public void closeAfterDrain(WebSocketSession session, CloseStatus status) {
+        SessionOutboundQueue queue = queues.get(session.getId());
+        if (queue == null || queue.isClosed()) {
+            // 没有待发送的帧（或队列已释放），直接关闭，不再为其创建队列
+            writerExecutor.execute(() -> closeQuietly(session, status));
+            return;
+        }
+        queue.setCloseAfterDrain(status);
+        scheduleDrain(queue);
+    }
+
+    /**
+     * 立即关闭会话，丢弃尚未发送的帧
+     * 关闭操作由写线程执行，不阻塞调用线程
+     */
+    public void closeNow(WebSocketSession session, CloseStatus status) {
+        SessionOutboundQueue queue = queues.get(session.getId());
+        if (queue != null) {
+            discard(queue);
+        }
+        writerExecutor.execute(() -> closeQuietly(session, status));
+    }
+
+    /**
+     * 会话关闭后释放出站队列
+     */
+    public void release(WebSocketSession session) {
+        SessionOutboundQueue queue = queues.remove(session.getId());
+        if (queue != null) {
+            discard(queue);
+        }
+    }
+
+    /**
+     * 获取消息类型的溢出策略
+     */
+    public OverflowPolicy getOverflowPolicy(WebSocketMessage.WebSocketMessageType type) {
+        if (type == null) {
+            return OverflowPolicy.DROP_WHEN_FULL;
+        }
+        return overflowPolicies.getOrDefault(type, OverflowPolicy.DROP_WHEN_FULL);
+    }
+
+    /**
+     * 获取出站队列统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queues", queues.size());
+        stats.put("totalDepth", totalDepth.get());
+        stats.put("congestedSessions", congestedQueues.size());
+        stats.put("droppedFrames", droppedTotal.get());
+        stats.put("evictedSessions", evictedTotal.get());
+        stats.put("highWatermark", highWatermark);
+        stats.put("lowWatermark", lowWatermark);
+        stats.put("maxQueueSize", maxQueueSize);
+        return stats;
+    }
+
+    /**
+     * 定时驱逐长时间处于拥塞状态的会话
+     * 只检查拥塞队列，不遍历全部会话
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void evictSlowConsumers() {
+        if (congestedQueues.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (SessionOutboundQueue queue : congestedQueues) {
+            if (!queue.isCongested()) {
+                congestedQueues.remove(queue);
+            } else if (now - queue.getCongestedSince() > slowConsumerTimeoutMs) {
+                evict(queue, "stayed above high watermark for " + (now - queue.getCongestedSince()) + "ms");
+            }
+        }
+    }
+
+    private SessionOutboundQueue createQueue(WebSocketSession session) {
+        // 限制Tomcat阻塞发送的时间，避免卡死的连接长期占用写线程
+        if (session instanceof NativeWebSocketSession nativeSession
+                && nativeSession.getNativeSession() instanceof jakarta.websocket.Session wsSession) {
+            wsSession.getUserProperties().put(TOMCAT_BLOCKING_SEND_TIMEOUT, sendTimeoutMs);
+        }
+        boolean binary = BinaryMessageCodec.SUBPROTOCOL.equals(session.getAcceptedProtocol());
+        return new SessionOutboundQueue(session, binary);
+    }
+
+    private void scheduleDrain(SessionOutboundQueue queue) {
+        if (queue.tryStartDrain()) {
+            try {
+                writerExecutor.execute(() -> drain(queue));
+            } catch (Exception e) {
+                queue.finishDrain();
+                log.error("Failed to schedule outbound drain for session: {}", queue.getSession().getId(), e);
+            }
+        }
+    }
+
+    private void drain(SessionOutboundQueue queue) {
+        WebSocketSession session = queue.getSession();
+        try {
+            int written = 0;
+            OutboundFrame frame;
+            while (written < drainBatchSize && !queue.isClosed() && (frame = queue.poll()) != null) {
+                totalDepth.decrementAndGet();
+                if (!session.isOpen()) {
+                    discard(queue);
+                    return;
+                }
+
+                session.sendMessage(queue.isBinary() ? frame.getBinaryPayload(binaryCodec) : frame.getPayload());
+                sentCounter.increment();
+                written++;
+
+                if (queue.isCongested() && queue.depth() <= lowWatermark && queue.clearCongested()) {
+                    congestedQueues.remove(queue);
+                    log.info("Outbound queue recovered: sessionId={}, depth={}", session.getId(), queue.depth());
+                }
+            }
+
+            CloseStatus closeStatus = queue.getCloseAfterDrain();
+            if (closeStatus != null && queue.isEmpty() && !queue.isClosed()) {
+                queue.markClosed();
+                closeQuietly(session, closeStatus);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to write outbound frame, closing session: {}", session.getId(), e);
+            discard(queue);
+            closeQuietly(session, CloseStatus.SESSION_NOT_RELIABLE);
+        } finally {
+            queue.finishDrain();
+            // closeAfterDrain可能在本次排空读取关闭状态之后才设置，此时它自己的调度因排空进行中而失败
+            if (!queue.isClosed() && (!queue.isEmpty() || queue.getCloseAfterDrain() != null)) {
+                scheduleDrain(queue);
+            }
+        }
+    }
+
+    private void evict(SessionOutboundQueue queue, String reason) {
+        if (queue.isClosed()) {
+            return;
+        }
+        WebSocketSession session = queue.getSession();
+        log.warn("Evicting slow WebSocket consumer: sessionId={}, depth={}, reason={}",
+                session.getId(), queue.depth(), reason);
+
+        discard(queue);
+        evictedTotal.incrementAndGet();
+        evictedCounter.increment();
+        writerExecutor.execute(() -> closeQuietly(session, CloseStatus.SESSION_NOT_RELIABLE));
+    }
+
+    private void discard(SessionOutboundQueue queue) {
+        queue.markClosed();
+        int cleared = queue.clear();
+        if (cleared > 0) {
+            totalDepth.addAndGet(-cleared);
+        }
+        if (queue.clearCongested()) {
+            congestedQueues.remove(queue);
+        }
+    }
+
+    private void recordDrop(OutboundFrame frame) {
+        droppedTotal.incrementAndGet();
+        if (frame.getType() != null) {
+            droppedCounters.get(frame.getType()).increment();
+        }
+    }
+
+    private void applyPolicy(String types, OverflowPolicy policy) {
+        if (types == null || types.isBlank()) {
+            return;
+        }
+        for (String name : types.split(",")) {
+            try {
+                overflowPolicies.put(WebSocketMessage.WebSocketMessageType.valueOf(name.trim()), policy);
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown message type in outbound overflow policy: {}", name);
+            }
+        }
+    }
+
+    private void closeQuietly(WebSocketSession session, CloseStatus status) {
+        try {
+            if (session.isOpen()) {
+                session.close(status);
+            }
+        } catch (Exception e) {
+            log.debug("Failed to close WebSocket session: {}", session.getId(), e);
+        }
+    }
+}
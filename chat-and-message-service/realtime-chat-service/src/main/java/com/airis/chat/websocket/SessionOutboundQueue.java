@@ -0,0 +1,129 @@
+package com.airis.chat.websocket;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个WebSocket会话的出站队列
+ * 无锁队列，由写线程串行排空，保证同一会话上的帧按入队顺序发送
+ *
+ * @author AIRIS Team
+ * @since 1.0.0
+ */
+final class SessionOutboundQueue {
+
+    private final WebSocketSession session;
+
+    // 是否协商了二进制子协议
+    private final boolean binary;
+
+    private final ConcurrentLinkedQueue<OutboundFrame> frames = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger depth = new AtomicInteger();
+
+    // 是否已经提交了排空任务（同一时刻只允许一个写线程处理该会话）
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    // 是否处于拥塞状态（超过高水位后置位，回落到低水位以下后清除）
+    private final AtomicBoolean congested = new AtomicBoolean();
+
+    private volatile long congestedSince;
+
+    private volatile boolean closed;
+
+    // 排空后需要关闭会话时使用的关闭状态
+    private volatile CloseStatus closeAfterDrain;
+
+    SessionOutboundQueue(WebSocketSession session, boolean binary) {
+        this.session = session;
+        this.binary = binary;
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    void offer(OutboundFrame frame) {
+        frames.offer(frame);
+        depth.incrementAndGet();
+    }
+
+    OutboundFrame poll() {
+        OutboundFrame frame = frames.poll();
+        if (frame != null) {
+            depth.decrementAndGet();
+        }
+        return frame;
+    }
+
+    /**
+     * 清空队列，返回被丢弃的帧数
+     */
+    int clear() {
+        int cleared = 0;
+        while (poll() != null) {
+            cleared++;
+        }
+        return cleared;
+    }
+
+    int depth() {
+        return depth.get();
+    }
+
+    boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    boolean tryStartDrain() {
+        return draining.compareAndSet(false, true);
+    }
+
+    void finishDrain() {
+        draining.set(false);
+    }
+
+    boolean markCongested(long now) {
+        if (congested.compareAndSet(false, true)) {
+            congestedSince = now;
+            return true;
+        }
+        return false;
+    }
+
+    boolean clearCongested() {
+        return congested.compareAndSet(true, false);
+    }
+
+    boolean isCongested() {
+        return congested.get();
+    }
+
+    long getCongestedSince() {
+        return congestedSince;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void markClosed() {
+        this.closed = true;
+    }
+
+    CloseStatus getCloseAfterDrain() {
+        return closeAfterDrain;
+    }
+
+    void setCloseAfterDrain(CloseStatus closeAfterDrain) {
+        this.closeAfterDrain = closeAfterDrain;
+    }
+}